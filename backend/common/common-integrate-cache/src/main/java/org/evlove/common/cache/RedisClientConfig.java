@@ -3,9 +3,12 @@ package org.evlove.common.cache;
 import com.alicp.jetcache.autoconfigure.LettuceFactory;
 import com.alicp.jetcache.autoconfigure.RedisLettuceAutoConfiguration;
 import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.api.StatefulConnection;
 import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
 import io.lettuce.core.cluster.api.reactive.RedisClusterReactiveCommands;
 import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
@@ -34,6 +37,9 @@ public class RedisClientConfig {
     public static final String BEAN_NAME_REDIS_SYNC_COMMANDS = "redisSyncCommands";
     public static final String BEAN_NAME_REDIS_ASYNC_COMMANDS = "redisAsyncCommands";
     public static final String BEAN_NAME_REDIS_REACTIVE_COMMANDS = "redisReactiveCommands";
+    public static final String BEAN_NAME_REDIS_BINARY_CONNECTION = "redisBinaryConnection";
+    public static final String BEAN_NAME_REDIS_BINARY_SYNC_COMMANDS = "redisBinarySyncCommands";
+    public static final String BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS = "redisBinaryAsyncCommands";
 
     /**
      * Inject the Redis general command operation class (AbstractRedisClient.class) into the Spring context.
@@ -119,4 +125,33 @@ public class RedisClientConfig {
     public LettuceFactory redisReactiveCommands() {
         return new LettuceFactory(LETTUCE_FACTORY_KEY, RedisClusterReactiveCommands.class);
     }
+
+    /**
+     * Inject a connection with byte[] keys and values (ByteArrayCodec) into the Spring context,
+     * used to store binary values, such as the values serialized by the Redis value codecs (see RedisObjectUtils).
+     */
+    @Bean(name = BEAN_NAME_REDIS_BINARY_CONNECTION, destroyMethod = "close")
+    public StatefulConnection<byte[], byte[]> redisBinaryConnection(RedisConnectionProvider connectionProvider) {
+        return connectionProvider.connectAny(ByteArrayCodec.INSTANCE);
+    }
+
+    /**
+     * Inject the Redis sync command operation class with byte[] keys and values into the Spring context.
+     */
+    @Bean(name = BEAN_NAME_REDIS_BINARY_SYNC_COMMANDS)
+    public RedisClusterCommands<byte[], byte[]> redisBinarySyncCommands(
+            RedisConnectionProvider connectionProvider,
+            @Qualifier(BEAN_NAME_REDIS_BINARY_CONNECTION) StatefulConnection<byte[], byte[]> connection) {
+        return connectionProvider.sync(connection);
+    }
+
+    /**
+     * Inject the Redis async command operation class with byte[] keys and values into the Spring context.
+     */
+    @Bean(name = BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    public RedisClusterAsyncCommands<byte[], byte[]> redisBinaryAsyncCommands(
+            RedisConnectionProvider connectionProvider,
+            @Qualifier(BEAN_NAME_REDIS_BINARY_CONNECTION) StatefulConnection<byte[], byte[]> connection) {
+        return connectionProvider.async(connection);
+    }
 }
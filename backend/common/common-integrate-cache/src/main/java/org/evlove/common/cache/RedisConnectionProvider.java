@@ -0,0 +1,142 @@
+package org.evlove.common.cache;
+
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import jakarta.annotation.Resource;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Open dedicated connections on the Redis client managed by JetCache.
+ *
+ * The commands beans in RedisClientConfig share one multiplexed connection, which is the best choice for ordinary commands.
+ * But some scenarios need a connection of their own, for example:
+ * - Blocking commands (XREADGROUP BLOCK), which would stall every command queued behind them on the shared connection.
+ * - Connection state (CLIENT TRACKING, SUBSCRIBE), which belongs to one connection.
+ * - A different codec (ByteArrayCodec).
+ *
+ * The client of the stand-alone mode is created by JetCache without a default URI,
+ * so the URI is read from the same configuration item as JetCache (jetcache.remote.default.uri).
+ *
+ * @author massaton.github.io
+ */
+@Component
+public class RedisConnectionProvider {
+    /**
+     * The configuration item of the Redis URIs, the same as JetCache
+     */
+    private static final String URI_PROPERTY = "jetcache.remote.default.uri";
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_CLIENT)
+    private AbstractRedisClient abstractRedisClient;
+
+    @Resource
+    private Environment environment;
+
+    /**
+     * Whether Redis is deployed in cluster mode (jetcache.remote.default.mode: cluster).
+     */
+    public boolean isCluster() {
+        return abstractRedisClient instanceof RedisClusterClient;
+    }
+
+    public AbstractRedisClient getClient() {
+        return abstractRedisClient;
+    }
+
+    /**
+     * Open a dedicated connection in stand-alone (or sentinel) deployment mode.
+     *
+     * @param codec The codec of keys and values.
+     * @return The new connection, which should be closed by the caller.
+     */
+    public <K, V> StatefulRedisConnection<K, V> connect(RedisCodec<K, V> codec) {
+        if (abstractRedisClient instanceof RedisClient redisClient) {
+            return redisClient.connect(codec, this.uri());
+        }
+        throw new IllegalStateException("Redis is deployed in cluster mode, use connectCluster instead");
+    }
+
+    /**
+     * Open a dedicated connection in cluster deployment mode.
+     *
+     * @param codec The codec of keys and values.
+     * @return The new connection, which should be closed by the caller.
+     */
+    public <K, V> StatefulRedisClusterConnection<K, V> connectCluster(RedisCodec<K, V> codec) {
+        if (abstractRedisClient instanceof RedisClusterClient redisClusterClient) {
+            return redisClusterClient.connect(codec);
+        }
+        throw new IllegalStateException("Redis is not deployed in cluster mode, use connect instead");
+    }
+
+    /**
+     * Open a dedicated connection in the current deployment mode (stand-alone, sentinel or cluster).
+     *
+     * @param codec The codec of keys and values.
+     * @return The new connection, which should be closed by the caller.
+     */
+    public <K, V> StatefulConnection<K, V> connectAny(RedisCodec<K, V> codec) {
+        if (this.isCluster()) {
+            return this.connectCluster(codec);
+        }
+        return this.connect(codec);
+    }
+
+    /**
+     * Get the sync commands of a connection opened by connectAny, which are common to both deployment modes.
+     */
+    public <K, V> RedisClusterCommands<K, V> sync(StatefulConnection<K, V> connection) {
+        if (connection instanceof StatefulRedisClusterConnection<K, V> clusterConnection) {
+            return clusterConnection.sync();
+        }
+        return ((StatefulRedisConnection<K, V>) connection).sync();
+    }
+
+    /**
+     * Get the async commands of a connection opened by connectAny, which are common to both deployment modes.
+     */
+    public <K, V> RedisClusterAsyncCommands<K, V> async(StatefulConnection<K, V> connection) {
+        if (connection instanceof StatefulRedisClusterConnection<K, V> clusterConnection) {
+            return clusterConnection.async();
+        }
+        return ((StatefulRedisConnection<K, V>) connection).async();
+    }
+
+    /**
+     * Open a dedicated publish/subscribe connection, in both stand-alone and cluster deployment mode.
+     *
+     * @param codec The codec of keys and values.
+     * @return The new connection, which should be closed by the caller.
+     */
+    public <K, V> StatefulRedisPubSubConnection<K, V> connectPubSub(RedisCodec<K, V> codec) {
+        if (abstractRedisClient instanceof RedisClusterClient redisClusterClient) {
+            return redisClusterClient.connectPubSub(codec);
+        }
+        return ((RedisClient) abstractRedisClient).connectPubSub(codec, this.uri());
+    }
+
+    /**
+     * In stand-alone (or sentinel) deployment mode, the first URI is used, a sentinel URI resolves the master by itself.
+     */
+    private RedisURI uri() {
+        // Both a single URI and a list of URIs are supported
+        List<String> uris = Binder.get(environment)
+                .bind(URI_PROPERTY, Bindable.listOf(String.class))
+                .orElseThrow(() -> new IllegalStateException(URI_PROPERTY + " is required"));
+        return RedisURI.create(uris.get(0));
+    }
+}
@@ -0,0 +1,39 @@
+package org.evlove.common.cache.codec;
+
+import com.alibaba.fastjson2.JSON;
+import org.springframework.stereotype.Component;
+
+/**
+ * JSON text codec based on fastjson2, the format RedisObjectUtils has always used.
+ *
+ * For compatibility, values of this codec are written without the format header,
+ * so that they are still readable by the instances that have not been upgraded.
+ *
+ * @author massaton.github.io
+ */
+@Component
+public class JsonValueCodec implements RedisValueCodec {
+
+    public static final byte ID = 0;
+    public static final String NAME = "json";
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSON.toJSONBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> clazz) {
+        return JSON.parseObject(bytes, clazz);
+    }
+}
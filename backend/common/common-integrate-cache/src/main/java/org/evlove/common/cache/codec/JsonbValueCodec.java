@@ -0,0 +1,40 @@
+package org.evlove.common.cache.codec;
+
+import com.alibaba.fastjson2.JSONB;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compact binary JSON codec based on fastjson2 JSONB.
+ * It keeps the flexibility of JSON (fields can be added or removed between versions),
+ * while being noticeably smaller and faster than JSON text.
+ *
+ * ref: <a href="https://github.com/alibaba/fastjson2/blob/main/docs/jsonb_format_cn.md">JSONB format</a>
+ *
+ * @author massaton.github.io
+ */
+@Component
+public class JsonbValueCodec implements RedisValueCodec {
+
+    public static final byte ID = 1;
+    public static final String NAME = "jsonb";
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSONB.toBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> clazz) {
+        return JSONB.parseObject(bytes, clazz);
+    }
+}
@@ -0,0 +1,60 @@
+package org.evlove.common.cache.codec;
+
+import com.alicp.jetcache.support.Kryo5ValueDecoder;
+import com.alicp.jetcache.support.Kryo5ValueEncoder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.stereotype.Component;
+
+/**
+ * Binary codec based on Kryo 5, reusing the Kryo encoder of JetCache.
+ * The fastest and most compact of the built-in codecs, and the type is written with the value (self-describing),
+ * but the classes must stay serialization-compatible between versions.
+ *
+ * Only available when Kryo 5 is on the classpath:
+ * <pre>
+ *     &lt;dependency&gt;
+ *         &lt;groupId&gt;com.esotericsoftware.kryo&lt;/groupId&gt;
+ *         &lt;artifactId&gt;kryo5&lt;/artifactId&gt;
+ *     &lt;/dependency&gt;
+ * </pre>
+ *
+ * @author massaton.github.io
+ */
+@Component
+@ConditionalOnClass(name = "com.esotericsoftware.kryo.kryo5.Kryo")
+public class KryoValueCodec implements RedisValueCodec {
+
+    public static final byte ID = 2;
+    public static final String NAME = "kryo";
+
+    /**
+     * The format header is written by RedisValueCodecs, so the identity number of JetCache is not needed.
+     */
+    private final Kryo5ValueEncoder encoder = new Kryo5ValueEncoder(false);
+    private final Kryo5ValueDecoder decoder = new Kryo5ValueDecoder(false);
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isSelfDescribing() {
+        return true;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return encoder.apply(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> clazz) {
+        return clazz.cast(decoder.apply(bytes));
+    }
+}
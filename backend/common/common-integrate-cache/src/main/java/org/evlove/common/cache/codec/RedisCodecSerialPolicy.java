@@ -0,0 +1,59 @@
+package org.evlove.common.cache.codec;
+
+import com.alicp.jetcache.anno.SerialPolicy;
+import com.alicp.jetcache.support.DecoderMap;
+import jakarta.annotation.Resource;
+import org.evlove.common.cache.properties.RedisCodecProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Function;
+
+/**
+ * Make the Redis value codecs selectable as the JetCache value encoder/decoder.
+ *
+ * Example:
+ * <pre>
+ * jetcache:
+ *   remote:
+ *     default:
+ *       valueEncoder: bean:redisCodecSerialPolicy
+ *       valueDecoder: bean:redisCodecSerialPolicy
+ * </pre>
+ *
+ * Values written by the JetCache built-in encoders (java, kryo, fastjson2) stay readable,
+ * so the encoder can be switched in a rolling upgrade.
+ *
+ * @author massaton.github.io
+ */
+@Component(RedisCodecSerialPolicy.BEAN_NAME)
+public class RedisCodecSerialPolicy implements SerialPolicy {
+
+    public static final String BEAN_NAME = "redisCodecSerialPolicy";
+
+    @Resource
+    private RedisValueCodecs redisValueCodecs;
+
+    @Resource
+    private RedisCodecProperties properties;
+
+    @Override
+    public Function<Object, byte[]> encoder() {
+        RedisValueCodec codec = redisValueCodecs.getCodec(properties.getJetcacheName());
+        if (!codec.isSelfDescribing()) {
+            // JetCache decodes values without type information
+            throw new IllegalStateException("The JetCache value codec must be self-describing: " + codec.getName());
+        }
+        return value -> redisValueCodecs.encode(value, codec);
+    }
+
+    @Override
+    public Function<byte[], Object> decoder() {
+        return bytes -> {
+            if (redisValueCodecs.hasHeader(bytes)) {
+                return redisValueCodecs.decode(bytes, Object.class);
+            }
+            // Written by a JetCache built-in encoder, which records its own identity number
+            return DecoderMap.defaultJavaValueDecoder().apply(bytes);
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package org.evlove.common.cache.codec;
+
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encode the payload of the typed stream messages, see RedisMessageQueueUtil.push.
+ * <p>
+ * A typed message is a stream entry with a single binary field (PAYLOAD_FIELD), instead of one text field per property,
+ * so the field names are not repeated in every entry and numbers and nested objects are not written as text.
+ * Format of the payload: [MAGIC][schema version, 2 bytes][value]
+ * - The MAGIC byte (0xFB) differs from the codec (0xFE) and compression (0xFD) headers.
+ * - The schema version comes from the RedisMessageSchema annotation of the payload class.
+ * - The value is serialized by the configured codec (RedisValueCodecs) and compressed above the threshold (RedisValueCompressor),
+ * each one with its own header, so the messages stay readable after a change of codec or compression settings.
+ *
+ * @author massaton.github.io
+ */
+@Component
+public class RedisMessagePayloadCodec {
+
+    /**
+     * The name of the single field of a typed message.
+     */
+    public static final String PAYLOAD_FIELD = "_p";
+    public static final byte[] PAYLOAD_FIELD_BYTES = PAYLOAD_FIELD.getBytes(StandardCharsets.UTF_8);
+
+    public static final byte MAGIC = (byte) 0xFB;
+
+    private static final int HEADER_LENGTH = 3;
+
+    @Resource
+    private RedisValueCodecs redisValueCodecs;
+
+    @Resource
+    private RedisValueCompressor redisValueCompressor;
+
+    /**
+     * Serialize, compress and prepend the header.
+     *
+     * @param queueName The name of the message queue, only used to group the compression statistics.
+     * @param payload The payload, never null.
+     * @return The value of PAYLOAD_FIELD.
+     */
+    public byte[] encode(String queueName, Object payload) {
+        byte[] value = redisValueCompressor.compress(queueName, redisValueCodecs.encode(payload));
+        byte[] bytes = new byte[HEADER_LENGTH + value.length];
+        bytes[0] = MAGIC;
+        ByteBuffer.wrap(bytes, 1, 2).putShort((short) schemaVersion(payload.getClass()));
+        System.arraycopy(value, 0, bytes, HEADER_LENGTH, value.length);
+        return bytes;
+    }
+
+    /**
+     * Decompress and deserialize the value of PAYLOAD_FIELD.
+     *
+     * @param queueName The name of the message queue, only used to group the compression statistics.
+     * @param bytes The value of PAYLOAD_FIELD.
+     * @param clazz The expected type.
+     * @return The payload.
+     * @throws IllegalStateException if the value is not a typed message payload.
+     */
+    public <T> T decode(String queueName, byte[] bytes, Class<T> clazz) {
+        if (!this.isPayload(bytes)) {
+            throw new IllegalStateException("Not a typed message payload in queue: " + queueName);
+        }
+        byte[] value = Arrays.copyOfRange(bytes, HEADER_LENGTH, bytes.length);
+        return redisValueCodecs.decode(redisValueCompressor.decompress(queueName, value), clazz);
+    }
+
+    /**
+     * The schema version written in the header of the payload.
+     */
+    public int getSchemaVersion(byte[] bytes) {
+        return ByteBuffer.wrap(bytes, 1, 2).getShort() & 0xFFFF;
+    }
+
+    public boolean isPayload(byte[] bytes) {
+        return bytes != null && bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC;
+    }
+
+    public static int schemaVersion(Class<?> clazz) {
+        RedisMessageSchema schema = clazz.getAnnotation(RedisMessageSchema.class);
+        return schema == null ? 0 : schema.version();
+    }
+}
@@ -0,0 +1,24 @@
+package org.evlove.common.cache.codec;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The schema version of a typed message payload, written in the header of each message, see RedisMessagePayloadCodec.
+ * Increase it when the payload class changes incompatibly, so that the handlers can tell the old messages still queued from the new ones.
+ *
+ * @author massaton.github.io
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RedisMessageSchema {
+
+    /**
+     * The schema version, between 0 and 65535. A payload class without this annotation has version 0.
+     */
+    int version();
+}
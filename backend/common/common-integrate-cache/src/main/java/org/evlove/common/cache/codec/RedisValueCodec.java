@@ -0,0 +1,52 @@
+package org.evlove.common.cache.codec;
+
+/**
+ * The SPI of value serialization used by RedisObjectUtils and JetCache remote values (see RedisCodecSerialPolicy).
+ *
+ * Implementations are Spring beans, a custom codec is registered by declaring it as a bean (@Component),
+ * then selected by its name in the configuration (evlove.cache.codec.name).
+ *
+ * The values are written with a format header recording the codec (see RedisValueCodecs), so values written by another codec stay readable.
+ * The exception is JsonValueCodec, whose values are written as plain JSON text without header, a value without header is read as JSON.
+ *
+ * @author massaton.github.io
+ */
+public interface RedisValueCodec {
+
+    /**
+     * The unique id of the codec written in the format header of each value (not written for JsonValueCodec).
+     * 0-15 are reserved for the built-in codecs, a custom codec uses an id between 16 and 127.
+     * Notice: It must never be changed once values have been written.
+     */
+    byte getId();
+
+    /**
+     * The name used to select the codec in the configuration, for example: json, jsonb, kryo
+     */
+    String getName();
+
+    /**
+     * Whether the serialized bytes carry the type of the value, so that they can be decoded without knowing the class.
+     * Only such codecs can be used as the JetCache value encoder, because JetCache decodes values without type information.
+     */
+    default boolean isSelfDescribing() {
+        return false;
+    }
+
+    /**
+     * Serialize the value.
+     *
+     * @param value The value, never null.
+     * @return The serialized bytes, without the format header.
+     */
+    byte[] encode(Object value);
+
+    /**
+     * Deserialize the value.
+     *
+     * @param bytes The serialized bytes, without the format header.
+     * @param clazz The expected type, Object.class when the type is unknown.
+     * @return The value.
+     */
+    <T> T decode(byte[] bytes, Class<T> clazz);
+}
@@ -0,0 +1,120 @@
+package org.evlove.common.cache.codec;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.evlove.common.cache.properties.RedisCodecProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of all RedisValueCodec beans, which writes and parses the format header of the values.
+ *
+ * Format of a value: [MAGIC][codec id][serialized bytes]
+ * - The MAGIC byte (0xFE) never appears in UTF-8 text, so a value without it is a legacy JSON text value (JsonValueCodec).
+ * - Values of JsonValueCodec are written without header, to stay readable by the instances that have not been upgraded.
+ *
+ * @author massaton.github.io
+ */
+@Component
+public class RedisValueCodecs {
+    /**
+     * The first byte of every value with a format header
+     */
+    public static final byte MAGIC = (byte) 0xFE;
+
+    private static final int HEADER_LENGTH = 2;
+
+    @Resource
+    private List<RedisValueCodec> codecList;
+
+    @Resource
+    private JsonValueCodec jsonValueCodec;
+
+    @Resource
+    private RedisCodecProperties properties;
+
+    private final Map<Byte, RedisValueCodec> codecsById = new HashMap<>();
+    private final Map<String, RedisValueCodec> codecsByName = new HashMap<>();
+    private RedisValueCodec defaultCodec;
+
+    @PostConstruct
+    public void init() {
+        for (RedisValueCodec codec : codecList) {
+            RedisValueCodec sameId = codecsById.put(codec.getId(), codec);
+            RedisValueCodec sameName = codecsByName.put(codec.getName(), codec);
+            if (sameId != null || sameName != null) {
+                throw new IllegalStateException("Duplicate Redis value codec id or name: " + codec.getId() + "/" + codec.getName());
+            }
+        }
+        defaultCodec = this.getCodec(properties.getName());
+    }
+
+    /**
+     * Get the codec by its name.
+     *
+     * @throws IllegalStateException if there is no such codec.
+     */
+    public RedisValueCodec getCodec(String name) {
+        RedisValueCodec codec = codecsByName.get(name);
+        if (codec == null) {
+            throw new IllegalStateException("Unknown Redis value codec: " + name + ", available: " + codecsByName.keySet());
+        }
+        return codec;
+    }
+
+    /**
+     * Serialize the value with the configured codec (evlove.cache.codec.name).
+     */
+    public byte[] encode(Object value) {
+        return this.encode(value, defaultCodec);
+    }
+
+    /**
+     * Serialize the value with the given codec, and prepend the format header.
+     */
+    public byte[] encode(Object value, RedisValueCodec codec) {
+        byte[] payload = codec.encode(value);
+        if (codec.getId() == JsonValueCodec.ID) {
+            return payload;
+        }
+
+        byte[] bytes = new byte[HEADER_LENGTH + payload.length];
+        bytes[0] = MAGIC;
+        bytes[1] = codec.getId();
+        System.arraycopy(payload, 0, bytes, HEADER_LENGTH, payload.length);
+        return bytes;
+    }
+
+    /**
+     * Deserialize the value with the codec recorded in its format header, whichever codec is currently configured.
+     *
+     * @param bytes The value read from Redis.
+     * @param clazz The expected type.
+     * @return The value, or null when bytes is null or empty.
+     */
+    public <T> T decode(byte[] bytes, Class<T> clazz) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (!this.hasHeader(bytes)) {
+            return jsonValueCodec.decode(bytes, clazz);
+        }
+
+        RedisValueCodec codec = codecsById.get(bytes[1]);
+        if (codec == null) {
+            throw new IllegalStateException("Unknown Redis value codec id: " + bytes[1]);
+        }
+        return codec.decode(Arrays.copyOfRange(bytes, HEADER_LENGTH, bytes.length), clazz);
+    }
+
+    /**
+     * Whether the value was written with a format header.
+     */
+    public boolean hasHeader(byte[] bytes) {
+        return bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC;
+    }
+}
@@ -0,0 +1,231 @@
+package org.evlove.common.cache.codec;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.pojo.CompressionStats;
+import org.evlove.common.cache.properties.RedisCompressionProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Transparent compression of the large values written by RedisStringUtils and RedisObjectUtils (opt-in, see RedisCompressionProperties).
+ *
+ * Format of a compressed value: [MAGIC][algorithm][original length, 4 bytes][compressed bytes]
+ * - The MAGIC byte (0xFD) never appears in UTF-8 text, and differs from the codec header (0xFE), so any other value is read as is.
+ * - The algorithm is zlib (JDK Deflater), optionally with a preset dictionary, which is recorded in the zlib stream itself.
+ * - A value that does not get smaller is written as is.
+ *
+ * Compressed values are always decompressed on read, whether compression is currently enabled or not.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisValueCompressor {
+    /**
+     * The first byte of every compressed value
+     */
+    public static final byte MAGIC = (byte) 0xFD;
+
+    /**
+     * zlib (RFC 1950) stream
+     */
+    private static final byte ALGORITHM_ZLIB = 1;
+
+    private static final int HEADER_LENGTH = 6;
+
+    /**
+     * The statistics group of the keys matching no configured prefix
+     */
+    private static final String OTHER_PREFIX = "*";
+
+    @Resource
+    private RedisCompressionProperties properties;
+
+    private byte[] dictionary;
+
+    /**
+     * Deflater and Inflater hold native memory, they are reused per thread instead of being created per value.
+     */
+    private ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    private final Map<String, PrefixMetrics> metrics = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (properties.getDictionary() != null) {
+            try (InputStream inputStream = properties.getDictionary().getInputStream()) {
+                dictionary = inputStream.readAllBytes();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load the Redis compression dictionary: " + properties.getDictionary(), e);
+            }
+        }
+        int level = properties.getLevel();
+        deflaters = ThreadLocal.withInitial(() -> new Deflater(level));
+
+        if (properties.getEnabled()) {
+            log.info("Redis value compression enabled - threshold:{} level:{} dictionary:{}",
+                    properties.getThreshold(), level, dictionary == null ? "none" : dictionary.length + " bytes");
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.getEnabled();
+    }
+
+    /**
+     * Compress the value if compression is enabled and the value is larger than the threshold.
+     *
+     * @param key The key of the value, only used to group the statistics.
+     * @param value The value to write.
+     * @return The compressed value with the header, or the value itself.
+     */
+    public byte[] compress(String key, byte[] value) {
+        if (!properties.getEnabled() || value == null
+                || value.length <= HEADER_LENGTH || value.length <= properties.getThreshold().toBytes()) {
+            return value;
+        }
+
+        long start = System.nanoTime();
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(value);
+        deflater.finish();
+
+        // The output is never allowed to exceed the original size, a larger result is useless
+        byte[] buffer = new byte[value.length];
+        buffer[0] = MAGIC;
+        buffer[1] = ALGORITHM_ZLIB;
+        ByteBuffer.wrap(buffer, 2, 4).putInt(value.length);
+        int length = HEADER_LENGTH;
+        while (!deflater.finished() && length < buffer.length) {
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+
+        PrefixMetrics prefixMetrics = this.metricsOf(key);
+        prefixMetrics.compressNanos.add(System.nanoTime() - start);
+        if (!deflater.finished()) {
+            prefixMetrics.incompressibleCount.increment();
+            return value;
+        }
+        prefixMetrics.compressedCount.increment();
+        prefixMetrics.originalBytes.add(value.length);
+        prefixMetrics.compressedBytes.add(length);
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Decompress the value if it was written compressed.
+     *
+     * @param key The key of the value, used to group the statistics.
+     * @param value The value read from Redis.
+     * @return The original value.
+     * @throws IllegalStateException if the value is corrupted or was compressed with another dictionary.
+     */
+    public byte[] decompress(String key, byte[] value) {
+        if (!this.isCompressed(value)) {
+            return value;
+        }
+        if (value[1] != ALGORITHM_ZLIB) {
+            throw new IllegalStateException("Unknown compression algorithm of Redis key: " + key + ", id: " + value[1]);
+        }
+
+        long start = System.nanoTime();
+        int originalLength = ByteBuffer.wrap(value, 2, 4).getInt();
+        byte[] result = new byte[originalLength];
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(value, HEADER_LENGTH, value.length - HEADER_LENGTH);
+        try {
+            int length = 0;
+            while (length < originalLength) {
+                int inflated = inflater.inflate(result, length, originalLength - length);
+                if (inflated == 0) {
+                    if (!inflater.needsDictionary()) {
+                        throw new IllegalStateException("Truncated compressed value of Redis key: " + key);
+                    }
+                    if (dictionary == null) {
+                        throw new IllegalStateException("The value of Redis key: " + key + " was compressed with a dictionary, but none is configured");
+                    }
+                    inflater.setDictionary(dictionary);
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted compressed value of Redis key: " + key, e);
+        }
+
+        PrefixMetrics prefixMetrics = this.metricsOf(key);
+        prefixMetrics.decompressedCount.increment();
+        prefixMetrics.decompressNanos.add(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Whether the value was written compressed.
+     */
+    public boolean isCompressed(byte[] value) {
+        return value != null && value.length >= HEADER_LENGTH && value[0] == MAGIC;
+    }
+
+    /**
+     * Get the compression statistics since startup, grouped by key prefix (see RedisCompressionProperties.metricPrefixes).
+     */
+    public Map<String, CompressionStats> getStats() {
+        Map<String, CompressionStats> stats = new TreeMap<>();
+        metrics.forEach((prefix, prefixMetrics) -> stats.put(prefix, prefixMetrics.snapshot(prefix)));
+        return stats;
+    }
+
+    private PrefixMetrics metricsOf(String key) {
+        String matched = OTHER_PREFIX;
+        for (String prefix : properties.getMetricPrefixes()) {
+            if (key.startsWith(prefix) && (matched == OTHER_PREFIX || prefix.length() > matched.length())) {
+                matched = prefix;
+            }
+        }
+        return metrics.computeIfAbsent(matched, p -> new PrefixMetrics());
+    }
+
+    private static class PrefixMetrics {
+        private final LongAdder compressedCount = new LongAdder();
+        private final LongAdder incompressibleCount = new LongAdder();
+        private final LongAdder originalBytes = new LongAdder();
+        private final LongAdder compressedBytes = new LongAdder();
+        private final LongAdder compressNanos = new LongAdder();
+        private final LongAdder decompressedCount = new LongAdder();
+        private final LongAdder decompressNanos = new LongAdder();
+
+        private CompressionStats snapshot(String prefix) {
+            long compressed = compressedCount.sum();
+            long attempts = compressed + incompressibleCount.sum();
+            long original = originalBytes.sum();
+            long decompressed = decompressedCount.sum();
+            return new CompressionStats(
+                    prefix,
+                    compressed,
+                    incompressibleCount.sum(),
+                    original == 0 ? 0D : (double) compressedBytes.sum() / original,
+                    attempts == 0 ? 0D : compressNanos.sum() / 1000D / attempts,
+                    decompressed,
+                    decompressed == 0 ? 0D : decompressNanos.sum() / 1000D / decompressed
+            );
+        }
+    }
+}
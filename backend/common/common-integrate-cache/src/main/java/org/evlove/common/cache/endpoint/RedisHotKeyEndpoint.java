@@ -0,0 +1,33 @@
+package org.evlove.common.cache.endpoint;
+
+import jakarta.annotation.Resource;
+import org.evlove.common.cache.pojo.HotKeyInfo;
+import org.evlove.common.cache.utils.RedisHotKeyDetector;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint listing the hot keys currently promoted to the local replica, see RedisHotKeyDetector.
+ * Only available when the application uses Spring Boot Actuator, expose it by: management.endpoints.web.exposure.include=redishotkeys
+ *
+ * Example: GET /actuator/redishotkeys
+ *
+ * @author massaton.github.io
+ */
+@Component
+@ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+@Endpoint(id = "redishotkeys")
+public class RedisHotKeyEndpoint {
+
+    @Resource
+    private RedisHotKeyDetector redisHotKeyDetector;
+
+    @ReadOperation
+    public List<HotKeyInfo> hotKeys() {
+        return redisHotKeyDetector.getHotKeys();
+    }
+}
@@ -0,0 +1,40 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the auto-batching statistics, see RedisAutoBatcher.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AutoBatchStats {
+    /**
+     * The number of flushed batches.
+     */
+    private Long batchCount;
+
+    /**
+     * The number of single-key reads that were merged into batches.
+     */
+    private Long batchedCallCount;
+
+    /**
+     * The number of reads sent directly because too many reads were pending.
+     */
+    private Long overflowCallCount;
+
+    /**
+     * Average number of reads per batch.
+     */
+    private Double averageBatchSize;
+
+    /**
+     * Average time (unit: microseconds) a read waited in the batching window before being sent.
+     */
+    private Double averageWindowMicros;
+}
@@ -0,0 +1,45 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of a bulk load of a sorted set, see RedisSortSetUtils.bulkAdd.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkLoadProgress {
+    /**
+     * The loaded sorted set.
+     */
+    private String key;
+
+    /**
+     * The number of members written and acknowledged by Redis.
+     */
+    private Long loadedCount;
+
+    /**
+     * The number of ZADD chunks acknowledged by Redis.
+     */
+    private Long chunkCount;
+
+    /**
+     * The time since the start of the load, in milliseconds.
+     */
+    private Long elapsedMillis;
+
+    /**
+     * The average number of members loaded per second since the start of the load.
+     */
+    private Long membersPerSecond;
+
+    /**
+     * Whether the load is complete (and the sorted set replaced, for a replacing load).
+     */
+    private Boolean finished;
+}
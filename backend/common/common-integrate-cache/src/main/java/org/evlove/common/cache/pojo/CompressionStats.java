@@ -0,0 +1,50 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the compression statistics of one key prefix, see RedisValueCompressor.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CompressionStats {
+    /**
+     * The key prefix, "*" for the keys matching no configured prefix.
+     */
+    private String prefix;
+
+    /**
+     * The number of values written compressed.
+     */
+    private Long compressedCount;
+
+    /**
+     * The number of values above the threshold written as is, because compressing did not make them smaller.
+     */
+    private Long incompressibleCount;
+
+    /**
+     * compressed size / original size of the values written compressed, the smaller the better.
+     */
+    private Double ratio;
+
+    /**
+     * Average time (unit: microseconds) spent compressing a value above the threshold.
+     */
+    private Double averageCompressMicros;
+
+    /**
+     * The number of values read and decompressed.
+     */
+    private Long decompressedCount;
+
+    /**
+     * Average time (unit: microseconds) spent decompressing a value.
+     */
+    private Double averageDecompressMicros;
+}
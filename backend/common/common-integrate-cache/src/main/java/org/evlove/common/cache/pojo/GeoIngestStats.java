@@ -0,0 +1,58 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the statistics of the location ingestion, see RedisGeoIngestor.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class GeoIngestStats {
+    /**
+     * The number of location updates received.
+     */
+    private Long offeredCount;
+
+    /**
+     * The number of updates replaced by a later update of the same member before being written.
+     */
+    private Long supersededCount;
+
+    /**
+     * The number of updates rejected because their coordinates were missing or outside the range of GEOADD.
+     */
+    private Long rejectedCount;
+
+    /**
+     * The number of updates dropped because too many members were waiting.
+     */
+    private Long droppedCount;
+
+    /**
+     * The number of positions written.
+     */
+    private Long writtenCount;
+
+    /**
+     * The number of positions that could not be written.
+     */
+    private Long failedCount;
+
+    /**
+     * The number of members waiting to be written.
+     */
+    private Long pendingCount;
+
+    /**
+     * The number of positions written per flush latency (from the update to the GEOADD reply), keyed by the upper bound of each bucket,
+     * such as "50ms", the last bucket is "+Inf".
+     */
+    private Map<String, Long> latencyHistogram;
+}
@@ -0,0 +1,35 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the statistics of the nearest queries, see RedisGeoUtils.nearest.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class GeoNearestStats {
+    /**
+     * The number of nearest queries.
+     */
+    private Long queryCount;
+
+    /**
+     * The number of searches sent to Redis by the nearest queries.
+     */
+    private Long searchCount;
+
+    /**
+     * The number of nearest queries answered by their first search.
+     */
+    private Long firstSearchHitCount;
+
+    /**
+     * The number of nearest queries that reached the largest radius without finding enough members.
+     */
+    private Long maxRadiusCount;
+}
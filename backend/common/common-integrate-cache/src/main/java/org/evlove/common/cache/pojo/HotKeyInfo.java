@@ -0,0 +1,25 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A key currently promoted to the local replica, see RedisHotKeyDetector.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HotKeyInfo {
+    /**
+     * The key.
+     */
+    private String key;
+
+    /**
+     * The estimated number of reads within the last window.
+     */
+    private Long frequency;
+}
@@ -0,0 +1,45 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the statistics of the local cache invalidation bus, see RedisInvalidationBus.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class InvalidationStats {
+    /**
+     * The number of keys and prefixes requested to be invalidated on the other instances.
+     */
+    private Long requestedCount;
+
+    /**
+     * The number of requested keys and prefixes left out of the messages, already waiting in the same batch or covered by a prefix.
+     */
+    private Long coalescedCount;
+
+    /**
+     * The number of messages published.
+     */
+    private Long publishedCount;
+
+    /**
+     * The number of messages that could not be published.
+     */
+    private Long publishFailedCount;
+
+    /**
+     * The number of messages received from the other instances.
+     */
+    private Long receivedCount;
+
+    /**
+     * The number of keys and prefixes received from the other instances and evicted locally.
+     */
+    private Long appliedCount;
+}
@@ -0,0 +1,45 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the getOrLoad statistics, see RedisObjectUtils.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoadStats {
+    /**
+     * The number of times the loader was executed.
+     */
+    private Long loadCount;
+
+    /**
+     * Average execution time (unit: milliseconds) of the loader.
+     */
+    private Double averageLoadMillis;
+
+    /**
+     * The number of loads triggered before expiry by the probabilistic early refresh.
+     */
+    private Long earlyRefreshCount;
+
+    /**
+     * The number of callers that joined a load already in progress in this instance.
+     */
+    private Long singleFlightCount;
+
+    /**
+     * The number of callers that waited for a load held by another instance.
+     */
+    private Long leaseWaitCount;
+
+    /**
+     * The number of cached misses returned (negative caching).
+     */
+    private Long negativeHitCount;
+}
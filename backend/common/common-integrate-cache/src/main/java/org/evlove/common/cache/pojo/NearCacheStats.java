@@ -0,0 +1,40 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the near cache statistics, see RedisNearCache.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NearCacheStats {
+    /**
+     * The number of reads answered from local memory.
+     */
+    private Long hitCount;
+
+    /**
+     * The number of reads that had to be sent to Redis.
+     */
+    private Long missCount;
+
+    /**
+     * The number of keys invalidated by Redis (CLIENT TRACKING) or by local writes.
+     */
+    private Long invalidationCount;
+
+    /**
+     * The number of keys currently cached locally.
+     */
+    private Long size;
+
+    /**
+     * hitCount / (hitCount + missCount)
+     */
+    private Double hitRate;
+}
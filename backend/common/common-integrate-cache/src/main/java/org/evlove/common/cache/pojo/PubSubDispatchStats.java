@@ -0,0 +1,45 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the dispatch statistics of the received publish/subscribe messages, see RedisPubSubDispatcher.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PubSubDispatchStats {
+    /**
+     * The number of messages handed to the listener.
+     */
+    private Long dispatchedCount;
+
+    /**
+     * The number of messages dropped because the queue of their channel was full, the subscriber could not keep up.
+     */
+    private Long droppedCount;
+
+    /**
+     * The number of messages waiting to be dispatched.
+     */
+    private Long queuedCount;
+
+    /**
+     * The number of listener invocations that threw.
+     */
+    private Long failedCount;
+
+    /**
+     * The longest time a message waited before being dispatched, in milliseconds.
+     */
+    private Long maxLagMillis;
+
+    /**
+     * The time the last dispatched message waited, in milliseconds.
+     */
+    private Long lastLagMillis;
+}
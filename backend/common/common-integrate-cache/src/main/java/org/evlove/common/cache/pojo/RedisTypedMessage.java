@@ -0,0 +1,30 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A typed message read from a Redis Stream, see RedisMessageQueueUtil.push.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RedisTypedMessage<T> {
+    /**
+     * Message ID
+     */
+    private String id;
+
+    /**
+     * The schema version of the payload when it was pushed, see RedisMessageSchema.
+     */
+    private Integer schemaVersion;
+
+    /**
+     * Message payload
+     */
+    private T payload;
+}
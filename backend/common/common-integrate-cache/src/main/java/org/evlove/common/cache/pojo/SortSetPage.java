@@ -0,0 +1,27 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A page of a sorted set read with a cursor, see RedisSortSetUtils.getPage.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SortSetPage {
+    /**
+     * The members of the page, in order.
+     */
+    private List<MemberScore> members;
+
+    /**
+     * The cursor of the next page (the last member of this page and its score), null when this page is the last one.
+     */
+    private MemberScore nextCursor;
+}
@@ -0,0 +1,55 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the autoscaling of the consumers of a consumer group in this instance, see RedisStreamAutoscaler.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StreamAutoscaleStats {
+    /**
+     * The name of the message queue.
+     */
+    private String queueName;
+
+    /**
+     * Consumer group name.
+     */
+    private String groupName;
+
+    /**
+     * The number of workers in this instance.
+     */
+    private Integer concurrency;
+
+    /**
+     * The number of messages not yet delivered to the group, at the last check.
+     */
+    private Long lag;
+
+    /**
+     * The number of messages delivered but not yet acknowledged by the group, at the last check.
+     */
+    private Long pending;
+
+    /**
+     * The messages handled per second by this instance since the previous check.
+     */
+    private Double consumptionRate;
+
+    /**
+     * The number of times the workers were scaled up since startup.
+     */
+    private Long scaleUpCount;
+
+    /**
+     * The number of times the workers were scaled down since startup.
+     */
+    private Long scaleDownCount;
+}
@@ -0,0 +1,40 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The state of a consumer group of a stream, as reported by XINFO GROUPS.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StreamGroupInfo {
+    /**
+     * Consumer group name.
+     */
+    private String name;
+
+    /**
+     * The number of consumers of the group.
+     */
+    private Long consumers;
+
+    /**
+     * The number of messages delivered but not yet acknowledged.
+     */
+    private Long pending;
+
+    /**
+     * The ID of the last message delivered to the group.
+     */
+    private String lastDeliveredId;
+
+    /**
+     * The number of messages not yet delivered to the group, null before Redis 7.0 or when it cannot be determined.
+     */
+    private Long lag;
+}
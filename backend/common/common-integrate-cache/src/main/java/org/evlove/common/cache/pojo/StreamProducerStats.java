@@ -0,0 +1,40 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the stream producer statistics, see RedisStreamProducer.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StreamProducerStats {
+    /**
+     * The number of flushed batches.
+     */
+    private Long batchCount;
+
+    /**
+     * The number of messages sent in batches.
+     */
+    private Long messageCount;
+
+    /**
+     * The number of messages rejected because the buffer stayed full.
+     */
+    private Long rejectedCount;
+
+    /**
+     * Average number of messages per batch.
+     */
+    private Double averageBatchSize;
+
+    /**
+     * The number of messages currently buffered.
+     */
+    private Integer bufferedCount;
+}
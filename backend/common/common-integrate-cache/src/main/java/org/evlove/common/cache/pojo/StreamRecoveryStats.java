@@ -0,0 +1,30 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the pending message recovery statistics, see RedisStreamRecovery.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StreamRecoveryStats {
+    /**
+     * The number of pending messages claimed, handled and acknowledged.
+     */
+    private Long recoveredCount;
+
+    /**
+     * The number of poison messages moved to the dead-letter streams.
+     */
+    private Long deadLetterCount;
+
+    /**
+     * The number of claimed batches whose handler threw again.
+     */
+    private Long failedBatchCount;
+}
@@ -0,0 +1,35 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the size of a stream, as collected by the last run of RedisStreamRetention.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StreamRetentionStats {
+    /**
+     * The number of entries (XLEN) after trimming.
+     */
+    private Long length;
+
+    /**
+     * The memory used by the stream in bytes (MEMORY USAGE) after trimming.
+     */
+    private Long memoryUsage;
+
+    /**
+     * The number of entries removed since startup.
+     */
+    private Long trimmedCount;
+
+    /**
+     * The time of the last run, in epoch milliseconds.
+     */
+    private Long lastRunTime;
+}
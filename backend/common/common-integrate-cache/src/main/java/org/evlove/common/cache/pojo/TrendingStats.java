@@ -0,0 +1,50 @@
+package org.evlove.common.cache.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the statistics of the trending scores written by this instance, see RedisTrendingUtils.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TrendingStats {
+    /**
+     * The number of increments requested.
+     */
+    private Long incrementCount;
+
+    /**
+     * The number of member scores written, the increments of a member within a flush interval are written once.
+     */
+    private Long writtenCount;
+
+    /**
+     * The number of script calls that wrote increments.
+     */
+    private Long batchCount;
+
+    /**
+     * The number of batches deferred to the next flush because their sorted set was being rebased.
+     */
+    private Long deferredCount;
+
+    /**
+     * The number of batches that could not be written, their increments are lost.
+     */
+    private Long failedCount;
+
+    /**
+     * The number of members removed because their decayed weight became negligible.
+     */
+    private Long trimmedCount;
+
+    /**
+     * The number of rebases completed.
+     */
+    private Long rebaseCount;
+}
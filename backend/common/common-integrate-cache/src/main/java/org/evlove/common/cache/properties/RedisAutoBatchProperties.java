@@ -0,0 +1,52 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the auto-batching mode used by RedisStringUtils.get(key) and RedisHashUtils.getValue(key, field).
+ *
+ * Example:
+ * <pre>
+ * evlove:
+ *   cache:
+ *     auto-batch:
+ *       enabled: true
+ *       window: 2ms
+ *       max-batch-size: 128
+ * </pre>
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.auto-batch")
+public class RedisAutoBatchProperties {
+    /**
+     * Whether to merge concurrent single-key reads into one MGET/HMGET, disabled by default.
+     */
+    private Boolean enabled = false;
+
+    /**
+     * The longest time a read waits for other reads to join its batch.
+     */
+    private Duration window = Duration.ofMillis(2);
+
+    /**
+     * A batch is flushed immediately once this many reads are pending.
+     */
+    private Integer maxBatchSize = 128;
+
+    /**
+     * The maximum number of reads waiting to be flushed, reads beyond it are sent directly without batching.
+     */
+    private Integer maxPending = 10000;
+
+    /**
+     * The longest time a caller waits for the result of its batched read.
+     */
+    private Duration timeout = Duration.ofSeconds(5);
+}
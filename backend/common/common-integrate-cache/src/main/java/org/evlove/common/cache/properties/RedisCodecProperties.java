@@ -0,0 +1,27 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration of the value serialization used by RedisObjectUtils and JetCache remote values.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.codec")
+public class RedisCodecProperties {
+    /**
+     * The codec RedisObjectUtils writes values with: json (default, the legacy JSON text), jsonb, kryo or a custom codec.
+     * Values written by any other codec stay readable, so it can be switched in a rolling upgrade.
+     */
+    private String name = "json";
+
+    /**
+     * The codec used as JetCache value encoder when configured as `valueEncoder: bean:redisCodecSerialPolicy`,
+     * it must be self-describing (kryo or a custom codec).
+     */
+    private String jetcacheName = "kryo";
+}
@@ -0,0 +1,60 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Configuration of the transparent compression of large values written by RedisStringUtils and RedisObjectUtils.
+ *
+ * Example:
+ * <pre>
+ * evlove:
+ *   cache:
+ *     compression:
+ *       enabled: true
+ *       threshold: 16KB
+ *       dictionary: classpath:redis/compression.dict
+ *       metric-prefixes:
+ *         - ARTICLE_
+ * </pre>
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.compression")
+public class RedisCompressionProperties {
+    /**
+     * Whether to compress the values above the threshold, disabled by default.
+     */
+    private Boolean enabled = false;
+
+    /**
+     * Only the values larger than this size are compressed, smaller values are written as is.
+     */
+    private DataSize threshold = DataSize.ofKilobytes(16);
+
+    /**
+     * The compression level, from 1 (fastest) to 9 (smallest).
+     */
+    private Integer level = Deflater.BEST_SPEED;
+
+    /**
+     * Optional preset dictionary, for example sampled from typical values, it improves the ratio of similar JSON values.
+     * Notice: It must stay available as long as values compressed with it exist, the readers need the same dictionary.
+     */
+    private Resource dictionary;
+
+    /**
+     * The compression statistics are grouped by these key prefixes (the longest matching one),
+     * the keys matching none of them are grouped under "*".
+     */
+    private List<String> metricPrefixes = new ArrayList<>();
+}
@@ -0,0 +1,49 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the coalescing location ingestion of RedisGeoIngestor.
+ *
+ * Example:
+ * <pre>
+ * evlove:
+ *   cache:
+ *     geo:
+ *       ingest:
+ *         enabled: true
+ *         window: 1s
+ *         max-pending: 100000
+ * </pre>
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.geo.ingest")
+public class RedisGeoIngestProperties {
+    /**
+     * Whether to buffer the location updates and write only the latest position of each member, disabled by default:
+     * the updates are then written right away, one GEOADD each.
+     */
+    private Boolean enabled = false;
+
+    /**
+     * The buffered positions are written every window, a member updated several times within a window is written once.
+     */
+    private Duration window = Duration.ofSeconds(1);
+
+    /**
+     * The maximum number of members waiting to be written (for all the keys), the updates of further members are dropped.
+     */
+    private Integer maxPending = 100000;
+
+    /**
+     * The maximum number of members written by one GEOADD.
+     */
+    private Integer batchSize = 1000;
+}
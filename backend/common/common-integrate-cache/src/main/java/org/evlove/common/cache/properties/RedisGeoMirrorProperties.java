@@ -0,0 +1,62 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration of the in-process mirror of geo keys, see RedisGeoMirror.
+ *
+ * Example:
+ * <pre>
+ * evlove:
+ *   cache:
+ *     geo:
+ *       mirror:
+ *         enabled: true
+ *         keys:
+ *           - DRIVER_LOCATIONS
+ * </pre>
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.geo.mirror")
+public class RedisGeoMirrorProperties {
+    /**
+     * Whether to answer the searches of the mirrored keys from local memory, disabled by default.
+     */
+    private Boolean enabled = false;
+
+    /**
+     * The mirrored geo keys. The writes of these keys through RedisGeoUtils and RedisGeoIngestor are published to the mirrors,
+     * so the list must be the same on the writing and the mirroring instances.
+     */
+    private List<String> keys = new ArrayList<>();
+
+    /**
+     * The channel of the change notifications of the mirrored keys.
+     */
+    private String channel = "EVLOVE_GEO_MIRROR";
+
+    /**
+     * The size of the cells of the local grid index, in degrees (0.05: about 5.5 km of latitude).
+     */
+    private Double cellDegrees = 0.05D;
+
+    /**
+     * The number of members read by each ZSCAN when a key is loaded.
+     */
+    private Integer loadBatchSize = 10000;
+
+    /**
+     * How often the mirrored keys are loaded again, to catch up with the changes made without notification (other clients, expirations).
+     * A mirror whose last load is older than 1.5 resyncInterval is stale, its searches are sent to Redis.
+     */
+    private Duration resyncInterval = Duration.ofMinutes(1);
+}
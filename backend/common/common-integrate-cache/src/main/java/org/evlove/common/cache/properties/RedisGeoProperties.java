@@ -0,0 +1,66 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the geospatial operations of RedisGeoUtils.
+ *
+ * Example:
+ * <pre>
+ * evlove:
+ *   cache:
+ *     geo:
+ *       nearest-initial-radius: 1000
+ *       nearest-max-radius: 50000
+ * </pre>
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.geo")
+public class RedisGeoProperties {
+    /**
+     * The radius of the first search of a nearest query (in meters), when the density around the center is not known yet.
+     */
+    private Double nearestInitialRadius = 1000D;
+
+    /**
+     * The smallest radius of a nearest query, in meters.
+     */
+    private Double nearestMinRadius = 50D;
+
+    /**
+     * The largest radius of a nearest query (in meters), fewer members are returned when not enough are within it.
+     */
+    private Double nearestMaxRadius = 50000D;
+
+    /**
+     * The radius estimated from the density is multiplied by this margin, so that the first search usually finds enough members.
+     */
+    private Double nearestRadiusMargin = 1.25D;
+
+    /**
+     * The largest factor by which the radius grows between two searches of a nearest query.
+     */
+    private Double nearestMaxGrowth = 4D;
+
+    /**
+     * The densities are estimated per geohash cell of this precision (5: cells of about 5 km).
+     */
+    private Integer densityCellPrecision = 5;
+
+    /**
+     * How long a density estimate is kept.
+     */
+    private Duration densityTtl = Duration.ofMinutes(5);
+
+    /**
+     * The maximum number of density estimates kept, for all the keys.
+     */
+    private Long densityCacheSize = 10000L;
+}
@@ -0,0 +1,58 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the hot key detection and local promotion in the read methods of the RedisXxxUtils.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.hot-key")
+public class RedisHotKeyProperties {
+    /**
+     * Whether to detect hot keys and serve them from a local replica, disabled by default.
+     */
+    private Boolean enabled = false;
+
+    /**
+     * The ratio of reads counted by the sampler, from 0 to 1, the counts are scaled back by it.
+     */
+    private Double sampleRatio = 0.1D;
+
+    /**
+     * The frequencies are counted per window, a key is hot when it is read at least threshold times within one window.
+     */
+    private Duration window = Duration.ofSeconds(10);
+
+    /**
+     * The number of reads within one window from which a key is hot.
+     */
+    private Long threshold = 10000L;
+
+    /**
+     * The maximum number of keys promoted at the same time, the most frequent ones are kept.
+     */
+    private Integer topK = 32;
+
+    /**
+     * How long the local replica of a hot key is served before it is read from Redis again,
+     * that is, the maximum staleness of the writes made by other instances.
+     */
+    private Duration localTtl = Duration.ofSeconds(1);
+
+    /**
+     * The number of counters per row of the count-min sketch, rounded up to a power of 2, the larger the more accurate.
+     */
+    private Integer sketchWidth = 4096;
+
+    /**
+     * The number of rows (hash functions) of the count-min sketch.
+     */
+    private Integer sketchDepth = 4;
+}
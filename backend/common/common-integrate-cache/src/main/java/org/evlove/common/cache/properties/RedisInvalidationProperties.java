@@ -0,0 +1,53 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the local cache invalidation bus between the instances, see RedisInvalidationBus.
+ *
+ * Example:
+ * <pre>
+ * evlove:
+ *   cache:
+ *     invalidation:
+ *       enabled: true
+ *       coalesce-window: 5ms
+ *       max-batch-size: 500
+ * </pre>
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.invalidation")
+public class RedisInvalidationProperties {
+    /**
+     * Whether to broadcast the local cache invalidations to the other instances, disabled by default.
+     */
+    private Boolean enabled = false;
+
+    /**
+     * The channel of the invalidation messages, shared by all the instances of the application.
+     */
+    private String channel = "EVLOVE_CACHE_INVALIDATION";
+
+    /**
+     * The invalidations requested within this window are sent together in one message.
+     */
+    private Duration coalesceWindow = Duration.ofMillis(5);
+
+    /**
+     * The maximum number of keys and prefixes in one message, a full batch is sent without waiting for the end of the window.
+     */
+    private Integer maxBatchSize = 500;
+
+    /**
+     * Whether the keys modified by the write methods of the RedisXxxUtils are also invalidated on the other instances.
+     * The near cache is already invalidated by Redis, but the hot key replicas and the registered listeners are not.
+     */
+    private Boolean broadcastWrites = false;
+}
@@ -0,0 +1,43 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration of RedisObjectUtils.getOrLoad, the stampede-safe read-through of values built from the database.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.load")
+public class RedisLoadProperties {
+    /**
+     * The eagerness of the probabilistic early refresh (XFetch), 0 disables it, larger than 1 refreshes earlier.
+     */
+    private Double beta = 1.0D;
+
+    /**
+     * The time the loading instance holds the Redis lease, it should be longer than the slowest loader.
+     * The other instances wait for the value at most this long, then load it themselves.
+     */
+    private Duration leaseTime = Duration.ofSeconds(10);
+
+    /**
+     * How often the waiting instances check whether the value has been loaded.
+     */
+    private Duration pollInterval = Duration.ofMillis(50);
+
+    /**
+     * How long a miss of the loader (null) is cached, so that a missing row is not queried again and again, 0 disables it.
+     */
+    private Duration negativeTtl = Duration.ofSeconds(30);
+
+    /**
+     * The suffix of the lease key, appended to the key of the value.
+     */
+    private String leaseSuffix = "_LOAD_LEASE";
+}
@@ -0,0 +1,63 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration of the near cache (client-side caching) used by the read methods of the RedisXxxUtils.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.near-cache")
+public class RedisNearCacheProperties {
+    /**
+     * Whether to keep the values of the opted-in keys in local memory, disabled by default.
+     */
+    private Boolean enabled = false;
+
+    /**
+     * Only the keys starting with one of these prefixes are cached locally.
+     */
+    private List<String> prefixes = new ArrayList<>();
+
+    /**
+     * How Redis tracks the keys, see TrackingMode.
+     */
+    private TrackingMode trackingMode = TrackingMode.BCAST;
+
+    /**
+     * The maximum number of keys cached locally.
+     */
+    private Long maximumSize = 10000L;
+
+    /**
+     * A safety net, the local value expires after this time even if no invalidation message is received.
+     */
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+    /**
+     * In cluster deployment mode, how often the cluster topology is refreshed: when a slot moves,
+     * the local values are evicted and tracking is enabled on the new masters.
+     */
+    private Duration topologyCheckInterval = Duration.ofSeconds(30);
+
+    public enum TrackingMode {
+        /**
+         * Broadcasting mode, Redis sends invalidation messages for every modified key matching the prefixes,
+         * costs no memory on the Redis side.
+         */
+        BCAST,
+        /**
+         * Default mode, Redis remembers the keys read by this instance and only sends invalidation messages for them,
+         * costs memory on the Redis side.
+         */
+        DEFAULT
+    }
+}
@@ -0,0 +1,64 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the publish/subscribe of RedisPubSubUtil, see RedisPubSubDispatcher and RedisShardedPubSub.
+ *
+ * Example:
+ * <pre>
+ * evlove:
+ *   cache:
+ *     pubsub:
+ *       dispatch-enabled: true
+ *       dispatch-threads: 4
+ *       queue-capacity: 10000
+ * </pre>
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.pubsub")
+public class RedisPubSubProperties {
+    /**
+     * Whether to hand the received messages to an executor, instead of calling the listener on the Lettuce event loop thread.
+     * Disabled by default: a slow listener then stalls every subscription of the connection.
+     */
+    private Boolean dispatchEnabled = false;
+
+    /**
+     * The number of dispatch threads, when no executor bean is configured.
+     */
+    private Integer dispatchThreads = 4;
+
+    /**
+     * The name of an Executor bean to run the listener on, instead of the dispatch threads.
+     */
+    private String executorBean;
+
+    /**
+     * The maximum number of messages waiting to be dispatched per channel, further messages are dropped (and counted).
+     */
+    private Integer queueCapacity = 10000;
+
+    /**
+     * The maximum number of messages of a channel handled in a row, before the thread is given to another channel.
+     */
+    private Integer drainBatch = 64;
+
+    /**
+     * Whether RedisPubSubUtil publishes and subscribes to channels with sharded pub/sub (SPUBLISH/SSUBSCRIBE, Redis 7.0+),
+     * see RedisShardedPubSub. The pattern subscriptions always use classic pub/sub.
+     */
+    private Boolean sharded = false;
+
+    /**
+     * How often the cluster topology is refreshed, and the sharded subscriptions are moved to the node owning their slot.
+     */
+    private Duration topologyCheckInterval = Duration.ofSeconds(5);
+}
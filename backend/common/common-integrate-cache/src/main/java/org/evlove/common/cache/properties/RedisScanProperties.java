@@ -0,0 +1,35 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration of the SCAN based key search and the bulk operations by pattern in RedisGenericUtils.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.scan")
+public class RedisScanProperties {
+    /**
+     * The COUNT hint of each SCAN call, that is, roughly how many keys Redis examines per call.
+     */
+    private Long count = 1000L;
+
+    /**
+     * The number of keys per UNLINK command or per pipelined EXPIRE chunk in the bulk operations.
+     */
+    private Integer chunkSize = 500;
+
+    /**
+     * The maximum number of chunks being executed at the same time in the bulk operations.
+     */
+    private Integer maxInFlight = 4;
+
+    /**
+     * The maximum number of keys processed per second by the bulk operations, 0 means unlimited.
+     */
+    private Integer maxKeysPerSecond = 0;
+}
@@ -0,0 +1,87 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration of the sorted set operations of RedisSortSetUtils.
+ *
+ * Example:
+ * <pre>
+ * evlove:
+ *   cache:
+ *     sort-set:
+ *       top-page-cache-enabled: true
+ *       top-pages: 5
+ *       top-page-ttl: 1s
+ *       bulk-chunk-size: 1000
+ *       bulk-in-flight: 16
+ * </pre>
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.sort-set")
+public class RedisSortSetProperties {
+    /**
+     * Whether to keep the first pages of the sorted sets in local memory for a short time, disabled by default.
+     */
+    private Boolean topPageCacheEnabled = false;
+
+    /**
+     * The number of pages from the top (in either order) cached locally, the deeper pages are always read from Redis.
+     */
+    private Integer topPages = 5;
+
+    /**
+     * How long a page is cached, the changes of the sorted set made by other instances are seen after at most this time.
+     */
+    private Duration topPageTtl = Duration.ofSeconds(1);
+
+    /**
+     * The maximum number of pages cached locally, for all the sorted sets.
+     */
+    private Long topPageCacheSize = 1000L;
+
+    /**
+     * The number of members written by each ZADD of a bulk load.
+     */
+    private Integer bulkChunkSize = 1000;
+
+    /**
+     * The maximum number of ZADD chunks of a bulk load sent and not acknowledged yet, it bounds the memory used by the load.
+     */
+    private Integer bulkInFlight = 16;
+
+    /**
+     * The suffix of the temporary key a replacing bulk load builds the sorted set into, before renaming it.
+     */
+    private String bulkTempSuffix = "_LOADING";
+
+    /**
+     * How often the progress of a bulk load is reported.
+     */
+    private Duration bulkProgressInterval = Duration.ofSeconds(1);
+
+    /**
+     * The default number of shards (ie sorted set keys) of a sharded sorted set, see RedisShardedSortSetUtils.
+     * Notice: Changing it moves the members to other shards, the sorted sets already written must be loaded again.
+     */
+    private Integer shards = 16;
+
+    /**
+     * The number of shards of specific sharded sorted sets, keyed by their key.
+     */
+    private Map<String, Integer> keyShards = new LinkedHashMap<>();
+
+    /**
+     * The key of a shard is named key + this suffix + shard index.
+     */
+    private String shardSuffix = "_SHARD_";
+}
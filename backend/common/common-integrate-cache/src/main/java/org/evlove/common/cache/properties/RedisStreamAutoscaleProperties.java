@@ -0,0 +1,45 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the autoscaling of the stream consumers, see RedisStreamAutoscaler.
+ * It applies to the subscriptions made with concurrency bounds, such as RedisMessageQueueUtil.subscribe(queue, group, min, max, handler).
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.stream.autoscale")
+public class RedisStreamAutoscaleProperties {
+    /**
+     * How often the lag of the consumer groups is checked.
+     */
+    private Duration interval = Duration.ofSeconds(10);
+
+    /**
+     * The backlog (messages not yet delivered to the group) one worker is expected to absorb within an interval.
+     * The desired number of workers is backlog / this value, within the bounds of the subscription.
+     */
+    private Long backlogPerWorker = 1000L;
+
+    /**
+     * The number of consecutive checks that must ask for more workers before scaling up.
+     */
+    private Integer scaleUpChecks = 1;
+
+    /**
+     * The number of consecutive checks that must ask for fewer workers before scaling down by one.
+     * Scaling down slowly avoids flapping when the backlog oscillates.
+     */
+    private Integer scaleDownChecks = 6;
+
+    /**
+     * Scaling down only happens when the backlog is below this fraction of what the remaining workers can absorb.
+     */
+    private Double scaleDownRatio = 0.5;
+}
@@ -0,0 +1,37 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the consumer workers run by RedisStreamConsumerContainer.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.stream.consumer")
+public class RedisStreamConsumerProperties {
+    /**
+     * The maximum number of messages read by one XREADGROUP and handed to the handler as one batch.
+     */
+    private Integer batchSize = 100;
+
+    /**
+     * How long XREADGROUP blocks waiting for new messages, it also bounds how long a stopping worker takes to notice it.
+     */
+    private Duration blockTimeout = Duration.ofSeconds(2);
+
+    /**
+     * How long a worker waits before reading again after a Redis error.
+     */
+    private Duration retryInterval = Duration.ofSeconds(1);
+
+    /**
+     * On shutdown, how long the workers are given to finish (handle and acknowledge) the batches in progress.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+}
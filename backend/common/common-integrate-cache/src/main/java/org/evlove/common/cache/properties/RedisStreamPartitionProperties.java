@@ -0,0 +1,62 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration of the partitioned message queues, see RedisStreamPartitioner and RedisStreamPartitionCoordinator.
+ *
+ * Example:
+ * <pre>
+ * evlove:
+ *   cache:
+ *     stream:
+ *       partition:
+ *         partitions: 16
+ *         queue-partitions:
+ *           ORDER_EVENTS: 32
+ * </pre>
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.stream.partition")
+public class RedisStreamPartitionProperties {
+    /**
+     * The default number of partitions (ie stream keys) of a partitioned queue.
+     * Notice: Changing it moves the partition keys to other partitions, the messages already queued are not moved.
+     */
+    private Integer partitions = 8;
+
+    /**
+     * The number of partitions of specific queues, keyed by the name of the message queue.
+     */
+    private Map<String, Integer> queuePartitions = new LinkedHashMap<>();
+
+    /**
+     * The stream key of a partition is named queue name + this suffix + partition index.
+     */
+    private String partitionSuffix = "_P";
+
+    /**
+     * The members of the consumer group of a partitioned queue are registered in a sorted set named
+     * queue name + "_" + group name + this suffix.
+     */
+    private String membersSuffix = "_PARTITION_MEMBERS";
+
+    /**
+     * How often each member renews its registration and the partitions are reassigned.
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(5);
+
+    /**
+     * A member which did not renew its registration for this long is considered gone, its partitions are reassigned.
+     */
+    private Duration memberTimeout = Duration.ofSeconds(20);
+}
@@ -0,0 +1,65 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the batching stream producer used by RedisMessageQueueUtil.pushMessageAsync.
+ *
+ * Example:
+ * <pre>
+ * evlove:
+ *   cache:
+ *     stream:
+ *       producer:
+ *         enabled: true
+ *         batch-size: 256
+ *         linger: 5ms
+ *         max-len: 1000000
+ * </pre>
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.stream.producer")
+public class RedisStreamProducerProperties {
+    /**
+     * Whether to buffer the messages and send them as pipelined XADDs, disabled by default (one XADD per message).
+     */
+    private Boolean enabled = false;
+
+    /**
+     * A batch is flushed immediately once this many messages are buffered.
+     */
+    private Integer batchSize = 256;
+
+    /**
+     * The longest time a message waits for other messages to join its batch.
+     */
+    private Duration linger = Duration.ofMillis(5);
+
+    /**
+     * The maximum number of messages buffered and not yet sent.
+     */
+    private Integer bufferSize = 10000;
+
+    /**
+     * When the buffer is full, the producer thread waits this long for room, then the message is rejected.
+     */
+    private Duration bufferTimeout = Duration.ofSeconds(1);
+
+    /**
+     * Trim the stream inline to about this length (XADD MAXLEN ~), null means no limit.
+     */
+    private Long maxLen;
+
+    /**
+     * Trim the entries older than this inline (XADD MINID ~), null means no limit.
+     * Notice: Redis applies only one trimming strategy per XADD, maxLen takes precedence.
+     */
+    private Duration maxAge;
+}
@@ -0,0 +1,53 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the recovery of the pending messages left by dead or failing consumers, see RedisStreamRecovery.
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.stream.recovery")
+public class RedisStreamRecoveryProperties {
+    /**
+     * Whether to recover the pending messages of the subscriptions periodically, disabled by default.
+     */
+    private Boolean enabled = false;
+
+    /**
+     * How often the pending messages of each subscription are checked.
+     */
+    private Duration interval = Duration.ofSeconds(30);
+
+    /**
+     * Only the messages not delivered again for this long are recovered, their consumer is considered dead.
+     * It must be longer than the slowest handling of a batch.
+     */
+    private Duration minIdle = Duration.ofMinutes(5);
+
+    /**
+     * The number of pending messages examined and claimed at once.
+     */
+    private Integer batchSize = 100;
+
+    /**
+     * The maximum number of batches recovered per check of a subscription, the rest waits for the next check.
+     */
+    private Integer maxBatchesPerRun = 10;
+
+    /**
+     * A message delivered this many times is considered poison, it is moved to the dead-letter stream instead of being retried.
+     */
+    private Long maxDeliveries = 5L;
+
+    /**
+     * The dead-letter stream of a queue is named queue name + this suffix.
+     */
+    private String deadLetterSuffix = "_DEAD_LETTER";
+}
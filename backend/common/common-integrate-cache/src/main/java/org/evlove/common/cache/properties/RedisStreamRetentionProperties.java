@@ -0,0 +1,84 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration of the background trimming of the streams, see RedisStreamRetention.
+ *
+ * Example:
+ * <pre>
+ * evlove:
+ *   cache:
+ *     stream:
+ *       retention:
+ *         enabled: true
+ *         streams:
+ *           ORDER_EVENTS:
+ *             max-len: 1000000
+ *             trim-consumed: true
+ * </pre>
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.stream.retention")
+public class RedisStreamRetentionProperties {
+    /**
+     * Whether to trim the configured streams periodically, disabled by default.
+     */
+    private Boolean enabled = false;
+
+    /**
+     * How often the streams are trimmed and their length and memory usage are collected.
+     */
+    private Duration interval = Duration.ofMinutes(1);
+
+    /**
+     * The maximum number of entries removed by one XTRIM (LIMIT), so that a single command never blocks Redis for long.
+     * It must not be smaller than stream-node-max-entries of the Redis server (100 by default),
+     * as the approximate trimming only removes whole nodes.
+     */
+    private Long trimLimit = 1000L;
+
+    /**
+     * The maximum number of XTRIM increments per stream and per run, the rest is trimmed by the next run.
+     */
+    private Integer maxIncrementsPerRun = 100;
+
+    /**
+     * The pause between two XTRIM increments of the same stream.
+     */
+    private Duration incrementPause = Duration.ofMillis(5);
+
+    /**
+     * The retention of each stream, keyed by the name of the message queue.
+     */
+    private Map<String, Retention> streams = new LinkedHashMap<>();
+
+    @Data
+    public static class Retention {
+        /**
+         * Keep about this many entries (XTRIM MAXLEN ~), null means no limit.
+         */
+        private Long maxLen;
+
+        /**
+         * Remove the entries older than this (XTRIM MINID ~), null means no limit.
+         */
+        private Duration maxAge;
+
+        /**
+         * Remove the entries consumed by every consumer group: those before the oldest pending message,
+         * or before the last delivered message when nothing is pending (XTRIM MINID ~).
+         * A stream without consumer group is never trimmed by this rule.
+         */
+        private Boolean trimConsumed = false;
+    }
+}
@@ -0,0 +1,81 @@
+package org.evlove.common.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration of the time-decayed trending scores of RedisTrendingUtils.
+ *
+ * Example:
+ * <pre>
+ * evlove:
+ *   cache:
+ *     trending:
+ *       enabled: true
+ *       half-life: 6h
+ *       keys:
+ *         - TRENDING_ARTICLES
+ * </pre>
+ *
+ * @author massaton.github.io
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "evlove.cache.trending")
+public class RedisTrendingProperties {
+    /**
+     * Whether to enable the trending scores, disabled by default.
+     */
+    private Boolean enabled = false;
+
+    /**
+     * The time after which an increment weighs half as much as a new one.
+     */
+    private Duration halfLife = Duration.ofHours(1);
+
+    /**
+     * The trending sorted sets maintained by this instance, besides the ones it increments.
+     */
+    private List<String> keys = new ArrayList<>();
+
+    /**
+     * The increments requested within this interval are summed per member and written together.
+     */
+    private Duration flushInterval = Duration.ofMillis(100);
+
+    /**
+     * The maximum number of members written by one script call.
+     */
+    private Integer flushBatchSize = 500;
+
+    /**
+     * How often the trending sorted sets are rebased and trimmed.
+     */
+    private Duration maintenanceInterval = Duration.ofMinutes(1);
+
+    /**
+     * The scores are rebased to a newer epoch once the decay since the epoch exceeds this value (in natural log units),
+     * it keeps the scores small and precise.
+     */
+    private Double rebaseThreshold = 100D;
+
+    /**
+     * The members whose decayed weight fell below this value are removed, 0 to keep all the members.
+     */
+    private Double trimBelow = 0.01D;
+
+    /**
+     * The number of members rebased or trimmed by one script call.
+     */
+    private Integer maintenanceChunkSize = 1000;
+
+    /**
+     * The suffix of the hash holding the epoch of each trending sorted set, in the same slot as the sorted set.
+     */
+    private String stateSuffix = "_TRENDING";
+}
@@ -0,0 +1,131 @@
+package org.evlove.common.cache.stream;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The consumers of one consumer group on a partitioned queue in this instance, created by RedisStreamPartitionCoordinator.subscribe.
+ * <p>
+ * This instance consumes only the partitions assigned to it, each one with its own RedisStreamSubscription,
+ * and the assignment follows the members joining or leaving the group.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+public class RedisPartitionedSubscription {
+
+    private final String queueName;
+    private final String groupName;
+    private final int concurrency;
+    private final RedisMessageHandler handler;
+    private final String memberId;
+    private final RedisStreamPartitionCoordinator coordinator;
+
+    /**
+     * The subscriptions of the partitions assigned to this instance, keyed by partition index.
+     */
+    private final Map<Integer, RedisStreamSubscription> partitions = new TreeMap<>();
+    private volatile boolean running = true;
+
+    RedisPartitionedSubscription(String queueName, String groupName, int concurrency, RedisMessageHandler handler,
+                                 String memberId, RedisStreamPartitionCoordinator coordinator) {
+        this.queueName = queueName;
+        this.groupName = groupName;
+        this.concurrency = concurrency;
+        this.handler = handler;
+        this.memberId = memberId;
+        this.coordinator = coordinator;
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * The indexes of the partitions currently consumed by this instance.
+     */
+    public synchronized Set<Integer> getAssignedPartitions() {
+        return new HashSet<>(partitions.keySet());
+    }
+
+    /**
+     * Stop consuming gracefully and leave the group, the partitions are reassigned to the other members.
+     */
+    public void stop() {
+        coordinator.leave(this);
+    }
+
+    /**
+     * Consume the partitions assigned to this member: partition p goes to the member at index p % members in the sorted member list.
+     * The new partitions are started, and the revoked ones are returned to be stopped by the caller outside the lock,
+     * because stopping waits for their batches in progress (up to shutdownTimeout).
+     */
+    synchronized List<RedisStreamSubscription> rebalance(List<String> members, int partitionCount) {
+        if (!running) {
+            return List.of();
+        }
+        int index = members.indexOf(memberId);
+        Set<Integer> assigned = new HashSet<>();
+        if (index >= 0) {
+            for (int p = index; p < partitionCount; p += members.size()) {
+                assigned.add(p);
+            }
+        }
+        if (assigned.equals(partitions.keySet())) {
+            return List.of();
+        }
+
+        List<RedisStreamSubscription> revoked = new ArrayList<>();
+        partitions.entrySet().removeIf(entry -> {
+            if (assigned.contains(entry.getKey())) {
+                return false;
+            }
+            revoked.add(entry.getValue());
+            return true;
+        });
+        for (Integer partition : assigned) {
+            if (!partitions.containsKey(partition)) {
+                partitions.put(partition, coordinator.startPartition(this, partition));
+            }
+        }
+        log.info("Redis stream partitions reassigned - queue:{} group:{} member:{} members:{} partitions:{}",
+                queueName, groupName, memberId, members.size(), partitions.keySet());
+        return revoked;
+    }
+
+    /**
+     * Stop every partition, return their subscriptions so that they are stopped together.
+     */
+    synchronized List<RedisStreamSubscription> close() {
+        running = false;
+        List<RedisStreamSubscription> closed = new ArrayList<>(partitions.values());
+        partitions.clear();
+        return closed;
+    }
+
+    int getConcurrency() {
+        return concurrency;
+    }
+
+    RedisMessageHandler getHandler() {
+        return handler;
+    }
+}
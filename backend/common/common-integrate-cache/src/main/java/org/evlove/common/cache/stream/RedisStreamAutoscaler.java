@@ -0,0 +1,164 @@
+package org.evlove.common.cache.stream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.pojo.StreamAutoscaleStats;
+import org.evlove.common.cache.pojo.StreamGroupInfo;
+import org.evlove.common.cache.properties.RedisStreamAutoscaleProperties;
+import org.evlove.common.cache.utils.RedisMessageQueueUtil;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Scale the workers of the autoscaled subscriptions with the backlog of their consumer group.
+ * <p>
+ * On every check, the lag (messages not yet delivered to the group) and pending count are read with XINFO GROUPS,
+ * and the desired number of workers is lag / backlogPerWorker, within the bounds of the subscription.
+ * Scaling up goes straight to the desired number once scaleUpChecks consecutive checks asked for it,
+ * scaling down removes one worker at a time after scaleDownChecks consecutive checks, and only when the backlog is well below
+ * what the remaining workers can absorb (scaleDownRatio), so that the number of workers does not flap.
+ * The lag is reported by Redis 7.0+, on older servers the pending count is used instead.
+ * <p>
+ * The lag is shared by all the instances consuming the group, each one scales its own workers.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisStreamAutoscaler {
+
+    @Resource
+    private RedisStreamAutoscaleProperties properties;
+
+    @Resource
+    private RedisStreamConsumerContainer consumerContainer;
+
+    @Resource
+    private RedisMessageQueueUtil redisMessageQueueUtil;
+
+    private final Map<RedisStreamSubscription, State> states = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        long intervalMillis = properties.getInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-stream-autoscaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * The state of each autoscaled subscription of this instance, at the last check.
+     */
+    public List<StreamAutoscaleStats> getStats() {
+        List<StreamAutoscaleStats> stats = new ArrayList<>(states.size());
+        states.forEach((subscription, state) -> stats.add(new StreamAutoscaleStats(
+                subscription.getQueueName(),
+                subscription.getGroupName(),
+                subscription.getConcurrency(),
+                state.lag,
+                state.pending,
+                state.consumptionRate,
+                state.scaleUpCount.sum(),
+                state.scaleDownCount.sum()
+        )));
+        return stats;
+    }
+
+    private void check() {
+        states.keySet().removeIf(subscription -> !subscription.isRunning());
+        for (RedisStreamSubscription subscription : consumerContainer.getSubscriptions()) {
+            if (!subscription.isAutoscaled() || !subscription.isRunning()) {
+                continue;
+            }
+            try {
+                this.check(subscription, states.computeIfAbsent(subscription, k -> new State(k.getHandledCount())));
+            } catch (Exception e) {
+                log.warn("Redis stream autoscaling check failed - queue:{} group:{}",
+                        subscription.getQueueName(), subscription.getGroupName(), e);
+            }
+        }
+    }
+
+    private void check(RedisStreamSubscription subscription, State state) {
+        StreamGroupInfo group = redisMessageQueueUtil.getConsumerGroups(subscription.getQueueName()).stream()
+                .filter(info -> subscription.getGroupName().equals(info.getName()))
+                .findFirst()
+                .orElse(null);
+        if (group == null) {
+            return;
+        }
+
+        long handled = subscription.getHandledCount();
+        state.consumptionRate = (handled - state.lastHandledCount) * 1000D / properties.getInterval().toMillis();
+        state.lastHandledCount = handled;
+        state.lag = group.getLag();
+        state.pending = group.getPending();
+
+        long backlog = group.getLag() != null ? group.getLag() : group.getPending();
+        int current = subscription.getConcurrency();
+        long desired = Math.min(subscription.getMaxConcurrency(),
+                Math.max(subscription.getMinConcurrency(), (backlog + properties.getBacklogPerWorker() - 1) / properties.getBacklogPerWorker()));
+
+        if (desired > current) {
+            state.downChecks = 0;
+            if (++state.upChecks >= properties.getScaleUpChecks()) {
+                state.upChecks = 0;
+                subscription.resize((int) desired);
+                state.scaleUpCount.increment();
+                log.info("Redis stream consumers scaled up - queue:{} group:{} backlog:{} concurrency:{}->{}",
+                        subscription.getQueueName(), subscription.getGroupName(), backlog, current, desired);
+            }
+        } else if (desired < current
+                && backlog < (current - 1) * properties.getBacklogPerWorker() * properties.getScaleDownRatio()) {
+            state.upChecks = 0;
+            if (++state.downChecks >= properties.getScaleDownChecks()) {
+                state.downChecks = 0;
+                subscription.resize(current - 1);
+                state.scaleDownCount.increment();
+                log.info("Redis stream consumers scaled down - queue:{} group:{} backlog:{} concurrency:{}->{}",
+                        subscription.getQueueName(), subscription.getGroupName(), backlog, current, current - 1);
+            }
+        } else {
+            state.upChecks = 0;
+            state.downChecks = 0;
+        }
+    }
+
+    /**
+     * Only accessed by the autoscaler thread, except for the statistics.
+     */
+    private static class State {
+        private long lastHandledCount;
+        private int upChecks;
+        private int downChecks;
+        private volatile Long lag;
+        private volatile Long pending;
+        private volatile Double consumptionRate = 0D;
+        private final LongAdder scaleUpCount = new LongAdder();
+        private final LongAdder scaleDownCount = new LongAdder();
+
+        private State(long handledCount) {
+            this.lastHandledCount = handledCount;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.evlove.common.cache.stream;
+
+import io.lettuce.core.StreamMessage;
+import org.evlove.common.cache.pojo.RedisMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handle the raw stream entries read by the workers and the recovery,
+ * adapting them to a RedisMessageHandler (text fields) or a RedisTypedMessageHandler (binary payload).
+ *
+ * @author massaton.github.io
+ */
+@FunctionalInterface
+interface RedisStreamBatchHandler {
+
+    /**
+     * Handle a batch of stream entries, see RedisMessageHandler.handle for the acknowledgement.
+     */
+    void handle(List<StreamMessage<byte[], byte[]>> messages);
+
+    static RedisStreamBatchHandler of(RedisMessageHandler handler) {
+        return messages -> {
+            List<RedisMessage> batch = new ArrayList<>(messages.size());
+            for (StreamMessage<byte[], byte[]> message : messages) {
+                Map<String, String> content = new LinkedHashMap<>(message.getBody().size() * 2);
+                message.getBody().forEach((field, value) -> content.put(
+                        new String(field, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8)));
+                batch.add(new RedisMessage(message.getId(), content));
+            }
+            handler.handle(batch);
+        };
+    }
+}
@@ -0,0 +1,189 @@
+package org.evlove.common.cache.stream;
+
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.api.async.RedisStreamAsyncCommands;
+import io.lettuce.core.api.sync.RedisStreamCommands;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.RedisConnectionProvider;
+import org.evlove.common.cache.codec.RedisMessagePayloadCodec;
+import org.evlove.common.cache.pojo.RedisTypedMessage;
+import org.evlove.common.cache.properties.RedisStreamConsumerProperties;
+import org.evlove.common.cache.properties.RedisStreamRecoveryProperties;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Runs and manages the consumer workers of the stream consumer groups, see RedisStreamSubscription.
+ * Usually used through RedisMessageQueueUtil.subscribe, which also creates the consumer group.
+ * <p>
+ * The workers use XREADGROUP BLOCK on dedicated connections, so they never stall the shared multiplexed connection.
+ * On shutdown, every subscription is stopped gracefully: the batches in progress are handled and acknowledged first.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisStreamConsumerContainer {
+
+    @Resource
+    private RedisStreamConsumerProperties properties;
+
+    @Resource
+    private RedisConnectionProvider connectionProvider;
+
+    @Resource
+    private RedisMessagePayloadCodec payloadCodec;
+
+    @Resource
+    private RedisStreamRecoveryProperties recoveryProperties;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_ASYNC_COMMANDS)
+    private RedisStreamAsyncCommands<String, String> redisStreamAsyncCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_SYNC_COMMANDS)
+    private RedisStreamCommands<byte[], byte[]> redisBinaryStreamCommands;
+
+    /**
+     * The consumer names of this instance start with it (pid@hostname), so that they do not collide with other instances.
+     */
+    private final String instanceName = ManagementFactory.getRuntimeMXBean().getName();
+
+    private final List<RedisStreamSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Start consumer workers for an existing consumer group.
+     *
+     * @param queueName The name of the message queue (ie key)
+     * @param groupName Consumer group name
+     * @param concurrency The number of workers, each one with its own connection
+     * @param handler Handle the batches of messages
+     * @return the subscription, which can be stopped on its own
+     */
+    public RedisStreamSubscription subscribe(String queueName, String groupName, int concurrency, RedisMessageHandler handler) {
+        return this.subscribeBatch(queueName, groupName, concurrency, RedisStreamBatchHandler.of(handler));
+    }
+
+    /**
+     * Start consumer workers of typed messages for an existing consumer group, see RedisMessageQueueUtil.push.
+     * A message which cannot be decoded (not a typed message, or not of the payload class) is copied to the dead-letter stream
+     * (queue name + deadLetterSuffix, see RedisStreamRecovery) and acknowledged, the other messages of its batch are handled.
+     *
+     * @param queueName The name of the message queue (ie key)
+     * @param groupName Consumer group name
+     * @param concurrency The number of workers, each one with its own connection
+     * @param payloadClass The type of the payloads
+     * @param handler Handle the batches of messages
+     * @return the subscription, which can be stopped on its own
+     */
+    public <T> RedisStreamSubscription subscribe(String queueName, String groupName, int concurrency,
+                                                 Class<T> payloadClass, RedisTypedMessageHandler<T> handler) {
+        return this.subscribeBatch(queueName, groupName, concurrency, messages -> {
+            List<RedisTypedMessage<T>> batch = new ArrayList<>(messages.size());
+            for (StreamMessage<byte[], byte[]> message : messages) {
+                byte[] bytes = message.getBody().entrySet().stream()
+                        .filter(entry -> Arrays.equals(entry.getKey(), RedisMessagePayloadCodec.PAYLOAD_FIELD_BYTES))
+                        .map(Map.Entry::getValue)
+                        .findFirst()
+                        .orElse(null);
+                T payload;
+                try {
+                    payload = payloadCodec.decode(queueName, bytes, payloadClass);
+                } catch (RuntimeException e) {
+                    this.deadLetter(queueName, groupName, message, e);
+                    continue;
+                }
+                batch.add(new RedisTypedMessage<>(message.getId(), payloadCodec.getSchemaVersion(bytes), payload));
+            }
+            if (!batch.isEmpty()) {
+                handler.handle(batch);
+            }
+        });
+    }
+
+    RedisStreamSubscription subscribeBatch(String queueName, String groupName, int concurrency, RedisStreamBatchHandler handler) {
+        RedisStreamSubscription subscription = new RedisStreamSubscription(
+                queueName,
+                groupName,
+                handler,
+                properties,
+                connectionProvider,
+                redisStreamAsyncCommands,
+                groupName + "-" + instanceName
+        );
+        subscription.start(concurrency);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Copy an undecodable message to the dead-letter stream, then acknowledge it, so that a failure of its batch does not copy it again.
+     */
+    private void deadLetter(String queueName, String groupName, StreamMessage<byte[], byte[]> message, Exception cause) {
+        Map<byte[], byte[]> body = new LinkedHashMap<>(message.getBody());
+        body.put(bytes(RedisStreamRecovery.FIELD_ORIGINAL_ID), bytes(message.getId()));
+        body.put(bytes(RedisStreamRecovery.FIELD_GROUP), bytes(groupName));
+        redisBinaryStreamCommands.xadd(bytes(queueName + recoveryProperties.getDeadLetterSuffix()), body);
+        redisBinaryStreamCommands.xack(bytes(queueName), bytes(groupName), message.getId());
+        log.warn("Redis stream message not decodable, moved to the dead-letter stream - queue:{} group:{} id:{}",
+                queueName, groupName, message.getId(), cause);
+    }
+
+    /**
+     * Start consumer workers for an existing consumer group, their number following the lag of the group, see RedisStreamAutoscaler.
+     *
+     * @param queueName The name of the message queue (ie key)
+     * @param groupName Consumer group name
+     * @param minConcurrency The number of workers at startup and when there is no backlog
+     * @param maxConcurrency The largest number of workers
+     * @param handler Handle the batches of messages
+     * @return the subscription, which can be stopped on its own
+     */
+    public RedisStreamSubscription subscribe(String queueName, String groupName, int minConcurrency, int maxConcurrency,
+                                             RedisMessageHandler handler) {
+        if (minConcurrency < 1 || maxConcurrency < minConcurrency) {
+            throw new IllegalArgumentException("Invalid concurrency bounds: " + minConcurrency + ".." + maxConcurrency);
+        }
+        RedisStreamSubscription subscription = this.subscribe(queueName, groupName, minConcurrency, handler);
+        subscription.setConcurrencyBounds(minConcurrency, maxConcurrency);
+        return subscription;
+    }
+
+    public List<RedisStreamSubscription> getSubscriptions() {
+        return subscriptions;
+    }
+
+    /**
+     * Stop subscriptions gracefully within the same timeout, and forget them.
+     */
+    void unsubscribe(Collection<RedisStreamSubscription> stopped) {
+        stopped.forEach(RedisStreamSubscription::signalStop);
+        long deadlineNanos = System.nanoTime() + properties.getShutdownTimeout().toNanos();
+        stopped.forEach(subscription -> subscription.awaitTermination(deadlineNanos));
+        subscriptions.removeAll(stopped);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // Signal every worker first, so that they all drain within the same timeout
+        subscriptions.forEach(RedisStreamSubscription::signalStop);
+        long deadlineNanos = System.nanoTime() + properties.getShutdownTimeout().toNanos();
+        subscriptions.forEach(subscription -> subscription.awaitTermination(deadlineNanos));
+        subscriptions.clear();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
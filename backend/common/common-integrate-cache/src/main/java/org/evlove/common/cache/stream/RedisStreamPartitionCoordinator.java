@@ -0,0 +1,169 @@
+package org.evlove.common.cache.stream;
+
+import io.lettuce.core.Range;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.properties.RedisStreamPartitionProperties;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns the partitions of the partitioned queues to the members of their consumer groups, see RedisPartitionedSubscription.
+ * Usually used through RedisMessageQueueUtil.subscribePartitioned, which also creates the consumer group on every partition.
+ * <p>
+ * Each member registers itself in a sorted set (queue name + "_" + group name + membersSuffix) scored by the time of its last heartbeat.
+ * On every heartbeat, the members which did not renew their registration within memberTimeout are removed,
+ * and each member derives its own partitions from the sorted member list, so that no further coordination is needed.
+ * Notice: Until every member has seen a membership change (at most one heartbeat interval), a partition may be consumed by two members.
+ * No message is delivered twice as they share the consumer group, but the order of a partition key is not guaranteed during that time.
+ * The heartbeats use the clock of each instance, which must be synchronized well within memberTimeout.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisStreamPartitionCoordinator {
+
+    @Resource
+    private RedisStreamPartitionProperties properties;
+
+    @Resource
+    private RedisStreamPartitioner partitioner;
+
+    @Resource
+    private RedisStreamConsumerContainer consumerContainer;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_SYNC_COMMANDS)
+    private RedisClusterCommands<String, String> redisCommands;
+
+    private final String instanceName = ManagementFactory.getRuntimeMXBean().getName();
+    private final AtomicInteger memberSequence = new AtomicInteger();
+    private final List<RedisPartitionedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PreDestroy
+    public synchronized void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        List<RedisStreamSubscription> stopped = new ArrayList<>();
+        for (RedisPartitionedSubscription subscription : subscriptions) {
+            stopped.addAll(subscription.close());
+        }
+        consumerContainer.unsubscribe(stopped);
+        subscriptions.forEach(this::deregister);
+        subscriptions.clear();
+    }
+
+    /**
+     * Join the consumer group of a partitioned queue, and consume the partitions assigned to this instance.
+     * The consumer group must exist on every partition.
+     *
+     * @param queueName The name of the message queue
+     * @param groupName Consumer group name
+     * @param concurrency The number of workers per assigned partition, 1 keeps the order of each partition key
+     * @param handler Handle the batches of messages
+     * @return the subscription, which can be stopped on its own
+     */
+    public RedisPartitionedSubscription subscribe(String queueName, String groupName, int concurrency, RedisMessageHandler handler) {
+        String memberId = instanceName + "-" + memberSequence.incrementAndGet();
+        RedisPartitionedSubscription subscription = new RedisPartitionedSubscription(
+                queueName, groupName, concurrency, handler, memberId, this);
+        subscriptions.add(subscription);
+        this.startHeartbeat();
+        // Take the partitions available right away, instead of waiting for the next heartbeat
+        this.heartbeat(subscription);
+        return subscription;
+    }
+
+    public List<RedisPartitionedSubscription> getSubscriptions() {
+        return Collections.unmodifiableList(subscriptions);
+    }
+
+    void leave(RedisPartitionedSubscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        consumerContainer.unsubscribe(subscription.close());
+        this.deregister(subscription);
+    }
+
+    RedisStreamSubscription startPartition(RedisPartitionedSubscription subscription, int partition) {
+        return consumerContainer.subscribe(
+                partitioner.partitionKey(subscription.getQueueName(), partition),
+                subscription.getGroupName(),
+                subscription.getConcurrency(),
+                subscription.getHandler()
+        );
+    }
+
+    private void stopPartitions(List<RedisStreamSubscription> revoked) {
+        consumerContainer.unsubscribe(revoked);
+    }
+
+    /**
+     * The heartbeats are only sent once a partitioned queue is subscribed.
+     */
+    private synchronized void startHeartbeat() {
+        if (scheduler != null) {
+            return;
+        }
+        long intervalMillis = properties.getHeartbeatInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-stream-partition");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::heartbeat, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void heartbeat() {
+        for (RedisPartitionedSubscription subscription : subscriptions) {
+            try {
+                this.heartbeat(subscription);
+            } catch (Exception e) {
+                log.warn("Redis stream partition heartbeat failed - queue:{} group:{}",
+                        subscription.getQueueName(), subscription.getGroupName(), e);
+            }
+        }
+    }
+
+    private void heartbeat(RedisPartitionedSubscription subscription) {
+        String membersKey = this.membersKey(subscription);
+        long now = System.currentTimeMillis();
+        redisCommands.zadd(membersKey, now, subscription.getMemberId());
+        redisCommands.zremrangebyscore(membersKey, Range.create(0D, (double) (now - properties.getMemberTimeout().toMillis())));
+        List<String> members = new ArrayList<>(redisCommands.zrange(membersKey, 0, -1));
+        Collections.sort(members);
+        List<RedisStreamSubscription> revoked = subscription.rebalance(members, partitioner.partitionCount(subscription.getQueueName()));
+        if (!revoked.isEmpty()) {
+            this.stopPartitions(revoked);
+        }
+    }
+
+    private void deregister(RedisPartitionedSubscription subscription) {
+        try {
+            redisCommands.zrem(this.membersKey(subscription), subscription.getMemberId());
+        } catch (Exception e) {
+            log.warn("Redis stream partition member removal failed, it expires after the member timeout - member:{}",
+                    subscription.getMemberId(), e);
+        }
+    }
+
+    private String membersKey(RedisPartitionedSubscription subscription) {
+        return subscription.getQueueName() + "_" + subscription.getGroupName() + properties.getMembersSuffix();
+    }
+}
@@ -0,0 +1,62 @@
+package org.evlove.common.cache.stream;
+
+import jakarta.annotation.Resource;
+import org.evlove.common.cache.properties.RedisStreamPartitionProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps a partitioned message queue to its stream keys.
+ * <p>
+ * A single stream key lives in one hash slot, hence on one node of a cluster.
+ * A partitioned queue is spread over several stream keys (queue name + partitionSuffix + index, without hash tag),
+ * which land in different slots, so that its throughput scales with the number of shards.
+ * The messages with the same partition key always go to the same partition, which keeps their order.
+ *
+ * @author massaton.github.io
+ */
+@Component
+public class RedisStreamPartitioner {
+
+    @Resource
+    private RedisStreamPartitionProperties properties;
+
+    /**
+     * The number of partitions of a queue.
+     */
+    public int partitionCount(String queueName) {
+        return properties.getQueuePartitions().getOrDefault(queueName, properties.getPartitions());
+    }
+
+    /**
+     * The stream key of a partition of a queue.
+     */
+    public String partitionKey(String queueName, int partition) {
+        return queueName + properties.getPartitionSuffix() + partition;
+    }
+
+    /**
+     * The stream keys of all partitions of a queue.
+     */
+    public List<String> partitionKeys(String queueName) {
+        int count = this.partitionCount(queueName);
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(this.partitionKey(queueName, i));
+        }
+        return keys;
+    }
+
+    /**
+     * The stream key of the partition of a queue the messages with this partition key go to.
+     *
+     * @param queueName The name of the message queue
+     * @param partitionKey Such as the ID of an order, the messages with the same partition key stay in order
+     * @return the stream key
+     */
+    public String route(String queueName, String partitionKey) {
+        return this.partitionKey(queueName, Math.floorMod(partitionKey.hashCode(), this.partitionCount(queueName)));
+    }
+}
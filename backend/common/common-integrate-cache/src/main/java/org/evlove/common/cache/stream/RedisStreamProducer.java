@@ -0,0 +1,201 @@
+package org.evlove.common.cache.stream;
+
+import io.lettuce.core.RedisCommandInterruptedException;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.XAddArgs;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.async.RedisStreamAsyncCommands;
+import io.lettuce.core.codec.StringCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.RedisConnectionProvider;
+import org.evlove.common.cache.pojo.StreamProducerStats;
+import org.evlove.common.cache.properties.RedisStreamProducerProperties;
+import org.evlove.common.cache.utils.RedisBatchFlusher;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Batching producer of stream messages (opt-in, see RedisStreamProducerProperties), used by RedisMessageQueueUtil.pushMessageAsync.
+ * <p>
+ * Messages are buffered and sent by a single flusher thread once the batch is full or the linger time has passed.
+ * The XADDs of a batch are written on a dedicated connection with auto-flush disabled, and flushed together (pipelined),
+ * so one round trip carries the whole batch, then the future of each message is completed with its ID.
+ * The messages of the same stream are sent in the order they were pushed.
+ * <p>
+ * When the buffer is full, the pushing thread waits for room (back-pressure), and the message is rejected after bufferTimeout.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisStreamProducer {
+
+    @Resource
+    private RedisStreamProducerProperties properties;
+
+    @Resource
+    private RedisConnectionProvider connectionProvider;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_ASYNC_COMMANDS)
+    private RedisStreamAsyncCommands<String, String> redisStreamAsyncCommands;
+
+    private StatefulConnection<String, String> connection;
+    private RedisStreamAsyncCommands<String, String> pipelineCommands;
+    private BlockingQueue<PendingMessage> pendingMessages;
+    private RedisBatchFlusher<PendingMessage> flusher;
+    private volatile boolean running;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder messageCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!properties.getEnabled()) {
+            return;
+        }
+        connection = connectionProvider.connectAny(StringCodec.UTF8);
+        // Only the flusher thread writes on this connection, it flushes each batch by itself
+        connection.setAutoFlushCommands(false);
+        pipelineCommands = connectionProvider.async(connection);
+        pendingMessages = new LinkedBlockingQueue<>(properties.getBufferSize());
+        running = true;
+
+        flusher = new RedisBatchFlusher<>("redis-stream-producer", pendingMessages, properties.getLinger(), properties.getBatchSize(),
+                message -> message.enqueuedAt, this::dispatch,
+                (batch, e) -> batch.forEach(message -> message.future.completeExceptionally(e)));
+        flusher.start();
+        log.info("Redis stream producer batching enabled - batchSize:{} linger:{}", properties.getBatchSize(), properties.getLinger());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flusher.stop(properties.getLinger().plusSeconds(1));
+
+        // Send the messages still buffered, and wait for their replies before closing the connection
+        List<PendingMessage> remaining = new ArrayList<>();
+        pendingMessages.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            this.dispatch(remaining);
+            try {
+                CompletableFuture.allOf(remaining.stream().map(message -> message.future).toArray(CompletableFuture[]::new))
+                        .get(connection.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.warn("Redis stream producer stopped before all buffered messages were acknowledged", e);
+            }
+        }
+        connection.close();
+        log.info("Redis stream producer stopped - {}", this.getStats());
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * Push a message to the stream through the next batch.
+     * When batching is disabled, the message is sent at once by its own XADD.
+     *
+     * @param queueName the stream key.
+     * @param message the message body.
+     * @return the future completed with the ID of the message.
+     * @throws RedisException when the buffer stayed full longer than bufferTimeout.
+     */
+    public CompletableFuture<String> send(String queueName, Map<String, String> message) {
+        if (!running) {
+            return redisStreamAsyncCommands.xadd(queueName, this.xaddArgs(), message).toCompletableFuture();
+        }
+
+        PendingMessage pending = new PendingMessage(queueName, message);
+        boolean accepted;
+        try {
+            accepted = pendingMessages.offer(pending, properties.getBufferTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisCommandInterruptedException(e);
+        }
+        if (!accepted) {
+            rejectedCount.increment();
+            throw new RedisException("Redis stream producer buffer is full, " + properties.getBufferSize() + " messages are waiting");
+        }
+        return pending.future;
+    }
+
+    /**
+     * Get the statistics of the producer since startup.
+     */
+    public StreamProducerStats getStats() {
+        long batches = batchCount.sum();
+        long messages = messageCount.sum();
+        return new StreamProducerStats(
+                batches,
+                messages,
+                rejectedCount.sum(),
+                batches == 0 ? 0D : (double) messages / batches,
+                pendingMessages == null ? 0 : pendingMessages.size()
+        );
+    }
+
+    private void dispatch(List<PendingMessage> batch) {
+        batchCount.increment();
+        messageCount.add(batch.size());
+
+        XAddArgs xaddArgs = this.xaddArgs();
+        for (PendingMessage message : batch) {
+            RedisFuture<String> future = pipelineCommands.xadd(message.queueName, xaddArgs, message.body);
+            future.whenComplete((messageId, throwable) -> {
+                if (throwable != null) {
+                    message.future.completeExceptionally(throwable);
+                } else {
+                    message.future.complete(messageId);
+                }
+            });
+        }
+        connection.flushCommands();
+    }
+
+    /**
+     * The inline trimming of XADD, always approximate (~) so that Redis only removes whole macro nodes, which is much cheaper.
+     */
+    private XAddArgs xaddArgs() {
+        XAddArgs xaddArgs = new XAddArgs();
+        if (properties.getMaxLen() != null) {
+            xaddArgs.maxlen(properties.getMaxLen()).approximateTrimming();
+        } else if (properties.getMaxAge() != null) {
+            xaddArgs.minId((System.currentTimeMillis() - properties.getMaxAge().toMillis()) + "-0").approximateTrimming();
+        }
+        return xaddArgs;
+    }
+
+    /**
+     * A message waiting to be sent.
+     */
+    private static class PendingMessage {
+        private final String queueName;
+        private final Map<String, String> body;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        private PendingMessage(String queueName, Map<String, String> body) {
+            this.queueName = queueName;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package org.evlove.common.cache.stream;
+
+import io.lettuce.core.Consumer;
+import io.lettuce.core.Limit;
+import io.lettuce.core.Range;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XClaimArgs;
+import io.lettuce.core.XPendingArgs;
+import io.lettuce.core.api.sync.RedisStreamCommands;
+import io.lettuce.core.models.stream.PendingMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.pojo.StreamRecoveryStats;
+import org.evlove.common.cache.properties.RedisStreamRecoveryProperties;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recover the pending messages of the consumer groups: the messages read by a consumer which died or whose handler threw,
+ * and which were never acknowledged.
+ * <p>
+ * Only the messages idle for longer than minIdle are examined, with XPENDING IDLE in bounded batches
+ * (the pending list is walked with an exclusive cursor, the stream itself is never scanned).
+ * They are claimed with XCLAIM, which increments their delivery count, then handed to the handler again and acknowledged.
+ * A message delivered maxDeliveries times is considered poison: it is copied to the dead-letter stream
+ * (queue name + deadLetterSuffix) with its original ID, group and delivery count, then acknowledged, instead of being retried forever.
+ * <p>
+ * When enabled, the running subscriptions of RedisStreamConsumerContainer are recovered periodically on a single thread.
+ * recover can also be called directly for the consumer groups consumed with pullMessages.
+ * <p>
+ * The recovery consumer of this instance is removed from the group (XGROUP DELCONSUMER) at the end of a run once it has
+ * no pending message, and on shutdown after its pending messages are handed over (see RedisStreamSubscription.HANDOVER_CONSUMER),
+ * so that the restarts do not leave consumers behind in the groups.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisStreamRecovery {
+
+    public static final String FIELD_ORIGINAL_ID = "_dlq_original_id";
+    public static final String FIELD_GROUP = "_dlq_group";
+    public static final String FIELD_DELIVERIES = "_dlq_deliveries";
+
+    @Resource
+    private RedisStreamRecoveryProperties properties;
+
+    @Resource
+    private RedisStreamConsumerContainer consumerContainer;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_SYNC_COMMANDS)
+    private RedisStreamCommands<byte[], byte[]> redisStreamCommands;
+
+    /**
+     * The recovered messages are claimed by a consumer of this instance, named consumer group + pid@hostname + "-recovery".
+     */
+    private final String instanceName = ManagementFactory.getRuntimeMXBean().getName();
+
+    private final LongAdder recoveredCount = new LongAdder();
+    private final LongAdder deadLetterCount = new LongAdder();
+    private final LongAdder failedBatchCount = new LongAdder();
+
+    /**
+     * The consumer groups recovered by this instance, by queue name, whose recovery consumer is removed on shutdown.
+     */
+    private final Map<String, Set<String>> recoveredGroups = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        if (!properties.getEnabled()) {
+            return;
+        }
+        long intervalMillis = properties.getInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-stream-recovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::recoverSubscriptions, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Redis stream recovery enabled - interval:{} minIdle:{} maxDeliveries:{}",
+                properties.getInterval(), properties.getMinIdle(), properties.getMaxDeliveries());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        synchronized (this) {
+            recoveredGroups.forEach((queueName, groupNames) -> groupNames.forEach(groupName ->
+                    this.removeConsumer(queueName, this.recoveryConsumer(groupName), true)));
+        }
+    }
+
+    /**
+     * Recover the idle pending messages of a consumer group, at most maxBatchesPerRun batches.
+     *
+     * @param queueName The name of the message queue (ie key)
+     * @param groupName Consumer group name
+     * @param handler Handle the claimed messages again
+     * @return the number of messages handled or moved to the dead-letter stream
+     */
+    public long recover(String queueName, String groupName, RedisMessageHandler handler) {
+        return this.recover(queueName, groupName, RedisStreamBatchHandler.of(handler));
+    }
+
+    public StreamRecoveryStats getStats() {
+        return new StreamRecoveryStats(recoveredCount.sum(), deadLetterCount.sum(), failedBatchCount.sum());
+    }
+
+    synchronized long recover(String queueName, String groupName, RedisStreamBatchHandler handler) {
+        byte[] queue = bytes(queueName);
+        byte[] group = bytes(groupName);
+        Consumer<byte[]> consumer = this.recoveryConsumer(groupName);
+        recoveredGroups.computeIfAbsent(queueName, k -> ConcurrentHashMap.newKeySet()).add(groupName);
+        XClaimArgs claimArgs = XClaimArgs.Builder.minIdleTime(properties.getMinIdle());
+        Range.Boundary<String> lower = Range.Boundary.unbounded();
+        long total = 0;
+
+        for (int i = 0; i < properties.getMaxBatchesPerRun(); i++) {
+            XPendingArgs<byte[]> pendingArgs = new XPendingArgs<byte[]>()
+                    .group(group)
+                    .range(Range.from(lower, Range.Boundary.unbounded()))
+                    .limit(Limit.from(properties.getBatchSize()))
+                    .idle(properties.getMinIdle());
+            List<PendingMessage> pendingMessages = redisStreamCommands.xpending(queue, pendingArgs);
+            if (pendingMessages.isEmpty()) {
+                break;
+            }
+            total += this.recoverBatch(queueName, groupName, handler, consumer, claimArgs, pendingMessages);
+            if (pendingMessages.size() < properties.getBatchSize()) {
+                break;
+            }
+            lower = Range.Boundary.excluding(pendingMessages.get(pendingMessages.size() - 1).getId());
+        }
+        this.removeConsumer(queueName, consumer, false);
+        return total;
+    }
+
+    private Consumer<byte[]> recoveryConsumer(String groupName) {
+        return Consumer.from(bytes(groupName), bytes(groupName + "-" + instanceName + "-recovery"));
+    }
+
+    /**
+     * Remove the recovery consumer from the group when it has no pending message, XGROUP DELCONSUMER would drop them.
+     * The messages left pending by a failed handler are recovered again later, or handed over first on shutdown.
+     */
+    private void removeConsumer(String queueName, Consumer<byte[]> consumer, boolean handOver) {
+        byte[] queue = bytes(queueName);
+        try {
+            if (handOver) {
+                Consumer<byte[]> handover = Consumer.from(consumer.getGroup(), bytes(RedisStreamSubscription.HANDOVER_CONSUMER));
+                Range.Boundary<String> lower = Range.Boundary.unbounded();
+                while (true) {
+                    List<PendingMessage> pendingMessages = redisStreamCommands.xpending(
+                            queue, consumer, Range.from(lower, Range.Boundary.unbounded()), Limit.from(properties.getBatchSize()));
+                    if (pendingMessages.isEmpty()) {
+                        break;
+                    }
+                    String[] messageIds = pendingMessages.stream().map(PendingMessage::getId).toArray(String[]::new);
+                    redisStreamCommands.xclaim(queue, handover, XClaimArgs.Builder.justid(), messageIds);
+                    lower = Range.Boundary.excluding(messageIds[messageIds.length - 1]);
+                }
+            }
+            if (redisStreamCommands.xpending(queue, consumer, Range.create("-", "+"), Limit.from(1)).isEmpty()) {
+                redisStreamCommands.xgroupDelconsumer(queue, consumer);
+            }
+        } catch (Exception e) {
+            log.warn("Redis stream recovery consumer not removed - queue:{} consumer:{}",
+                    queueName, new String(consumer.getName(), StandardCharsets.UTF_8), e);
+        }
+    }
+
+    private long recoverBatch(String queueName, String groupName, RedisStreamBatchHandler handler, Consumer<byte[]> consumer,
+                              XClaimArgs claimArgs, List<PendingMessage> pendingMessages) {
+        byte[] queue = bytes(queueName);
+        Map<String, Long> deliveries = new HashMap<>(pendingMessages.size() * 2);
+        String[] messageIds = new String[pendingMessages.size()];
+        for (int i = 0; i < pendingMessages.size(); i++) {
+            PendingMessage pendingMessage = pendingMessages.get(i);
+            messageIds[i] = pendingMessage.getId();
+            deliveries.put(pendingMessage.getId(), pendingMessage.getRedeliveryCount());
+        }
+
+        // XCLAIM checks the idle time again, so a message claimed meanwhile by another instance is skipped.
+        // The deleted messages are not returned either.
+        List<StreamMessage<byte[], byte[]>> claimed = redisStreamCommands.xclaim(queue, consumer, claimArgs, messageIds);
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        List<StreamMessage<byte[], byte[]>> retries = new ArrayList<>(claimed.size());
+        List<String> deadLetterIds = new ArrayList<>();
+        for (StreamMessage<byte[], byte[]> message : claimed) {
+            long delivered = deliveries.getOrDefault(message.getId(), 0L);
+            if (delivered >= properties.getMaxDeliveries()) {
+                Map<byte[], byte[]> body = new LinkedHashMap<>(message.getBody());
+                body.put(bytes(FIELD_ORIGINAL_ID), bytes(message.getId()));
+                body.put(bytes(FIELD_GROUP), bytes(groupName));
+                body.put(bytes(FIELD_DELIVERIES), bytes(String.valueOf(delivered)));
+                redisStreamCommands.xadd(bytes(queueName + properties.getDeadLetterSuffix()), body);
+                deadLetterIds.add(message.getId());
+            } else {
+                retries.add(message);
+            }
+        }
+
+        if (!deadLetterIds.isEmpty()) {
+            redisStreamCommands.xack(queue, bytes(groupName), deadLetterIds.toArray(new String[0]));
+            deadLetterCount.add(deadLetterIds.size());
+            log.warn("Redis stream poison messages moved to the dead-letter stream - queue:{} group:{} count:{}",
+                    queueName, groupName, deadLetterIds.size());
+        }
+        if (retries.isEmpty()) {
+            return deadLetterIds.size();
+        }
+
+        try {
+            handler.handle(retries);
+        } catch (Exception e) {
+            // Left pending, the delivery count was incremented by XCLAIM
+            failedBatchCount.increment();
+            log.error("Redis stream recovered messages handler failed, {} messages are left pending - queue:{} group:{}",
+                    retries.size(), queueName, groupName, e);
+            return deadLetterIds.size();
+        }
+        redisStreamCommands.xack(queue, bytes(groupName), retries.stream().map(StreamMessage::getId).toArray(String[]::new));
+        recoveredCount.add(retries.size());
+        return deadLetterIds.size() + retries.size();
+    }
+
+    private void recoverSubscriptions() {
+        for (RedisStreamSubscription subscription : consumerContainer.getSubscriptions()) {
+            if (!subscription.isRunning()) {
+                continue;
+            }
+            try {
+                long count = this.recover(subscription.getQueueName(), subscription.getGroupName(), subscription.getHandler());
+                if (count > 0) {
+                    log.info("Redis stream pending messages recovered - queue:{} group:{} count:{}",
+                            subscription.getQueueName(), subscription.getGroupName(), count);
+                }
+            } catch (Exception e) {
+                log.warn("Redis stream recovery failed - queue:{} group:{}",
+                        subscription.getQueueName(), subscription.getGroupName(), e);
+            }
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,194 @@
+package org.evlove.common.cache.stream;
+
+import io.lettuce.core.XTrimArgs;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+import io.lettuce.core.models.stream.PendingMessages;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.pojo.StreamGroupInfo;
+import org.evlove.common.cache.pojo.StreamRetentionStats;
+import org.evlove.common.cache.properties.RedisStreamRetentionProperties;
+import org.evlove.common.cache.utils.RedisMessageQueueUtil;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Trim the configured streams periodically, so that the message queues do not grow without bound.
+ * <p>
+ * Each stream can be bounded by length (MAXLEN), by age (MINID) and/or by consumption: the entries already consumed by every consumer group.
+ * The trimming is approximate and done in small increments (XTRIM ~ LIMIT, with a pause between two increments),
+ * so that removing a large backlog never blocks Redis for long; what is left over is trimmed by the next run.
+ * The length and memory usage of each stream are collected after trimming, see getStats.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisStreamRetention {
+
+    @Resource
+    private RedisStreamRetentionProperties properties;
+
+    @Resource
+    private RedisMessageQueueUtil redisMessageQueueUtil;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_SYNC_COMMANDS)
+    private RedisClusterCommands<String, String> redisCommands;
+
+    private final Map<String, LongAdder> trimmedCounts = new ConcurrentHashMap<>();
+    private final Map<String, StreamRetentionStats> stats = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        if (!properties.getEnabled() || properties.getStreams().isEmpty()) {
+            return;
+        }
+        long intervalMillis = properties.getInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-stream-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::run, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Redis stream retention enabled - interval:{} streams:{}", properties.getInterval(), properties.getStreams().keySet());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * The size of each configured stream, collected by the last run, keyed by the name of the message queue.
+     */
+    public Map<String, StreamRetentionStats> getStats() {
+        return new HashMap<>(stats);
+    }
+
+    /**
+     * Trim a stream with the given retention now, in increments.
+     *
+     * @param queueName The name of the message queue (ie key)
+     * @param retention The bounds of the stream
+     * @return the number of entries removed
+     */
+    public long trim(String queueName, RedisStreamRetentionProperties.Retention retention) {
+        long trimmed = 0;
+        if (retention.getMaxLen() != null) {
+            trimmed += this.trimIncrementally(queueName, XTrimArgs.Builder.maxlen(retention.getMaxLen()));
+        }
+        String minId = this.minId(queueName, retention);
+        if (minId != null) {
+            trimmed += this.trimIncrementally(queueName, XTrimArgs.Builder.minId(minId));
+        }
+        return trimmed;
+    }
+
+    private void run() {
+        for (Map.Entry<String, RedisStreamRetentionProperties.Retention> entry : properties.getStreams().entrySet()) {
+            String queueName = entry.getKey();
+            try {
+                long trimmed = this.trim(queueName, entry.getValue());
+                LongAdder trimmedCount = trimmedCounts.computeIfAbsent(queueName, k -> new LongAdder());
+                trimmedCount.add(trimmed);
+                stats.put(queueName, new StreamRetentionStats(
+                        redisCommands.xlen(queueName),
+                        redisCommands.memoryUsage(queueName),
+                        trimmedCount.sum(),
+                        System.currentTimeMillis()
+                ));
+                if (trimmed > 0) {
+                    log.debug("Redis stream trimmed - queue:{} count:{}", queueName, trimmed);
+                }
+            } catch (Exception e) {
+                log.warn("Redis stream retention failed - queue:{}", queueName, e);
+            }
+        }
+    }
+
+    /**
+     * The highest of the MINID bounds of the retention, null if there is none.
+     */
+    private String minId(String queueName, RedisStreamRetentionProperties.Retention retention) {
+        String minId = null;
+        if (retention.getMaxAge() != null) {
+            minId = (System.currentTimeMillis() - retention.getMaxAge().toMillis()) + "-0";
+        }
+        if (Boolean.TRUE.equals(retention.getTrimConsumed())) {
+            String consumedId = this.consumedId(queueName);
+            if (consumedId != null && (minId == null || compareIds(consumedId, minId) > 0)) {
+                minId = consumedId;
+            }
+        }
+        return minId;
+    }
+
+    /**
+     * The lowest ID still needed by a consumer group: its oldest pending message, or its last delivered message.
+     */
+    private String consumedId(String queueName) {
+        String lowest = null;
+        for (StreamGroupInfo group : redisMessageQueueUtil.getConsumerGroups(queueName)) {
+            String needed = group.getLastDeliveredId();
+            if (group.getPending() != null && group.getPending() > 0) {
+                PendingMessages pendingMessages = redisCommands.xpending(queueName, group.getName());
+                if (pendingMessages.getMessageIds().getLower().getValue() != null) {
+                    needed = pendingMessages.getMessageIds().getLower().getValue();
+                }
+            }
+            if (needed == null) {
+                return null;
+            }
+            if (lowest == null || compareIds(needed, lowest) < 0) {
+                lowest = needed;
+            }
+        }
+        return lowest;
+    }
+
+    private long trimIncrementally(String queueName, XTrimArgs args) {
+        args.approximateTrimming().limit(properties.getTrimLimit());
+        long trimmed = 0;
+        for (int i = 0; i < properties.getMaxIncrementsPerRun(); i++) {
+            Long removed = redisCommands.xtrim(queueName, args);
+            if (removed == null || removed == 0) {
+                break;
+            }
+            trimmed += removed;
+            try {
+                Thread.sleep(properties.getIncrementPause().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return trimmed;
+    }
+
+    private static int compareIds(String a, String b) {
+        int ia = a.indexOf('-');
+        int ib = b.indexOf('-');
+        long msA = Long.parseLong(ia < 0 ? a : a.substring(0, ia));
+        long msB = Long.parseLong(ib < 0 ? b : b.substring(0, ib));
+        if (msA != msB) {
+            return Long.compare(msA, msB);
+        }
+        long seqA = ia < 0 ? 0 : Long.parseLong(a.substring(ia + 1));
+        long seqB = ib < 0 ? 0 : Long.parseLong(b.substring(ib + 1));
+        return Long.compare(seqA, seqB);
+    }
+}
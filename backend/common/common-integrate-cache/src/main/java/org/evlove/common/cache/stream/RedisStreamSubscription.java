@@ -0,0 +1,355 @@
+package org.evlove.common.cache.stream;
+
+import io.lettuce.core.Consumer;
+import io.lettuce.core.Limit;
+import io.lettuce.core.Range;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XClaimArgs;
+import io.lettuce.core.XReadArgs;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.async.RedisStreamAsyncCommands;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.models.stream.PendingMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.RedisConnectionProvider;
+import org.evlove.common.cache.properties.RedisStreamConsumerProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The consumer workers of one consumer group on one stream, created by RedisStreamConsumerContainer.subscribe.
+ * <p>
+ * Each worker is a thread with a dedicated connection, which loops on XREADGROUP BLOCK,
+ * hands the batch to the handler, then acknowledges the whole batch with one XACK (sent asynchronously).
+ * A worker reads the next batch only after the previous one is handled, so at most concurrency * batchSize messages are in flight.
+ * <p>
+ * When a worker is retired or stopped, its pending messages (read but not acknowledged) are handed over to the consumer
+ * "handover" of the group with XCLAIM, then the consumer is removed with XGROUP DELCONSUMER, so the consumers of retired workers
+ * and stopped instances do not pile up in the group. The running workers, of this or any other instance, claim the handed over
+ * messages once they have been idle for blockTimeout, and handle them as a new delivery.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+public class RedisStreamSubscription {
+    /**
+     * The consumer holding the pending messages of the removed consumers until a running worker claims them.
+     */
+    static final String HANDOVER_CONSUMER = "handover";
+
+    private final String queueName;
+    private final String groupName;
+    private final RedisStreamBatchHandler handler;
+    private final RedisStreamConsumerProperties properties;
+    private final RedisConnectionProvider connectionProvider;
+    private final RedisStreamAsyncCommands<String, String> ackCommands;
+    private final String consumerPrefix;
+
+    private final List<Worker> workers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger workerSequence = new AtomicInteger();
+    private volatile boolean running = true;
+
+    /**
+     * The bounds of the number of workers when autoscaled, see RedisStreamAutoscaler, 0 when the concurrency is fixed.
+     */
+    private volatile int minConcurrency;
+    private volatile int maxConcurrency;
+
+    private final LongAdder handledCount = new LongAdder();
+    private final LongAdder failedBatchCount = new LongAdder();
+
+    RedisStreamSubscription(String queueName, String groupName, RedisStreamBatchHandler handler,
+                            RedisStreamConsumerProperties properties, RedisConnectionProvider connectionProvider,
+                            RedisStreamAsyncCommands<String, String> ackCommands, String consumerPrefix) {
+        this.queueName = queueName;
+        this.groupName = groupName;
+        this.handler = handler;
+        this.properties = properties;
+        this.connectionProvider = connectionProvider;
+        this.ackCommands = ackCommands;
+        this.consumerPrefix = consumerPrefix;
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * The number of workers currently running.
+     */
+    public int getConcurrency() {
+        return workers.size();
+    }
+
+    /**
+     * The number of messages handled and acknowledged since startup.
+     */
+    public long getHandledCount() {
+        return handledCount.sum();
+    }
+
+    /**
+     * The number of batches whose handler threw, they were left pending.
+     */
+    public long getFailedBatchCount() {
+        return failedBatchCount.sum();
+    }
+
+    /**
+     * Whether the number of workers follows the lag of the consumer group, see RedisStreamAutoscaler.
+     */
+    public boolean isAutoscaled() {
+        return maxConcurrency > 0;
+    }
+
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    RedisStreamBatchHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Stop the workers gracefully: the batches in progress are handled and acknowledged, no new batch is read.
+     */
+    public void stop() {
+        this.signalStop();
+        this.awaitTermination(System.nanoTime() + properties.getShutdownTimeout().toNanos());
+    }
+
+    synchronized void start(int concurrency) {
+        for (int i = 0; i < concurrency; i++) {
+            this.addWorker();
+        }
+        log.info("Redis stream consumers started - queue:{} group:{} concurrency:{}", queueName, groupName, concurrency);
+    }
+
+    void setConcurrencyBounds(int minConcurrency, int maxConcurrency) {
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Add or retire workers. A retired worker finishes its batch in progress, then closes its connection.
+     */
+    synchronized void resize(int concurrency) {
+        if (!running) {
+            return;
+        }
+        while (workers.size() < concurrency) {
+            this.addWorker();
+        }
+        while (workers.size() > concurrency) {
+            Worker worker = workers.remove(workers.size() - 1);
+            worker.retired = true;
+            worker.running = false;
+        }
+    }
+
+    synchronized void signalStop() {
+        running = false;
+        workers.forEach(worker -> worker.running = false);
+    }
+
+    /**
+     * Wait for the workers to finish until the deadline, then close their connections, which also aborts a blocked read.
+     */
+    void awaitTermination(long deadlineNanos) {
+        for (Worker worker : workers) {
+            worker.awaitTermination(deadlineNanos);
+        }
+        workers.clear();
+        log.info("Redis stream consumers stopped - queue:{} group:{} handled:{}", queueName, groupName, handledCount.sum());
+    }
+
+    private void addWorker() {
+        String consumerName = consumerPrefix + "-" + workerSequence.incrementAndGet();
+        Worker worker = new Worker(consumerName, connectionProvider.connectAny(ByteArrayCodec.INSTANCE));
+        workers.add(worker);
+        worker.thread.start();
+    }
+
+    private class Worker implements Runnable {
+        private final String consumerName;
+        private final StatefulConnection<byte[], byte[]> connection;
+        private final RedisClusterCommands<byte[], byte[]> commands;
+        private final Thread thread;
+        private volatile boolean running = true;
+        private volatile boolean retired;
+
+        private Worker(String consumerName, StatefulConnection<byte[], byte[]> connection) {
+            this.consumerName = consumerName;
+            this.connection = connection;
+            this.commands = connectionProvider.sync(connection);
+            this.thread = new Thread(this, "redis-stream-consumer-" + queueName + "-" + consumerName);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Consumer<byte[]> consumer = Consumer.from(
+                    groupName.getBytes(StandardCharsets.UTF_8), consumerName.getBytes(StandardCharsets.UTF_8));
+            XReadArgs readArgs = XReadArgs.Builder
+                    .block(properties.getBlockTimeout())
+                    .count(properties.getBatchSize());
+            XReadArgs.StreamOffset<byte[]> streamOffset = XReadArgs.StreamOffset.lastConsumed(queueName.getBytes(StandardCharsets.UTF_8));
+            long nextClaimNanos = System.nanoTime();
+
+            while (running) {
+                if (System.nanoTime() - nextClaimNanos >= 0) {
+                    nextClaimNanos = System.nanoTime() + properties.getBlockTimeout().toNanos();
+                    this.claimHandedOver(consumer);
+                }
+                List<StreamMessage<byte[], byte[]>> messages;
+                try {
+                    messages = commands.xreadgroup(consumer, readArgs, streamOffset);
+                } catch (Exception e) {
+                    if (!running) {
+                        break;
+                    }
+                    log.warn("Redis stream consumer read failed - queue:{} consumer:{}", queueName, consumerName, e);
+                    if (!this.sleep(properties.getRetryInterval().toMillis())) {
+                        break;
+                    }
+                    continue;
+                }
+                if (messages == null || messages.isEmpty()) {
+                    continue;
+                }
+                this.handle(messages);
+            }
+            if (retired) {
+                this.handOver();
+                connection.close();
+            }
+        }
+
+        /**
+         * Hand the pending messages of this consumer over to the handover consumer, then remove this consumer from the group.
+         * The consumer is kept when its pending messages could not all be handed over, XGROUP DELCONSUMER would drop them.
+         */
+        private void handOver() {
+            byte[] queue = queueName.getBytes(StandardCharsets.UTF_8);
+            byte[] group = groupName.getBytes(StandardCharsets.UTF_8);
+            Consumer<byte[]> self = Consumer.from(group, consumerName.getBytes(StandardCharsets.UTF_8));
+            Consumer<byte[]> handover = Consumer.from(group, HANDOVER_CONSUMER.getBytes(StandardCharsets.UTF_8));
+            try {
+                long handedOver = 0;
+                Range.Boundary<String> lower = Range.Boundary.unbounded();
+                while (true) {
+                    List<PendingMessage> pendingMessages = commands.xpending(
+                            queue, self, Range.from(lower, Range.Boundary.unbounded()), Limit.from(properties.getBatchSize()));
+                    if (pendingMessages.isEmpty()) {
+                        break;
+                    }
+                    String[] messageIds = pendingMessages.stream().map(PendingMessage::getId).toArray(String[]::new);
+                    commands.xclaim(queue, handover, XClaimArgs.Builder.justid(), messageIds);
+                    handedOver += messageIds.length;
+                    lower = Range.Boundary.excluding(messageIds[messageIds.length - 1]);
+                }
+                if (!commands.xpending(queue, self, Range.create("-", "+"), Limit.from(1)).isEmpty()) {
+                    log.warn("Redis stream consumer not removed, some pending messages were not handed over - queue:{} consumer:{}",
+                            queueName, consumerName);
+                    return;
+                }
+                commands.xgroupDelconsumer(queue, self);
+                if (handedOver > 0) {
+                    log.info("Redis stream pending messages handed over - queue:{} consumer:{} count:{}", queueName, consumerName, handedOver);
+                }
+            } catch (Exception e) {
+                log.warn("Redis stream consumer not removed, its pending messages are left to recovery - queue:{} consumer:{}",
+                        queueName, consumerName, e);
+            }
+        }
+
+        /**
+         * Claim the messages handed over by the removed consumers, and handle them.
+         * XCLAIM checks the idle time, so a message claimed meanwhile by another worker is skipped.
+         */
+        private void claimHandedOver(Consumer<byte[]> consumer) {
+            byte[] queue = queueName.getBytes(StandardCharsets.UTF_8);
+            Consumer<byte[]> handover = Consumer.from(consumer.getGroup(), HANDOVER_CONSUMER.getBytes(StandardCharsets.UTF_8));
+            List<StreamMessage<byte[], byte[]>> messages;
+            try {
+                List<PendingMessage> pendingMessages = commands.xpending(
+                        queue, handover, Range.create("-", "+"), Limit.from(properties.getBatchSize()));
+                if (pendingMessages.isEmpty()) {
+                    return;
+                }
+                String[] messageIds = pendingMessages.stream().map(PendingMessage::getId).toArray(String[]::new);
+                messages = commands.xclaim(queue, consumer, XClaimArgs.Builder.minIdleTime(properties.getBlockTimeout()), messageIds);
+            } catch (Exception e) {
+                log.warn("Redis stream handed over messages not claimed - queue:{} consumer:{}", queueName, consumerName, e);
+                return;
+            }
+            if (!messages.isEmpty()) {
+                this.handle(messages);
+            }
+        }
+
+        private void handle(List<StreamMessage<byte[], byte[]>> messages) {
+            String[] messageIds = new String[messages.size()];
+            for (int i = 0; i < messages.size(); i++) {
+                messageIds[i] = messages.get(i).getId();
+            }
+
+            try {
+                handler.handle(messages);
+            } catch (Exception e) {
+                failedBatchCount.increment();
+                log.error("Redis stream message handler failed, {} messages are left pending - queue:{} consumer:{}",
+                        messages.size(), queueName, consumerName, e);
+                return;
+            }
+            ackCommands.xack(queueName, groupName, messageIds).whenComplete((count, throwable) -> {
+                if (throwable != null) {
+                    log.error("Redis stream XACK failed - queue:{} consumer:{}", queueName, consumerName, throwable);
+                }
+            });
+            handledCount.add(messages.size());
+        }
+
+        private boolean sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void awaitTermination(long deadlineNanos) {
+            try {
+                thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                log.warn("Redis stream consumer did not finish in time - queue:{} consumer:{}", queueName, consumerName);
+            } else {
+                this.handOver();
+            }
+            connection.close();
+        }
+    }
+}
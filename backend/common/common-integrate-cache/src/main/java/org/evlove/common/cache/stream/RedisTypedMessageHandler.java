@@ -0,0 +1,22 @@
+package org.evlove.common.cache.stream;
+
+import org.evlove.common.cache.pojo.RedisTypedMessage;
+
+import java.util.List;
+
+/**
+ * Handle the batches of typed messages read by a consumer worker, see RedisStreamConsumerContainer.
+ *
+ * @author massaton.github.io
+ */
+@FunctionalInterface
+public interface RedisTypedMessageHandler<T> {
+
+    /**
+     * Handle a batch of messages, they are acknowledged (XACK) after this method returns.
+     * When it throws, none of them is acknowledged, they stay in the pending list of the consumer group.
+     *
+     * @param messages the messages, in stream order, never empty.
+     */
+    void handle(List<RedisTypedMessage<T>> messages);
+}
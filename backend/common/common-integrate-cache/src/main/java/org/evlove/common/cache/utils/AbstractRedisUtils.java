@@ -1,18 +1,100 @@
 package org.evlove.common.cache.utils;
 
+import io.lettuce.core.RedisCommandInterruptedException;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.cluster.SlotHash;
+import jakarta.annotation.Resource;
+import org.evlove.common.cache.RedisClientConfig;
 import org.evlove.common.cache.constant.CacheConstant;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * @author massaton.github.io
  */
 abstract class AbstractRedisUtils {
 
+    @Resource
+    private RedisNearCache localNearCache;
+
+    @Resource
+    private RedisHotKeyDetector localHotKeyDetector;
+
+    @Resource
+    private RedisInvalidationBus localInvalidationBus;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_CONNECTION)
+    private StatefulConnection<byte[], byte[]> binaryConnection;
+
     protected boolean itsOk(String redisCommandExecutionResult) {
         return CacheConstant.RESULT_OK.equalsIgnoreCase(redisCommandExecutionResult);
     }
 
+    /**
+     * Wait for the result of an asynchronous Redis operation,
+     * and throw the same exceptions as the synchronous commands of Lettuce do.
+     *
+     * @param stage The asynchronous operation.
+     * @param timeout The longest time to wait, null to wait until the operation completes (bounded by the operation itself).
+     * @return The result of the operation.
+     */
+    protected <T> T await(CompletionStage<T> stage, Duration timeout) {
+        try {
+            return timeout == null
+                    ? stage.toCompletableFuture().get()
+                    : stage.toCompletableFuture().get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisCommandInterruptedException(e);
+        } catch (TimeoutException e) {
+            throw new RedisCommandTimeoutException("Command timed out after " + timeout);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RedisException(e.getCause());
+        }
+    }
+
+    /**
+     * The command timeout of the connections (the timeout of the Redis URI), the longest time to wait for an asynchronous operation.
+     */
+    protected Duration commandTimeout() {
+        return binaryConnection.getTimeout();
+    }
+
+    /**
+     * Derive a companion key (a temporary or state key) in the same slot as the key, so that both can be used by one command
+     * or script in cluster mode: the key plus the suffix, or, when the key has no hash tag, the key as the hash tag.
+     */
+    protected static String sameSlotKey(String key, String suffix) {
+        String sameSlotKey = key + suffix;
+        if (SlotHash.getSlot(sameSlotKey) != SlotHash.getSlot(key)) {
+            sameSlotKey = "{" + key + "}" + suffix;
+        }
+        if (SlotHash.getSlot(sameSlotKey) != SlotHash.getSlot(key)) {
+            throw new IllegalArgumentException("No companion key in the same slot as the key: " + key);
+        }
+        return sameSlotKey;
+    }
+
+    /**
+     * Evict the local copies (near cache, hot key replicas) of the keys modified by this instance, to read your own writes,
+     * and of the other instances when the invalidation bus broadcasts the writes.
+     */
+    protected void evictLocal(String... keys) {
+        localNearCache.invalidate(keys);
+        localHotKeyDetector.invalidate(keys);
+        localInvalidationBus.onWrite(keys);
+    }
+
     /*protected byte[] toBytes(String str) {
         return str.getBytes(StandardCharsets.UTF_8);
     }
@@ -23,4 +105,4 @@ abstract class AbstractRedisUtils {
         }
         return new String((byte[]) byteObj, StandardCharsets.UTF_8);
     }*/
-}
\ No newline at end of file
+}
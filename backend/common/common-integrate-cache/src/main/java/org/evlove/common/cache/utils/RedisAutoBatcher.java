@@ -0,0 +1,228 @@
+package org.evlove.common.cache.utils;
+
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.async.RedisHashAsyncCommands;
+import io.lettuce.core.api.async.RedisStringAsyncCommands;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.pojo.AutoBatchStats;
+import org.evlove.common.cache.properties.RedisAutoBatchProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transparently merges concurrent single-key reads into batched commands (opt-in, see RedisAutoBatchProperties).
+ * <p>
+ * Reads issued by request threads within a short window (or until the batch is full) are collected by a single flusher thread:
+ * - RedisStringUtils.get(key) are merged into one MGET.
+ * - RedisHashUtils.getValue(key, field) are merged into one HMGET per hash key.
+ * All commands of a batch are written back-to-back on the shared multiplexed connection (that is, pipelined),
+ * then the results are fanned back to each waiting caller.
+ * The values are read as bytes, so that RedisStringUtils can decompress the values written compressed (see RedisValueCompressor).
+ * <p>
+ * In cluster mode, the MGET is split by hash slot by Lettuce's cluster commands, so the batch still works.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisAutoBatcher extends AbstractRedisUtils {
+
+    @Resource
+    private RedisAutoBatchProperties properties;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisStringAsyncCommands<byte[], byte[]> redisBinaryStringAsyncCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisHashAsyncCommands<byte[], byte[]> redisBinaryHashAsyncCommands;
+
+    private BlockingQueue<PendingRead> pendingReads;
+    private RedisBatchFlusher<PendingRead> flusher;
+    private volatile boolean running;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder batchedCallCount = new LongAdder();
+    private final LongAdder overflowCallCount = new LongAdder();
+    private final LongAdder waitedNanos = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!properties.getEnabled()) {
+            return;
+        }
+        pendingReads = new LinkedBlockingQueue<>(properties.getMaxPending());
+        running = true;
+
+        flusher = new RedisBatchFlusher<>("redis-auto-batcher", pendingReads, properties.getWindow(), properties.getMaxBatchSize(),
+                read -> read.enqueuedAt, this::dispatch,
+                (batch, e) -> batch.forEach(read -> read.future.completeExceptionally(e)));
+        flusher.start();
+        log.info("Redis auto-batching enabled - window:{} maxBatchSize:{}", properties.getWindow(), properties.getMaxBatchSize());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flusher.stop(properties.getTimeout());
+
+        // Send the reads still waiting, so that no caller is left hanging
+        List<PendingRead> remaining = new ArrayList<>();
+        pendingReads.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            this.dispatch(remaining);
+        }
+        log.info("Redis auto-batching stopped - {}", this.getStats());
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * Get the raw value of a key through the next MGET batch.
+     *
+     * @param key the key.
+     * @return reply the value of key, or null when key does not exist.
+     */
+    public byte[] getBytes(String key) {
+        PendingRead read = new PendingRead(key, null);
+        if (!pendingReads.offer(read)) {
+            overflowCallCount.increment();
+            return await(redisBinaryStringAsyncCommands.get(bytes(key)), properties.getTimeout());
+        }
+        return await(read.future, properties.getTimeout());
+    }
+
+    /**
+     * Get the value of a hash field through the next HMGET batch of the hash key.
+     *
+     * @param key the key.
+     * @param field the field type: key.
+     * @return reply the value associated with field, or null when field is not present in the hash or key does not exist.
+     */
+    public String getHashValue(String key, String field) {
+        PendingRead read = new PendingRead(key, field);
+        byte[] value;
+        if (!pendingReads.offer(read)) {
+            overflowCallCount.increment();
+            value = await(redisBinaryHashAsyncCommands.hget(bytes(key), bytes(field)), properties.getTimeout());
+        } else {
+            value = await(read.future, properties.getTimeout());
+        }
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the statistics of auto-batching since startup.
+     */
+    public AutoBatchStats getStats() {
+        long batches = batchCount.sum();
+        long calls = batchedCallCount.sum();
+        return new AutoBatchStats(
+                batches,
+                calls,
+                overflowCallCount.sum(),
+                batches == 0 ? 0D : (double) calls / batches,
+                calls == 0 ? 0D : waitedNanos.sum() / 1000D / calls
+        );
+    }
+
+    private void dispatch(List<PendingRead> batch) {
+        long now = System.nanoTime();
+        batchCount.increment();
+        batchedCallCount.add(batch.size());
+
+        // Distinct string keys, and hash fields grouped by hash key (the same key may be read by several callers)
+        Map<String, List<PendingRead>> stringReads = new LinkedHashMap<>();
+        Map<String, Map<String, List<PendingRead>>> hashReads = new LinkedHashMap<>();
+        for (PendingRead read : batch) {
+            waitedNanos.add(now - read.enqueuedAt);
+            if (read.field == null) {
+                stringReads.computeIfAbsent(read.key, k -> new ArrayList<>()).add(read);
+            } else {
+                hashReads.computeIfAbsent(read.key, k -> new LinkedHashMap<>())
+                        .computeIfAbsent(read.field, f -> new ArrayList<>())
+                        .add(read);
+            }
+        }
+
+        if (!stringReads.isEmpty()) {
+            RedisFuture<List<KeyValue<byte[], byte[]>>> future = redisBinaryStringAsyncCommands.mget(
+                    bytes(stringReads.keySet())
+            );
+            complete(future, stringReads);
+        }
+        for (Map.Entry<String, Map<String, List<PendingRead>>> entry : hashReads.entrySet()) {
+            Map<String, List<PendingRead>> fieldReads = entry.getValue();
+            RedisFuture<List<KeyValue<byte[], byte[]>>> future = redisBinaryHashAsyncCommands.hmget(
+                    bytes(entry.getKey()),
+                    bytes(fieldReads.keySet())
+            );
+            complete(future, fieldReads);
+        }
+    }
+
+    private void complete(RedisFuture<List<KeyValue<byte[], byte[]>>> future, Map<String, List<PendingRead>> reads) {
+        future.whenComplete((keyValues, throwable) -> {
+            if (throwable != null) {
+                reads.values().forEach(list -> list.forEach(read -> read.future.completeExceptionally(throwable)));
+                return;
+            }
+            // MGET and HMGET reply in the order of the keys (fields)
+            int index = 0;
+            for (List<PendingRead> list : reads.values()) {
+                byte[] value = keyValues.get(index++).getValueOrElse(null);
+                list.forEach(read -> read.future.complete(value));
+            }
+        });
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[][] bytes(Collection<String> texts) {
+        byte[][] bytes = new byte[texts.size()][];
+        int index = 0;
+        for (String text : texts) {
+            bytes[index++] = bytes(text);
+        }
+        return bytes;
+    }
+
+    /**
+     * A single-key read waiting to be flushed.
+     */
+    private static class PendingRead {
+        private final String key;
+        /**
+         * The hash field, null means a string GET.
+         */
+        private final String field;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+        private PendingRead(String key, String field) {
+            this.key = key;
+            this.field = field;
+        }
+    }
+}
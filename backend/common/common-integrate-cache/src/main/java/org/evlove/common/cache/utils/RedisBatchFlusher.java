@@ -0,0 +1,112 @@
+package org.evlove.common.cache.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * The windowed flush loop shared by the batching components (RedisAutoBatcher, RedisStreamProducer).
+ * <p>
+ * A single flusher thread blocks until the first element of the next batch arrives, then collects the elements arriving
+ * within the window, which starts when the first element was enqueued, or until the batch is full, and dispatches the batch.
+ * When the flusher is stopped, the elements already collected are still dispatched.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+public class RedisBatchFlusher<T> {
+
+    private final BlockingQueue<T> queue;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ToLongFunction<T> enqueuedAt;
+    private final Consumer<List<T>> dispatcher;
+    private final BiConsumer<List<T>, Exception> failureHandler;
+    private final Thread thread;
+    private volatile boolean running;
+
+    /**
+     * @param threadName The name of the flusher thread.
+     * @param queue The queue of the elements waiting to be flushed.
+     * @param window The longest time an element waits for other elements to join its batch.
+     * @param maxBatchSize The largest number of elements of a batch.
+     * @param enqueuedAt The System.nanoTime() at which an element was enqueued.
+     * @param dispatcher Send a batch.
+     * @param failureHandler Fail the elements of a batch whose dispatch threw.
+     */
+    public RedisBatchFlusher(String threadName, BlockingQueue<T> queue, Duration window, int maxBatchSize,
+                             ToLongFunction<T> enqueuedAt, Consumer<List<T>> dispatcher, BiConsumer<List<T>, Exception> failureHandler) {
+        this.queue = queue;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.enqueuedAt = enqueuedAt;
+        this.dispatcher = dispatcher;
+        this.failureHandler = failureHandler;
+        this.thread = new Thread(this::flushLoop, threadName);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Stop the flusher thread, and wait for the batch being collected to be dispatched.
+     *
+     * @param timeout The longest time to wait.
+     */
+    public void stop(Duration timeout) {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(timeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            List<T> batch = new ArrayList<>(maxBatchSize);
+            try {
+                // Block until the first element of the next batch arrives, the window starts from it
+                T first = queue.take();
+                long deadline = enqueuedAt.applyAsLong(first) + windowNanos;
+
+                batch.add(first);
+                while (batch.size() < maxBatchSize) {
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+                    T next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                dispatcher.accept(batch);
+            } catch (InterruptedException e) {
+                // Stopping, the elements already collected are still dispatched
+                if (!batch.isEmpty()) {
+                    dispatcher.accept(batch);
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Redis batch flush failed - thread:{}", thread.getName(), e);
+                failureHandler.accept(batch, e);
+            }
+        }
+    }
+}
@@ -1,18 +1,33 @@
 package org.evlove.common.cache.utils;
 
+import io.lettuce.core.AbstractRedisClient;
 import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanIterator;
+import io.lettuce.core.ScanStream;
 import io.lettuce.core.api.async.RedisKeyAsyncCommands;
+import io.lettuce.core.api.reactive.RedisKeyReactiveCommands;
 import io.lettuce.core.api.sync.RedisKeyCommands;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.reactive.RedisAdvancedClusterReactiveCommands;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import org.evlove.common.cache.RedisClientConfig;
 import org.evlove.common.cache.constant.RedisValueType;
+import org.evlove.common.cache.properties.RedisScanProperties;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import jakarta.annotation.Resource;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletionStage;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Redis generic operation tool class.
@@ -29,6 +44,18 @@ public class RedisGenericUtils extends AbstractRedisUtils {
     @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_ASYNC_COMMANDS)
     private RedisKeyAsyncCommands<String, String> redisKeyAsyncCommands;
 
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_REACTIVE_COMMANDS)
+    private RedisKeyReactiveCommands<String, String> redisKeyReactiveCommands;
+
+    @Resource
+    private RedisScanProperties scanProperties;
+
+    @Resource
+    private RedisGeoMirror redisGeoMirror;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_CLIENT)
+    private AbstractRedisClient abstractRedisClient;
+
     public RedisKeyCommands<String, String> sync() {
         return this.redisKeyCommands;
     }
@@ -37,6 +64,10 @@ public class RedisGenericUtils extends AbstractRedisUtils {
         return this.redisKeyAsyncCommands;
     }
 
+    public RedisKeyReactiveCommands<String, String> reactive() {
+        return this.redisKeyReactiveCommands;
+    }
+
     /**
      * Determine is key exist
      * @param key A key
@@ -65,13 +96,20 @@ public class RedisGenericUtils extends AbstractRedisUtils {
         }
     }
 
+    // region Search keys by pattern
     /**
-     * Find the keys in Redis based on the given pattern
+     * Find the keys in Redis based on the given pattern.
+     * It is implemented by SCAN instead of KEYS, so it will not block Redis, but all matched keys are still loaded into memory,
+     * for a large number of keys, use scanKeys(pattern) instead.
+     *
      * @param pattern Example: x* or *x*y
      * @return Array of keys
      */
     public List<String> searchKeys(String pattern) {
-        return redisKeyCommands.keys(pattern);
+        try (Stream<String> keys = this.scanKeys(pattern)) {
+            // SCAN may return a key more than once, KEYS did not
+            return keys.distinct().collect(Collectors.toList());
+        }
     }
     /**
      * Find the keys in Redis based on the give pattern (Async)
@@ -79,12 +117,140 @@ public class RedisGenericUtils extends AbstractRedisUtils {
      * @param action Subsequent programs to be executed
      */
     public void searchKeysAsync(String pattern, BiConsumer<List<String>, Throwable> action) {
-        RedisFuture<List<String>> future = redisKeyAsyncCommands.keys(pattern);
+        CompletionStage<List<String>> stage = this.scanKeysReactive(pattern)
+                .distinct()
+                .collectList()
+                .toFuture();
         if (action != null) {
-            future.whenComplete(action);
+            stage.whenComplete(action);
+        }
+    }
+
+    /**
+     * Lazily iterate the keys matching the given pattern by SCAN, the next SCAN is only sent when the previous page is consumed.
+     * In cluster mode, all master nodes are scanned in parallel.
+     * <p>
+     * Notice: SCAN may return a key more than once, and the stream should be closed when it is not fully consumed.
+     *
+     * @param pattern Example: x* or *x*y
+     * @return Stream of keys
+     */
+    public Stream<String> scanKeys(String pattern) {
+        if (redisKeyReactiveCommands instanceof RedisAdvancedClusterReactiveCommands) {
+            return this.scanKeysReactive(pattern).toStream(scanProperties.getCount().intValue());
         }
+        return ScanIterator.scan(redisKeyCommands, this.scanArgs(pattern)).stream();
     }
 
+    /**
+     * Reactively stream the keys matching the given pattern by SCAN.
+     * In cluster mode, all master nodes are scanned in parallel and the keys are merged as they arrive.
+     *
+     * @param pattern Example: x* or *x*y
+     * @return Flux of keys
+     */
+    public Flux<String> scanKeysReactive(String pattern) {
+        ScanArgs scanArgs = this.scanArgs(pattern);
+
+        if (redisKeyReactiveCommands instanceof RedisAdvancedClusterReactiveCommands<String, String> clusterCommands) {
+            // Each master node holds its own key space, so they are scanned independently
+            List<Flux<String>> nodeScans = new ArrayList<>();
+            for (RedisClusterNode node : ((RedisClusterClient) abstractRedisClient).getPartitions()) {
+                if (node.getRole().isUpstream()) {
+                    nodeScans.add(Flux.defer(() -> ScanStream.scan(clusterCommands.getConnection(node.getNodeId()), scanArgs)));
+                }
+            }
+            return Flux.merge(nodeScans);
+        }
+        return ScanStream.scan(redisKeyReactiveCommands, scanArgs);
+    }
+
+    /**
+     * Delete all keys matching the given pattern, chunks of keys are removed by UNLINK (the memory is reclaimed in background),
+     * and their local copies are evicted, as delete(keys) does.
+     * The chunk size, concurrency and throughput are limited by RedisScanProperties.
+     *
+     * @param pattern Example: x* or *x*y
+     * @return The number of deleted keys
+     */
+    public Long deleteByPattern(String pattern) {
+        return this.deleteByPatternReactive(pattern).block();
+    }
+    /**
+     * Reactively delete all keys matching the given pattern, see deleteByPattern(pattern).
+     *
+     * @param pattern Example: x* or *x*y
+     * @return Mono of the number of deleted keys
+     */
+    public Mono<Long> deleteByPatternReactive(String pattern) {
+        return this.scanChunks(pattern)
+                .flatMap(
+                        keys -> {
+                            String[] keyArray = keys.toArray(new String[0]);
+                            return redisKeyReactiveCommands.unlink(keyArray)
+                                    .doOnSuccess(deletedCount -> {
+                                        evictLocal(keyArray);
+                                        redisGeoMirror.publishDeletion(keyArray);
+                                    });
+                        },
+                        scanProperties.getMaxInFlight()
+                )
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Set the time to live(TTL) of all keys matching the given pattern, the EXPIRE commands of a chunk are pipelined,
+     * and the local copies of the keys are evicted, so that they do not outlive the keys.
+     * The chunk size, concurrency and throughput are limited by RedisScanProperties.
+     *
+     * @param pattern Example: x* or *x*y
+     * @param seconds The seconds of expire time
+     * @return The number of keys whose timeout was set
+     */
+    public Long setExpireTimeByPattern(String pattern, long seconds) {
+        return this.setExpireTimeByPatternReactive(pattern, seconds).block();
+    }
+    /**
+     * Reactively set the time to live(TTL) of all keys matching the given pattern, see setExpireTimeByPattern(pattern, seconds).
+     *
+     * @param pattern Example: x* or *x*y
+     * @param seconds The seconds of expire time
+     * @return Mono of the number of keys whose timeout was set
+     */
+    public Mono<Long> setExpireTimeByPatternReactive(String pattern, long seconds) {
+        return this.scanChunks(pattern)
+                .flatMap(
+                        keys -> Flux.fromIterable(keys)
+                                .flatMap(key -> redisKeyReactiveCommands.expire(key, seconds))
+                                .filter(Boolean::booleanValue)
+                                .count()
+                                .doOnSuccess(count -> evictLocal(keys.toArray(new String[0]))),
+                        scanProperties.getMaxInFlight()
+                )
+                .reduce(0L, Long::sum);
+    }
+
+    private ScanArgs scanArgs(String pattern) {
+        return ScanArgs.Builder
+                .matches(pattern)
+                .limit(scanProperties.getCount());
+    }
+
+    /**
+     * Split the scanned keys into chunks, and throttle the chunks when the throughput is limited.
+     */
+    private Flux<List<String>> scanChunks(String pattern) {
+        int chunkSize = scanProperties.getChunkSize();
+        Flux<List<String>> chunks = this.scanKeysReactive(pattern).buffer(chunkSize);
+
+        int maxKeysPerSecond = scanProperties.getMaxKeysPerSecond();
+        if (maxKeysPerSecond > 0) {
+            chunks = chunks.delayElements(Duration.ofNanos(chunkSize * 1_000_000_000L / maxKeysPerSecond));
+        }
+        return chunks;
+    }
+    // endregion
+
     /**
      * Find the storage value type of the specified key
      * @param key The key to search for
@@ -125,6 +291,8 @@ public class RedisGenericUtils extends AbstractRedisUtils {
      */
     public Boolean delete(String... keys) {
         Long deletedCount = redisKeyCommands.del(keys);
+        evictLocal(keys);
+        redisGeoMirror.publishDeletion(keys);
         return deletedCount == keys.length;
     }
     /**
@@ -137,6 +305,8 @@ public class RedisGenericUtils extends AbstractRedisUtils {
         CompletionStage<Boolean> stage = future.thenApply(new Function<Long, Boolean>() {
             @Override
             public Boolean apply(Long deletedCount) {
+                evictLocal(keys);
+                redisGeoMirror.publishDeletion(keys);
                 return deletedCount == keys.length;
             }
         });
@@ -0,0 +1,257 @@
+package org.evlove.common.cache.utils;
+
+import io.lettuce.core.GeoValue;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.async.RedisGeoAsyncCommands;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.pojo.GeoIngestStats;
+import org.evlove.common.cache.pojo.GeoPointInfo;
+import org.evlove.common.cache.properties.RedisGeoIngestProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalescing ingestion of high-frequency location updates, such as the positions reported by moving devices (opt-in, see RedisGeoIngestProperties).
+ * <p>
+ * The updates are buffered per key and member, a later update of a member replaces the earlier one, so only the latest position is written.
+ * Every window, a single flusher thread writes the buffered positions of each key with multi-member GEOADDs, pipelined on the shared connection.
+ * The number of members waiting is bounded: when it is reached, the updates of new members are dropped (and counted),
+ * while the members already waiting can still be updated.
+ * The updates with coordinates outside the range of GEOADD are rejected (and counted) before being buffered,
+ * as one of them would fail the whole batch it is written with.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisGeoIngestor {
+
+    /**
+     * The upper bounds of the buckets of the flush latency histogram, in milliseconds.
+     */
+    private static final long[] LATENCY_BUCKETS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    /**
+     * The coordinates accepted by GEOADD, a single member out of range fails the whole command.
+     */
+    private static final double MAX_LONGITUDE = 180;
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    @Resource
+    private RedisGeoIngestProperties properties;
+
+    @Resource
+    private RedisGeoMirror redisGeoMirror;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisGeoAsyncCommands<byte[], byte[]> redisBinaryGeoAsyncCommands;
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    /**
+     * The latest position of each member waiting to be written, per key.
+     */
+    private final Map<String, Map<String, PendingPosition>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final LongAdder offeredCount = new LongAdder();
+    private final LongAdder supersededCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder[] latencyCounts = new LongAdder[LATENCY_BUCKETS_MILLIS.length + 1];
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < latencyCounts.length; i++) {
+            latencyCounts[i] = new LongAdder();
+        }
+        if (!properties.getEnabled()) {
+            return;
+        }
+        long windowMillis = properties.getWindow().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-geo-ingestor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+        running = true;
+        log.info("Redis geo ingestion enabled - window:{} maxPending:{}", properties.getWindow(), properties.getMaxPending());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        scheduler.shutdownNow();
+        // Write the positions still waiting
+        this.flush();
+        log.info("Redis geo ingestion stopped - {}", this.getStats());
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * Record the latest position of a member, written at the end of the window (or right away when the ingestion is disabled).
+     *
+     * @param key The key.
+     * @param point The position of the member.
+     * @return false when the update was rejected, its coordinates are missing or outside the range of GEOADD,
+     * or dropped, too many members are waiting.
+     */
+    public boolean offer(String key, GeoPointInfo point) {
+        offeredCount.increment();
+        if (!isValid(point)) {
+            rejectedCount.increment();
+            log.debug("Redis geo position rejected - key:{} point:{}", key, point);
+            return false;
+        }
+        if (!running) {
+            this.write(key, List.of(GeoValue.just(point.getLongitude(), point.getLatitude(), bytes(point.getMember()))), System.nanoTime());
+            return true;
+        }
+        Map<String, PendingPosition> positions = pending.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        PendingPosition position = new PendingPosition(point.getLongitude(), point.getLatitude(), System.nanoTime());
+        if (positions.replace(point.getMember(), position) != null) {
+            supersededCount.increment();
+            return true;
+        }
+        if (pendingCount.incrementAndGet() > properties.getMaxPending()) {
+            pendingCount.decrementAndGet();
+            droppedCount.increment();
+            return false;
+        }
+        if (positions.put(point.getMember(), position) != null) {
+            // Added concurrently by another update of the member
+            pendingCount.decrementAndGet();
+            supersededCount.increment();
+        }
+        return true;
+    }
+
+    public GeoIngestStats getStats() {
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < LATENCY_BUCKETS_MILLIS.length; i++) {
+            histogram.put(LATENCY_BUCKETS_MILLIS[i] + "ms", latencyCounts[i].sum());
+        }
+        histogram.put("+Inf", latencyCounts[LATENCY_BUCKETS_MILLIS.length].sum());
+        return new GeoIngestStats(
+                offeredCount.sum(),
+                supersededCount.sum(),
+                rejectedCount.sum(),
+                droppedCount.sum(),
+                writtenCount.sum(),
+                failedCount.sum(),
+                (long) pendingCount.get(),
+                histogram
+        );
+    }
+
+    private void flush() {
+        int batchSize = properties.getBatchSize();
+        pending.forEach((key, positions) -> {
+            List<GeoValue<byte[]>> batch = new ArrayList<>(Math.min(positions.size(), batchSize));
+            long oldestNanos = Long.MAX_VALUE;
+            for (Map.Entry<String, PendingPosition> entry : positions.entrySet()) {
+                PendingPosition position = entry.getValue();
+                // A position updated meanwhile stays for the next flush
+                if (!positions.remove(entry.getKey(), position)) {
+                    continue;
+                }
+                pendingCount.decrementAndGet();
+                batch.add(GeoValue.just(position.longitude, position.latitude, bytes(entry.getKey())));
+                oldestNanos = Math.min(oldestNanos, position.updateNanos);
+                if (batch.size() == batchSize) {
+                    this.write(key, batch, oldestNanos);
+                    batch = new ArrayList<>(batchSize);
+                    oldestNanos = Long.MAX_VALUE;
+                }
+            }
+            if (!batch.isEmpty()) {
+                this.write(key, batch, oldestNanos);
+            }
+        });
+    }
+
+    /**
+     * Write a batch of positions, the latency is measured from the oldest update of the batch.
+     */
+    @SuppressWarnings("unchecked")
+    private void write(String key, List<GeoValue<byte[]>> batch, long oldestNanos) {
+        RedisFuture<Long> future = redisBinaryGeoAsyncCommands.geoadd(bytes(key), batch.toArray(new GeoValue[0]));
+        future.whenComplete((added, throwable) -> {
+            if (throwable != null) {
+                failedCount.add(batch.size());
+                log.warn("Redis geo positions not written - key:{} members:{}", key, batch.size(), throwable);
+                return;
+            }
+            writtenCount.add(batch.size());
+            this.publishToMirrors(key, batch);
+            long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldestNanos);
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS_MILLIS.length && latencyMillis > LATENCY_BUCKETS_MILLIS[bucket]) {
+                bucket++;
+            }
+            latencyCounts[bucket].add(batch.size());
+        });
+    }
+
+    private void publishToMirrors(String key, List<GeoValue<byte[]>> batch) {
+        List<GeoPointInfo> points = new ArrayList<>(batch.size());
+        for (GeoValue<byte[]> value : batch) {
+            points.add(new GeoPointInfo(
+                    value.getCoordinates().getX().doubleValue(),
+                    value.getCoordinates().getY().doubleValue(),
+                    new String(value.getValue(), StandardCharsets.UTF_8)
+            ));
+        }
+        redisGeoMirror.publish(key, points);
+    }
+
+    private static boolean isValid(GeoPointInfo point) {
+        Double longitude = point.getLongitude();
+        Double latitude = point.getLatitude();
+        // NaN fails both comparisons
+        return point.getMember() != null
+                && longitude != null && longitude >= -MAX_LONGITUDE && longitude <= MAX_LONGITUDE
+                && latitude != null && latitude >= -MAX_LATITUDE && latitude <= MAX_LATITUDE;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class PendingPosition {
+        private final double longitude;
+        private final double latitude;
+        private final long updateNanos;
+
+        private PendingPosition(double longitude, double latitude, long updateNanos) {
+            this.longitude = longitude;
+            this.latitude = latitude;
+            this.updateNanos = updateNanos;
+        }
+    }
+}
@@ -0,0 +1,637 @@
+package org.evlove.common.cache.utils;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisConnectionStateAdapter;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.ScoredValue;
+import io.lettuce.core.ScoredValueScanCursor;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.sync.RedisSortedSetCommands;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.RedisConnectionProvider;
+import org.evlove.common.cache.constant.RedisSortType;
+import org.evlove.common.cache.pojo.GeoDistanceInfo;
+import org.evlove.common.cache.pojo.GeoPointInfo;
+import org.evlove.common.cache.properties.RedisGeoMirrorProperties;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process read replica of selected geo keys (opt-in, see RedisGeoMirrorProperties), used by the searches of RedisGeoUtils
+ * (searchFromCircle, searchFromBox, nearest), which are then answered from local memory without a round trip.
+ * <p>
+ * Each mirrored key is loaded with ZSCAN at startup (the coordinates are decoded from the geohash scores, as Redis does)
+ * into a grid index of primitive arrays. It is then kept current by the change notifications published on a pub/sub channel
+ * by the writes of RedisGeoUtils and RedisGeoIngestor, the removals of members (RedisSortSetUtils.delete) and the deletions of keys
+ * (RedisGenericUtils.delete, deleteByPattern, RedisSortSetUtils.deleteAll), and loaded again every resyncInterval to catch up
+ * with the other changes (the writes of other clients, the expirations). The distances are computed with the formulas of Redis,
+ * so the results are the same.
+ * <p>
+ * A mirror is stale when it is not loaded yet, when a Redis connection was lost or a notification could not be published
+ * (notifications may have been missed) until it is loaded again, or when its last load is older than 1.5 resyncInterval:
+ * the searches are then sent to Redis.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisGeoMirror {
+
+    /**
+     * The constants of the geo commands of Redis (geohash.h, geohash_helper.c).
+     */
+    private static final double EARTH_RADIUS_IN_METERS = 6372797.560856;
+    private static final double GEO_LAT_MIN = -85.05112878;
+    private static final double GEO_LAT_MAX = 85.05112878;
+    private static final double GEO_LONG_MIN = -180;
+    private static final double GEO_LONG_MAX = 180;
+    private static final int GEO_STEP_MAX = 26;
+
+    private static final String FIELD_KEY = "k";
+    private static final String FIELD_MEMBERS = "m";
+    private static final String FIELD_LONGITUDES = "x";
+    private static final String FIELD_LATITUDES = "y";
+    private static final String FIELD_REMOVED = "r";
+    private static final String FIELD_DELETED = "d";
+
+    @Resource
+    private RedisGeoMirrorProperties properties;
+
+    @Resource
+    private RedisConnectionProvider connectionProvider;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_SYNC_COMMANDS)
+    private RedisSortedSetCommands<byte[], byte[]> redisBinarySortedSetCommands;
+
+    private StatefulConnection<String, String> pubConnection;
+    private RedisClusterAsyncCommands<String, String> pubCommands;
+    private StatefulRedisPubSubConnection<String, String> subConnection;
+    private ScheduledExecutorService scheduler;
+
+    private final Map<String, MirroredKey> mirrors = new ConcurrentHashMap<>();
+
+    /**
+     * The listener is registered on the client, so the events of the other connections of the client are ignored.
+     */
+    private final RedisConnectionStateListener connectionStateListener = new RedisConnectionStateAdapter() {
+        @Override
+        public void onRedisConnected(RedisChannelHandler<?, ?> connection, SocketAddress socketAddress) {
+            if (connection == subConnection) {
+                scheduler.execute(RedisGeoMirror.this::loadStale);
+            }
+        }
+
+        @Override
+        public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+            if (connection == subConnection) {
+                // The change notifications published meanwhile may be missed
+                mirrors.values().forEach(mirror -> mirror.fresh = false);
+            }
+        }
+    };
+
+    @PostConstruct
+    public void init() {
+        if (properties.getKeys().isEmpty()) {
+            return;
+        }
+        pubConnection = connectionProvider.connectAny(StringCodec.UTF8);
+        pubCommands = connectionProvider.async(pubConnection);
+        if (!properties.getEnabled()) {
+            return;
+        }
+        for (String key : properties.getKeys()) {
+            mirrors.put(key, new MirroredKey());
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-geo-mirror");
+            thread.setDaemon(true);
+            return thread;
+        });
+        subConnection = connectionProvider.connectPubSub(StringCodec.UTF8);
+        subConnection.addListener(new RedisPubSubAdapter<>() {
+            @Override
+            public void message(String channel, String message) {
+                onChange(message);
+            }
+        });
+        subConnection.sync().subscribe(properties.getChannel());
+        connectionProvider.getClient().addListener(connectionStateListener);
+
+        long resyncMillis = properties.getResyncInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::loadAll, 0, resyncMillis, TimeUnit.MILLISECONDS);
+        log.info("Redis geo mirror enabled - keys:{} cellDegrees:{}", properties.getKeys(), properties.getCellDegrees());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            connectionProvider.getClient().removeListener(connectionStateListener);
+            subConnection.close();
+        }
+        if (pubConnection != null) {
+            pubConnection.close();
+        }
+    }
+
+    /**
+     * Whether the searches of the key can be answered from local memory.
+     */
+    public boolean isFresh(String key) {
+        MirroredKey mirror = mirrors.get(key);
+        return mirror != null && mirror.fresh
+                && System.currentTimeMillis() - mirror.loadedAtMillis < properties.getResyncInterval().toMillis() * 3 / 2;
+    }
+
+    /**
+     * Publish the new positions of members of a mirrored key to the mirrors, it is called by the writes of RedisGeoUtils and RedisGeoIngestor.
+     */
+    void publish(String key, List<GeoPointInfo> points) {
+        if (pubCommands == null || points.isEmpty() || !properties.getKeys().contains(key)) {
+            return;
+        }
+        List<String> members = new ArrayList<>(points.size());
+        double[] longitudes = new double[points.size()];
+        double[] latitudes = new double[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            members.add(points.get(i).getMember());
+            longitudes[i] = points.get(i).getLongitude();
+            latitudes[i] = points.get(i).getLatitude();
+        }
+        this.send(key, JSONObject.of(FIELD_KEY, key, FIELD_MEMBERS, members, FIELD_LONGITUDES, longitudes, FIELD_LATITUDES, latitudes));
+    }
+
+    /**
+     * Publish the removal of members of a mirrored key to the mirrors, it is called by RedisSortSetUtils.delete (ZREM).
+     */
+    void publishRemoval(String key, List<String> members) {
+        if (pubCommands == null || members.isEmpty() || !properties.getKeys().contains(key)) {
+            return;
+        }
+        this.send(key, JSONObject.of(FIELD_KEY, key, FIELD_REMOVED, members));
+    }
+
+    /**
+     * Publish the deletion of mirrored keys to the mirrors, it is called by the deletions of keys of RedisGenericUtils.
+     */
+    void publishDeletion(String... keys) {
+        if (pubCommands == null) {
+            return;
+        }
+        for (String key : keys) {
+            if (properties.getKeys().contains(key)) {
+                this.send(key, JSONObject.of(FIELD_KEY, key, FIELD_DELETED, true));
+            }
+        }
+    }
+
+    private void send(String key, JSONObject message) {
+        pubCommands.publish(properties.getChannel(), message.toJSONString()).whenComplete((receivers, throwable) -> {
+            if (throwable != null) {
+                log.warn("Redis geo mirror notification not published, the mirrors catch up at the next load - key:{}", key, throwable);
+                // At least the local mirror must not answer from the state before the change
+                MirroredKey mirror = mirrors.get(key);
+                if (mirror != null) {
+                    mirror.fresh = false;
+                    scheduler.execute(this::loadStale);
+                }
+            }
+        });
+    }
+
+    /**
+     * Search the points within a circle, see RedisGeoUtils.searchFromCircle, only when the key is fresh.
+     */
+    public List<GeoDistanceInfo> searchFromCircle(String key, double centerX, double centerY, double radius, RedisSortType sortType, int count) {
+        List<GeoDistanceInfo> result = mirrors.get(key).index.search(centerX, centerY, radius, (x, y, distance) -> distance <= radius);
+        return sortAndLimit(result, sortType, count);
+    }
+
+    /**
+     * Search the points within a box, see RedisGeoUtils.searchFromBox, only when the key is fresh.
+     */
+    public List<GeoDistanceInfo> searchFromBox(String key, double centerX, double centerY, double width, double height, RedisSortType sortType, int count) {
+        double radius = Math.hypot(width / 2, height / 2) * 1.05D;
+        List<GeoDistanceInfo> result = mirrors.get(key).index.search(centerX, centerY, radius, (x, y, distance) ->
+                // As Redis does: the latitude distance, then the longitude distance at the latitude of the point
+                EARTH_RADIUS_IN_METERS * Math.abs(Math.toRadians(y) - Math.toRadians(centerY)) <= height / 2
+                        && distance(x, y, centerX, y) <= width / 2);
+        return sortAndLimit(result, sortType, count);
+    }
+
+    /**
+     * Search the k nearest points, see RedisGeoUtils.nearest, only when the key is fresh.
+     */
+    public List<GeoDistanceInfo> nearest(String key, double centerX, double centerY, int k) {
+        GeoIndex index = mirrors.get(key).index;
+        double radius = properties.getCellDegrees() * 111320D;
+        List<GeoDistanceInfo> result;
+        while (true) {
+            double searchRadius = radius;
+            result = index.search(centerX, centerY, searchRadius, (x, y, distance) -> distance <= searchRadius);
+            if (result.size() >= k || radius >= Math.PI * EARTH_RADIUS_IN_METERS) {
+                break;
+            }
+            radius *= 2;
+        }
+        return sortAndLimit(result, RedisSortType.ASC, k);
+    }
+
+    private void loadAll() {
+        this.load(false);
+    }
+
+    private void loadStale() {
+        this.load(true);
+    }
+
+    private void load(boolean staleOnly) {
+        for (Map.Entry<String, MirroredKey> entry : mirrors.entrySet()) {
+            if (staleOnly && entry.getValue().fresh) {
+                continue;
+            }
+            String key = entry.getKey();
+            try {
+                this.load(key);
+            } catch (Exception e) {
+                log.warn("Redis geo mirror load failed, the searches are sent to Redis - key:{}", key, e);
+            }
+        }
+    }
+
+    /**
+     * Load a key into a new index, then replace the current one. The changes received during the load are applied to both.
+     */
+    private void load(String key) {
+        MirroredKey mirror = mirrors.get(key);
+        synchronized (mirror) {
+            mirror.replay = new ArrayList<>();
+        }
+        GeoIndex index = new GeoIndex(properties.getCellDegrees());
+        try {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            ScanArgs scanArgs = ScanArgs.Builder.limit(properties.getLoadBatchSize());
+            ScanCursor cursor = ScanCursor.INITIAL;
+            do {
+                ScoredValueScanCursor<byte[]> page = redisBinarySortedSetCommands.zscan(keyBytes, cursor, scanArgs);
+                for (ScoredValue<byte[]> scoredValue : page.getValues()) {
+                    double[] coordinates = decode((long) scoredValue.getScore());
+                    index.put(new String(scoredValue.getValue(), StandardCharsets.UTF_8), coordinates[0], coordinates[1]);
+                }
+                cursor = page;
+            } while (!cursor.isFinished());
+        } catch (RuntimeException e) {
+            synchronized (mirror) {
+                mirror.replay = null;
+            }
+            throw e;
+        }
+        synchronized (mirror) {
+            mirror.replay.forEach(change -> change.applyTo(index));
+            mirror.replay = null;
+            mirror.index = index;
+            mirror.loadedAtMillis = System.currentTimeMillis();
+            mirror.fresh = true;
+        }
+        log.debug("Redis geo mirror loaded - key:{} members:{}", key, index.size());
+    }
+
+    private void onChange(String message) {
+        JSONObject json;
+        try {
+            json = JSON.parseObject(message);
+        } catch (Exception e) {
+            log.warn("Redis geo mirror notification ignored, not readable - message:{}", message);
+            return;
+        }
+        MirroredKey mirror = mirrors.get(json.getString(FIELD_KEY));
+        if (mirror == null) {
+            return;
+        }
+        Change change = new Change(
+                json.getBooleanValue(FIELD_DELETED),
+                json.getList(FIELD_REMOVED, String.class),
+                json.getList(FIELD_MEMBERS, String.class),
+                json.getObject(FIELD_LONGITUDES, double[].class),
+                json.getObject(FIELD_LATITUDES, double[].class)
+        );
+        synchronized (mirror) {
+            if (mirror.index != null) {
+                change.applyTo(mirror.index);
+            }
+            if (mirror.replay != null) {
+                mirror.replay.add(change);
+            }
+        }
+    }
+
+    private static List<GeoDistanceInfo> sortAndLimit(List<GeoDistanceInfo> result, RedisSortType sortType, int count) {
+        if (sortType == RedisSortType.ASC) {
+            result.sort(Comparator.comparing(GeoDistanceInfo::getDistance));
+        } else if (sortType == RedisSortType.DESC) {
+            result.sort(Comparator.comparing(GeoDistanceInfo::getDistance).reversed());
+        }
+        return count > 0 && result.size() > count ? new ArrayList<>(result.subList(0, count)) : result;
+    }
+
+    /**
+     * Decode the score of a geo member (a 52 bits interleaved geohash) into the center of its area: longitude, latitude.
+     */
+    private static double[] decode(long bits) {
+        long latitudeBits = 0;
+        long longitudeBits = 0;
+        for (int i = 0; i < GEO_STEP_MAX; i++) {
+            latitudeBits |= ((bits >>> (2 * i)) & 1L) << i;
+            longitudeBits |= ((bits >>> (2 * i + 1)) & 1L) << i;
+        }
+        double cells = 1L << GEO_STEP_MAX;
+        double latitude = GEO_LAT_MIN + (latitudeBits + 0.5D) * (GEO_LAT_MAX - GEO_LAT_MIN) / cells;
+        double longitude = GEO_LONG_MIN + (longitudeBits + 0.5D) * (GEO_LONG_MAX - GEO_LONG_MIN) / cells;
+        return new double[]{longitude, latitude};
+    }
+
+    /**
+     * The distance between two points in meters, with the haversine formula of Redis.
+     */
+    private static double distance(double longitude1, double latitude1, double longitude2, double latitude2) {
+        double latitude1Radians = Math.toRadians(latitude1);
+        double latitude2Radians = Math.toRadians(latitude2);
+        double u = Math.sin((latitude2Radians - latitude1Radians) / 2);
+        double v = Math.sin((Math.toRadians(longitude2) - Math.toRadians(longitude1)) / 2);
+        double a = u * u + Math.cos(latitude1Radians) * Math.cos(latitude2Radians) * v * v;
+        return 2.0D * EARTH_RADIUS_IN_METERS * Math.asin(Math.sqrt(a));
+    }
+
+    @FunctionalInterface
+    private interface PointFilter {
+        boolean accept(double longitude, double latitude, double distance);
+    }
+
+    private static class MirroredKey {
+        private volatile GeoIndex index;
+        private volatile boolean fresh;
+        private volatile long loadedAtMillis;
+
+        /**
+         * The changes received during a load, null when no load is in progress, guarded by the MirroredKey.
+         */
+        private List<Change> replay;
+    }
+
+    /**
+     * A change notification: the key was deleted, members were removed, or members were added or moved.
+     */
+    private static class Change {
+        private final boolean deleted;
+        private final List<String> removed;
+        private final List<String> members;
+        private final double[] longitudes;
+        private final double[] latitudes;
+
+        private Change(boolean deleted, List<String> removed, List<String> members, double[] longitudes, double[] latitudes) {
+            this.deleted = deleted;
+            this.removed = removed;
+            this.members = members;
+            this.longitudes = longitudes;
+            this.latitudes = latitudes;
+        }
+
+        private void applyTo(GeoIndex index) {
+            if (deleted) {
+                index.clear();
+            }
+            if (removed != null) {
+                removed.forEach(index::remove);
+            }
+            if (members != null) {
+                for (int i = 0; i < members.size(); i++) {
+                    index.put(members.get(i), longitudes[i], latitudes[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A grid of cells of cellDegrees, each holding the slots of its points. The coordinates of the points are kept in primitive arrays
+     * indexed by slot, a moved point changes cell but keeps its slot.
+     */
+    private static class GeoIndex {
+        private final double cellDegrees;
+        private final int columns;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private final Map<String, Integer> slots = new HashMap<>();
+        private final Map<Long, Cell> grid = new HashMap<>();
+        private String[] members = new String[1024];
+        private double[] longitudes = new double[1024];
+        private double[] latitudes = new double[1024];
+        private long[] cells = new long[1024];
+        private int highWater;
+
+        private GeoIndex(double cellDegrees) {
+            this.cellDegrees = cellDegrees;
+            this.columns = (int) Math.ceil(360D / cellDegrees);
+        }
+
+        private int size() {
+            lock.readLock().lock();
+            try {
+                return slots.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void put(String member, double longitude, double latitude) {
+            long cell = this.cellOf(this.rowOf(latitude), this.columnOf(longitude));
+            lock.writeLock().lock();
+            try {
+                Integer slot = slots.get(member);
+                if (slot == null) {
+                    slot = highWater++;
+                    if (slot == members.length) {
+                        int capacity = members.length * 2;
+                        members = Arrays.copyOf(members, capacity);
+                        longitudes = Arrays.copyOf(longitudes, capacity);
+                        latitudes = Arrays.copyOf(latitudes, capacity);
+                        cells = Arrays.copyOf(cells, capacity);
+                    }
+                    slots.put(member, slot);
+                    members[slot] = member;
+                    grid.computeIfAbsent(cell, c -> new Cell()).add(slot);
+                } else if (cells[slot] != cell) {
+                    grid.get(cells[slot]).remove(slot);
+                    grid.computeIfAbsent(cell, c -> new Cell()).add(slot);
+                }
+                longitudes[slot] = longitude;
+                latitudes[slot] = latitude;
+                cells[slot] = cell;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Remove a point, the last slot is moved into its slot, so that the slots stay dense.
+         */
+        private void remove(String member) {
+            lock.writeLock().lock();
+            try {
+                Integer slot = slots.remove(member);
+                if (slot == null) {
+                    return;
+                }
+                long cell = cells[slot];
+                grid.get(cell).remove(slot);
+                int last = --highWater;
+                if (slot != last) {
+                    Cell lastCell = grid.get(cells[last]);
+                    lastCell.remove(last);
+                    lastCell.add(slot);
+                    members[slot] = members[last];
+                    longitudes[slot] = longitudes[last];
+                    latitudes[slot] = latitudes[last];
+                    cells[slot] = cells[last];
+                    slots.put(members[slot], slot);
+                }
+                members[last] = null;
+                if (grid.get(cell).size == 0) {
+                    grid.remove(cell);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void clear() {
+            lock.writeLock().lock();
+            try {
+                slots.clear();
+                grid.clear();
+                Arrays.fill(members, 0, highWater, null);
+                highWater = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Collect the points of the cells within the radius of the center and accepted by the filter.
+         */
+        private List<GeoDistanceInfo> search(double centerX, double centerY, double radius, PointFilter filter) {
+            double latitudeDelta = Math.toDegrees(radius / EARTH_RADIUS_IN_METERS) * 1.01D + cellDegrees / 100;
+            double maxAbsLatitude = Math.abs(centerY) + latitudeDelta;
+            boolean allColumns = maxAbsLatitude >= 89D;
+            double longitudeDelta = allColumns ? 180D : latitudeDelta / Math.cos(Math.toRadians(maxAbsLatitude));
+            allColumns = allColumns || longitudeDelta >= 180D;
+
+            int minRow = this.rowOf(Math.max(centerY - latitudeDelta, -90D));
+            int maxRow = this.rowOf(Math.min(centerY + latitudeDelta, 90D));
+            int minColumn = (int) Math.floor((centerX - longitudeDelta + 180D) / cellDegrees);
+            int maxColumn = allColumns ? minColumn + columns - 1 : (int) Math.floor((centerX + longitudeDelta + 180D) / cellDegrees);
+            maxColumn = Math.min(maxColumn, minColumn + columns - 1);
+
+            List<GeoDistanceInfo> result = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                long cellCount = (long) (maxRow - minRow + 1) * (maxColumn - minColumn + 1);
+                if (cellCount > grid.size()) {
+                    // A large area: filter the cells holding points, instead of looking up every cell of the area
+                    for (Map.Entry<Long, Cell> entry : grid.entrySet()) {
+                        int row = (int) (entry.getKey() / columns);
+                        int column = (int) (entry.getKey() % columns);
+                        if (row >= minRow && row <= maxRow && Math.floorMod(column - minColumn, columns) <= maxColumn - minColumn) {
+                            this.collect(entry.getValue(), centerX, centerY, filter, result);
+                        }
+                    }
+                    return result;
+                }
+                for (int row = minRow; row <= maxRow; row++) {
+                    for (int column = minColumn; column <= maxColumn; column++) {
+                        Cell cell = grid.get(this.cellOf(row, Math.floorMod(column, columns)));
+                        if (cell != null) {
+                            this.collect(cell, centerX, centerY, filter, result);
+                        }
+                    }
+                }
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void collect(Cell cell, double centerX, double centerY, PointFilter filter, List<GeoDistanceInfo> result) {
+            for (int i = 0; i < cell.size; i++) {
+                int slot = cell.slots[i];
+                double distance = distance(centerX, centerY, longitudes[slot], latitudes[slot]);
+                if (filter.accept(longitudes[slot], latitudes[slot], distance)) {
+                    result.add(GeoDistanceInfo.builder()
+                            .member(members[slot])
+                            .distance(distance)
+                            .longitude(longitudes[slot])
+                            .latitude(latitudes[slot])
+                            .build());
+                }
+            }
+        }
+
+        private int rowOf(double latitude) {
+            return (int) Math.floor((latitude + 90D) / cellDegrees);
+        }
+
+        private int columnOf(double longitude) {
+            return Math.floorMod((int) Math.floor((longitude + 180D) / cellDegrees), columns);
+        }
+
+        private long cellOf(int row, int column) {
+            return (long) row * columns + column;
+        }
+    }
+
+    private static class Cell {
+        private int[] slots = new int[8];
+        private int size;
+
+        private void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        private void remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,17 +1,24 @@
 package org.evlove.common.cache.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.lettuce.core.*;
 import io.lettuce.core.api.async.RedisGeoAsyncCommands;
 import io.lettuce.core.api.sync.RedisGeoCommands;
 import org.evlove.common.cache.RedisClientConfig;
 import org.evlove.common.cache.constant.RedisSortType;
+import org.evlove.common.cache.pojo.GeoNearestStats;
 import org.evlove.common.cache.pojo.GeoPointInfo;
 import org.evlove.common.cache.pojo.GeoDistanceInfo;
+import org.evlove.common.cache.properties.RedisGeoProperties;
 import org.springframework.stereotype.Component;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 /**
@@ -23,18 +30,52 @@ import java.util.function.Function;
  * REFER TO:
  * <a href="https://redis.io/commands/georadius/">Redis - georadius command</a>
  * <a href="https://redis.io/commands/geosearch/">Redis - geosearch command</a>
+ * <p>
+ * The nearest members of a point (nearest) are searched within a radius estimated from the density of the members around the point,
+ * which is learned from the previous queries per geohash cell, and the radius grows until enough members are found.
+ * <p>
+ * The searches of the keys mirrored in local memory (see RedisGeoMirror) are answered locally while the mirror is fresh.
  *
  * @author massaton.github.io
  */
 @Component
 public class RedisGeoUtils extends AbstractRedisUtils {
 
+    private static final char[] GEOHASH_BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    @Resource
+    private RedisGeoProperties properties;
+
+    @Resource
+    private RedisGeoMirror redisGeoMirror;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisGeoAsyncCommands<byte[], byte[]> redisBinaryGeoAsyncCommands;
+
     @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_SYNC_COMMANDS)
     private RedisGeoCommands<String, String> redisGeoCommands;
 
     @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_ASYNC_COMMANDS)
     private RedisGeoAsyncCommands<String, String> redisGeoAsyncCommands;
 
+    /**
+     * The density of the members (per square meter) around the recent nearest queries, per key and geohash cell.
+     */
+    private Cache<String, Double> densities;
+
+    private final LongAdder nearestQueryCount = new LongAdder();
+    private final LongAdder nearestSearchCount = new LongAdder();
+    private final LongAdder nearestFirstSearchHitCount = new LongAdder();
+    private final LongAdder nearestMaxRadiusCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        densities = Caffeine.newBuilder()
+                .maximumSize(properties.getDensityCacheSize())
+                .expireAfterWrite(properties.getDensityTtl())
+                .build();
+    }
+
     public RedisGeoCommands<String, String> sync() {
         return this.redisGeoCommands;
     }
@@ -54,6 +95,7 @@ public class RedisGeoUtils extends AbstractRedisUtils {
                 key,
                 transToGeoValue(points)
         );
+        redisGeoMirror.publish(key, Arrays.asList(points));
         return insertCount == points.length;
     }
     /**
@@ -70,6 +112,7 @@ public class RedisGeoUtils extends AbstractRedisUtils {
         ).thenApply(new Function<Long, Boolean>() {
             @Override
             public Boolean apply(Long insertCount) {
+                redisGeoMirror.publish(key, Arrays.asList(points));
                 return insertCount == points.length;
             }
         }).toCompletableFuture();
@@ -135,6 +178,9 @@ public class RedisGeoUtils extends AbstractRedisUtils {
      * @return Search result.
      */
     public List<GeoDistanceInfo> searchFromCircle(String key, Double centerX, Double centerY, Double radius, RedisSortType sortType, Integer count) {
+        if (redisGeoMirror.isFresh(key)) {
+            return redisGeoMirror.searchFromCircle(key, centerX, centerY, radius, Objects.requireNonNull(sortType), count);
+        }
         GeoSearch.GeoRef<String> ref = GeoSearch.fromCoordinates(centerX, centerY);
         GeoSearch.GeoPredicate predicate = GeoSearch.byRadius(radius, GeoArgs.Unit.m);
         GeoArgs args = this.generateSearchGeoArgs(sortType, count, true);
@@ -156,6 +202,9 @@ public class RedisGeoUtils extends AbstractRedisUtils {
      * @return Search result.
      */
     public List<GeoDistanceInfo> searchFromBox(String key, Double centerX, Double centerY, Double width, Double height, RedisSortType sortType, Integer count) {
+        if (redisGeoMirror.isFresh(key)) {
+            return redisGeoMirror.searchFromBox(key, centerX, centerY, width, height, Objects.requireNonNull(sortType), count);
+        }
         GeoSearch.GeoRef<String> ref = GeoSearch.fromCoordinates(centerX, centerY);
         GeoSearch.GeoPredicate predicate = GeoSearch.byBox(width, height, GeoArgs.Unit.m);
         GeoArgs args = this.generateSearchGeoArgs(sortType, count, true);
@@ -165,6 +214,83 @@ public class RedisGeoUtils extends AbstractRedisUtils {
     }
 
 
+    /**
+     * Search for the k nearest coordinate points of a point, nearest first, without choosing a radius.
+     *
+     * @param key The key to which the member to search belongs.
+     * @param centerX Longitude coordinates of the center point.
+     * @param centerY Latitude coordinates of the center point.
+     * @param k The number of points to find.
+     * @return Search result, fewer than k points when there are not enough within the largest radius.
+     */
+    public List<GeoDistanceInfo> nearest(String key, Double centerX, Double centerY, Integer k) {
+        return await(this.nearestAsync(key, centerX, centerY, k), commandTimeout().multipliedBy(2));
+    }
+
+    /**
+     * Asynchronously search for the k nearest coordinate points of a point, see nearest.
+     * <p>
+     * The first search uses the radius in which k points are expected, from the density estimated around the point by the previous
+     * queries, usually a single round trip. When fewer than k points are found, the radius grows geometrically and the search is repeated.
+     * The k points found within a radius are the k nearest, the points outside are farther than the radius.
+     */
+    public CompletableFuture<List<GeoDistanceInfo>> nearestAsync(String key, Double centerX, Double centerY, Integer k) {
+        if (redisGeoMirror.isFresh(key)) {
+            return CompletableFuture.completedFuture(redisGeoMirror.nearest(key, centerX, centerY, k));
+        }
+        nearestQueryCount.increment();
+        String cell = key + ':' + geohash(centerX, centerY, properties.getDensityCellPrecision());
+        Double density = densities.getIfPresent(cell);
+        double radius = density == null ? properties.getNearestInitialRadius()
+                : Math.sqrt(k / (Math.PI * density)) * properties.getNearestRadiusMargin();
+        radius = Math.min(Math.max(radius, properties.getNearestMinRadius()), properties.getNearestMaxRadius());
+        return this.searchNearest(key, centerX, centerY, k, radius, cell, true);
+    }
+
+    public GeoNearestStats getNearestStats() {
+        return new GeoNearestStats(
+                nearestQueryCount.sum(),
+                nearestSearchCount.sum(),
+                nearestFirstSearchHitCount.sum(),
+                nearestMaxRadiusCount.sum()
+        );
+    }
+
+    private CompletableFuture<List<GeoDistanceInfo>> searchNearest(String key, double centerX, double centerY, int k,
+                                                                 double radius, String cell, boolean first) {
+        nearestSearchCount.increment();
+        GeoArgs args = new GeoArgs().withDistance().withCoordinates().withCount(k).asc();
+        return redisBinaryGeoAsyncCommands.geosearch(
+                key.getBytes(StandardCharsets.UTF_8),
+                GeoSearch.fromCoordinates(centerX, centerY),
+                GeoSearch.byRadius(radius, GeoArgs.Unit.m),
+                args
+        ).toCompletableFuture().thenCompose(points -> {
+            int found = points.size();
+            if (found >= k) {
+                // k points within the distance of the farthest one
+                double farthest = Math.max(points.get(found - 1).getDistance(), 1D);
+                densities.put(cell, k / (Math.PI * farthest * farthest));
+                if (first) {
+                    nearestFirstSearchHitCount.increment();
+                }
+                return CompletableFuture.completedFuture(transToDistanceInfoFromBytes(points));
+            }
+            if (found > 0) {
+                densities.put(cell, found / (Math.PI * radius * radius));
+            }
+            if (radius >= properties.getNearestMaxRadius()) {
+                nearestMaxRadiusCount.increment();
+                return CompletableFuture.completedFuture(transToDistanceInfoFromBytes(points));
+            }
+            // The area holding k points at the density seen so far, at least a half more
+            double growth = found == 0 ? properties.getNearestMaxGrowth()
+                    : Math.min(Math.max(Math.sqrt((double) k / found) * properties.getNearestRadiusMargin(), 1.5D), properties.getNearestMaxGrowth());
+            double nextRadius = Math.min(radius * growth, properties.getNearestMaxRadius());
+            return this.searchNearest(key, centerX, centerY, k, nextRadius, cell, false);
+        });
+    }
+
     // region Private Method Zone
     /**
      * Convert the custom coordinate point model to the coordinate point model required by the Lettuce framework.
@@ -208,6 +334,58 @@ public class RedisGeoUtils extends AbstractRedisUtils {
         return result;
     }
 
+    private List<GeoDistanceInfo> transToDistanceInfoFromBytes(List<GeoWithin<byte[]>> points) {
+        List<GeoDistanceInfo> result = new ArrayList<>(points.size());
+        for (GeoWithin<byte[]> point : points) {
+            result.add(GeoDistanceInfo.builder()
+                    .member(new String(point.getMember(), StandardCharsets.UTF_8))
+                    .distance(point.getDistance())
+                    .longitude(point.getCoordinates().getX().doubleValue())
+                    .latitude(point.getCoordinates().getY().doubleValue())
+                    .build());
+        }
+        return result;
+    }
+
+    /**
+     * Encode a point as a geohash of the given precision (number of base32 characters).
+     */
+    private static String geohash(double longitude, double latitude, int precision) {
+        double minLongitude = -180, maxLongitude = 180, minLatitude = -90, maxLatitude = 90;
+        StringBuilder geohash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int index = 0;
+        while (geohash.length() < precision) {
+            if (evenBit) {
+                double middle = (minLongitude + maxLongitude) / 2;
+                if (longitude >= middle) {
+                    index = index * 2 + 1;
+                    minLongitude = middle;
+                } else {
+                    index = index * 2;
+                    maxLongitude = middle;
+                }
+            } else {
+                double middle = (minLatitude + maxLatitude) / 2;
+                if (latitude >= middle) {
+                    index = index * 2 + 1;
+                    minLatitude = middle;
+                } else {
+                    index = index * 2;
+                    maxLatitude = middle;
+                }
+            }
+            evenBit = !evenBit;
+            if (++bit == 5) {
+                geohash.append(GEOHASH_BASE32[index]);
+                bit = 0;
+                index = 0;
+            }
+        }
+        return geohash.toString();
+    }
+
     private GeoArgs generateSearchGeoArgs(RedisSortType sortType, Integer count, Boolean isAccurate) {
         GeoArgs geoArgs = new GeoArgs()
                 .withDistance()
@@ -8,6 +8,7 @@ import org.evlove.common.cache.RedisClientConfig;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ObjectUtils;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletionStage;
 import java.util.function.BiConsumer;
@@ -25,6 +26,15 @@ public class RedisHashUtils extends AbstractRedisUtils {
     @Resource
     private RedisGenericUtils redisGenericUtils;
 
+    @Resource
+    private RedisAutoBatcher redisAutoBatcher;
+
+    @Resource
+    private RedisNearCache redisNearCache;
+
+    @Resource
+    private RedisHotKeyDetector redisHotKeyDetector;
+
     @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_SYNC_COMMANDS)
     private RedisHashCommands<String, String> redisHashCommands;
 
@@ -39,11 +49,31 @@ public class RedisHashUtils extends AbstractRedisUtils {
         return this.redisHashAsyncCommands;
     }
 
+    /**
+     * Get all the fields and values of a hash.
+     * When the key is opted in to the near cache, it is read from local memory if possible, see RedisNearCache.
+     * When the key is hot, it is read from a short-lived local replica, see RedisHotKeyDetector.
+     */
+    @SuppressWarnings("unchecked")
     public Map<String, String> getAll(String key) {
+        if (redisNearCache.isCached(key)) {
+            return redisNearCache.getHash(key);
+        }
+        if (redisHotKeyDetector.recordRead(key)) {
+            Map<String, String> map = (Map<String, String>) redisHotKeyDetector.getReplica(key, () -> redisHashCommands.hgetall(key));
+            return new HashMap<>(map);
+        }
         return redisHashCommands.hgetall(key);
     }
 
+    /**
+     * Get the value of a hash field.
+     * When auto-batching is enabled, concurrent calls are merged into one HMGET per key, see RedisAutoBatcher.
+     */
     public String getValue(String key, String field) {
+        if (redisAutoBatcher.isEnabled()) {
+            return redisAutoBatcher.getHashValue(key, field);
+        }
         return redisHashCommands.hget(key, field);
     }
 
@@ -53,6 +83,7 @@ public class RedisHashUtils extends AbstractRedisUtils {
         }
 
         Long count = redisHashCommands.hset(key, map);
+        evictLocal(key);
 
         // If the field exists, the corresponding value will be modified, but it will not be counted(that is, count==0)
         // so return ture directly.
@@ -72,6 +103,7 @@ public class RedisHashUtils extends AbstractRedisUtils {
         CompletionStage<Boolean> completionStage = future.thenApply(new Function<Long, Boolean>() {
             @Override
             public Boolean apply(Long count) {
+                evictLocal(key);
                 // If the field exists, the corresponding value will be modified, but it will not be counted(that is, count==0)
                 // so return ture directly.
                 return true;
@@ -85,6 +117,7 @@ public class RedisHashUtils extends AbstractRedisUtils {
 
     public Boolean set(String key, String field, String value) {
         redisHashCommands.hset(key, field, value);
+        evictLocal(key);
 
         // If the field exists, the corresponding value will be modified, but it will return false,
         // so return ture directly.
@@ -101,6 +134,7 @@ public class RedisHashUtils extends AbstractRedisUtils {
         CompletionStage<Boolean> completionStage = future.thenApply(new Function<Boolean, Boolean>() {
             @Override
             public Boolean apply(Boolean result) {
+                evictLocal(key);
                 // If the field exists, the corresponding value will be modified, but it will return false,
                 // so return ture directly.
                 return true;
@@ -119,6 +153,7 @@ public class RedisHashUtils extends AbstractRedisUtils {
     public Boolean delete(String key, String... fields) {
         // The count just including fields that are specified and existed.
         Long count = redisHashCommands.hdel(key, fields);
+        evictLocal(key);
         // Consider excluding fields that are specified but do not exist, so return ture directly.
         return true;
     }
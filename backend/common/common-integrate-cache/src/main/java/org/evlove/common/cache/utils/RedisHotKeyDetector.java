@@ -0,0 +1,260 @@
+package org.evlove.common.cache.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.pojo.HotKeyInfo;
+import org.evlove.common.cache.properties.RedisHotKeyProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Detects the hot keys read through the RedisXxxUtils, and serves them from a short-lived local replica (opt-in, see RedisHotKeyProperties),
+ * so that a single viral key does not pin one Redis node.
+ * <p>
+ * - A sample of the reads is counted in a count-min sketch, which estimates the frequency of every key in constant memory.
+ * - A key read at least threshold times within the window is promoted at once (up to topK keys).
+ * - At the end of each window, the topK most frequent keys (min-heap) stay promoted, the keys that cooled off are demoted,
+ *   and the sketch starts over.
+ * <p>
+ * Used by: RedisStringUtils.get(key), RedisHashUtils.getAll(key), RedisObjectUtils.get(key, clazz).
+ * The write methods of these utils evict the local replica immediately, the writes of other instances are seen after localTtl.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisHotKeyDetector {
+    /**
+     * Non-existent keys are replicated as well, Caffeine does not allow null values.
+     */
+    private static final Object NULL_VALUE = new Object();
+
+    @Resource
+    private RedisHotKeyProperties properties;
+
+    private CountMinSketch sketch;
+    private Cache<String, Object> replicas;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    /**
+     * The promoted keys and their estimated frequency.
+     */
+    private final Map<String, Long> hotKeys = new ConcurrentHashMap<>();
+
+    /**
+     * The keys that reached the threshold within the current window, and their highest estimated frequency.
+     */
+    private final Map<String, Long> candidates = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (!properties.getEnabled()) {
+            return;
+        }
+        sketch = new CountMinSketch(properties.getSketchWidth(), properties.getSketchDepth());
+        replicas = Caffeine.newBuilder()
+                .maximumSize(properties.getTopK())
+                .expireAfterWrite(properties.getLocalTtl())
+                .build();
+
+        long windowMillis = properties.getWindow().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-hot-key-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::rotateWindow, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+        running = true;
+        log.info("Redis hot key detection enabled - window:{} threshold:{} topK:{}",
+                properties.getWindow(), properties.getThreshold(), properties.getTopK());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        scheduler.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * Count the read of a key (sampled), and tell whether the key is currently hot.
+     */
+    public boolean recordRead(String key) {
+        if (!running) {
+            return false;
+        }
+        double sampleRatio = properties.getSampleRatio();
+        if (ThreadLocalRandom.current().nextDouble() < sampleRatio) {
+            long frequency = (long) (sketch.increment(key) / sampleRatio);
+            if (frequency >= properties.getThreshold()) {
+                candidates.merge(key, frequency, Math::max);
+                if (!hotKeys.containsKey(key) && hotKeys.size() < properties.getTopK()
+                        && hotKeys.putIfAbsent(key, frequency) == null) {
+                    log.info("Redis hot key promoted: {} - about {} reads within {}", key, frequency, properties.getWindow());
+                }
+            }
+        }
+        return hotKeys.containsKey(key);
+    }
+
+    /**
+     * Get the value of a hot key from the local replica, the concurrent misses of the same key share one read from Redis.
+     *
+     * @param key the hot key.
+     * @param loader read the value from Redis.
+     * @return the value, null when the key does not exist.
+     */
+    public Object getReplica(String key, Supplier<Object> loader) {
+        Object value = replicas.get(key, k -> {
+            Object loaded = loader.get();
+            return loaded == null ? NULL_VALUE : loaded;
+        });
+        return value == NULL_VALUE ? null : value;
+    }
+
+    /**
+     * Evict the local replicas of the given keys, it is called by the write methods of the RedisXxxUtils.
+     */
+    public void invalidate(String... keys) {
+        if (!running) {
+            return;
+        }
+        for (String key : keys) {
+            replicas.invalidate(key);
+        }
+    }
+
+    /**
+     * Evict the local replicas of the keys starting with one of the given prefixes.
+     */
+    public void invalidatePrefix(String... prefixes) {
+        if (!running) {
+            return;
+        }
+        replicas.asMap().keySet().removeIf(key -> {
+            for (String prefix : prefixes) {
+                if (key.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Get the keys currently promoted, the most frequent first.
+     */
+    public List<HotKeyInfo> getHotKeys() {
+        List<HotKeyInfo> list = new ArrayList<>(hotKeys.size());
+        hotKeys.forEach((key, frequency) -> list.add(new HotKeyInfo(key, frequency)));
+        list.sort(Comparator.comparing(HotKeyInfo::getFrequency).reversed());
+        return list;
+    }
+
+    /**
+     * Keep the topK most frequent keys of the window promoted, demote the others, and start a new window.
+     */
+    private void rotateWindow() {
+        try {
+            Map<String, Long> windowCandidates = new HashMap<>(candidates);
+            candidates.clear();
+            sketch.clear();
+
+            PriorityQueue<Map.Entry<String, Long>> topKeys = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for (Map.Entry<String, Long> entry : windowCandidates.entrySet()) {
+                topKeys.offer(entry);
+                if (topKeys.size() > properties.getTopK()) {
+                    topKeys.poll();
+                }
+            }
+            Map<String, Long> stillHot = new HashMap<>(topKeys.size());
+            topKeys.forEach(entry -> stillHot.put(entry.getKey(), entry.getValue()));
+
+            List<String> demoted = new ArrayList<>();
+            for (String key : hotKeys.keySet()) {
+                if (!stillHot.containsKey(key)) {
+                    hotKeys.remove(key);
+                    replicas.invalidate(key);
+                    demoted.add(key);
+                }
+            }
+            hotKeys.putAll(stillHot);
+
+            if (!demoted.isEmpty()) {
+                log.info("Redis hot keys demoted: {}", demoted);
+            }
+            if (!hotKeys.isEmpty()) {
+                log.info("Redis hot keys: {}", this.getHotKeys());
+            }
+        } catch (Exception e) {
+            log.error("Redis hot key window rotation failed", e);
+        }
+    }
+
+    /**
+     * Count-min sketch: depth rows of width counters, each key increments one counter per row (chosen by a different hash),
+     * the smallest of them is an upper bound of the key's count, close to it when width is much larger than the number of hot keys.
+     */
+    private static class CountMinSketch {
+        private final int width;
+        private final int depth;
+        private final long[] seeds;
+        private final AtomicLongArray counters;
+
+        private CountMinSketch(int width, int depth) {
+            int powerOfTwo = 1;
+            while (powerOfTwo < width) {
+                powerOfTwo <<= 1;
+            }
+            this.width = powerOfTwo;
+            this.depth = depth;
+            this.seeds = new SplittableRandom().longs(depth).toArray();
+            this.counters = new AtomicLongArray(this.width * depth);
+        }
+
+        /**
+         * @return the estimated count of the key, after incrementing it.
+         */
+        private long increment(String key) {
+            int hash = key.hashCode();
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                long mixed = (hash ^ seeds[row]) * 0x9E3779B97F4A7C15L;
+                int column = (int) (mixed ^ (mixed >>> 32)) & (width - 1);
+                estimate = Math.min(estimate, counters.incrementAndGet(row * width + column));
+            }
+            return estimate;
+        }
+
+        private void clear() {
+            for (int i = 0; i < counters.length(); i++) {
+                counters.set(i, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package org.evlove.common.cache.utils;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.RedisConnectionProvider;
+import org.evlove.common.cache.pojo.InvalidationStats;
+import org.evlove.common.cache.properties.RedisInvalidationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invalidate the local caches of all the instances of the application: the near cache, the hot key replicas,
+ * and the application local caches registered with register (a JetCache local cache, a local map...).
+ * <p>
+ * The invalidations are evicted locally right away, and broadcast to the other instances over a publish/subscribe channel (opt-in,
+ * see RedisInvalidationProperties). The invalidations requested within a few milliseconds are coalesced into one message,
+ * without the duplicated keys and the keys covered by a prefix of the same message, and each message is evicted in bulk on receipt.
+ * Every instance has its own sender id, the messages of the instance itself are ignored.
+ * <p>
+ * Like any publish/subscribe message, an invalidation is lost when an instance is disconnected from Redis at that time,
+ * so the local entries should still expire after some time.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisInvalidationBus {
+
+    private static final String FIELD_SENDER = "s";
+    private static final String FIELD_KEYS = "k";
+    private static final String FIELD_PREFIXES = "p";
+
+    @Resource
+    private RedisInvalidationProperties properties;
+
+    @Resource
+    private RedisConnectionProvider connectionProvider;
+
+    @Resource
+    private RedisNearCache localNearCache;
+
+    @Resource
+    private RedisHotKeyDetector localHotKeyDetector;
+
+    private final String senderId = UUID.randomUUID().toString();
+    private final List<RedisInvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+    private StatefulConnection<String, String> pubConnection;
+    private RedisClusterAsyncCommands<String, String> pubCommands;
+    private StatefulRedisPubSubConnection<String, String> subConnection;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    /**
+     * The last message published, the messages of the connection complete in order.
+     */
+    private volatile RedisFuture<Long> lastPublish;
+
+    /**
+     * The keys and prefixes waiting for the end of the coalescing window, guarded by the lock.
+     */
+    private final Object lock = new Object();
+    private Set<String> pendingKeys = new LinkedHashSet<>();
+    private Set<String> pendingPrefixes = new LinkedHashSet<>();
+    private boolean flushScheduled;
+
+    private final LongAdder requestedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder publishFailedCount = new LongAdder();
+    private final LongAdder receivedCount = new LongAdder();
+    private final LongAdder appliedCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!properties.getEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-invalidation-bus");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pubConnection = connectionProvider.connectAny(StringCodec.UTF8);
+        pubCommands = connectionProvider.async(pubConnection);
+        subConnection = connectionProvider.connectPubSub(StringCodec.UTF8);
+        subConnection.addListener(new RedisPubSubAdapter<>() {
+            @Override
+            public void message(String channel, String message) {
+                onMessage(message);
+            }
+        });
+        subConnection.sync().subscribe(properties.getChannel());
+        running = true;
+        log.info("Redis invalidation bus enabled - channel:{} sender:{} coalesceWindow:{}",
+                properties.getChannel(), senderId, properties.getCoalesceWindow());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        subConnection.close();
+        // The coalescing windows in progress are still flushed
+        scheduler.shutdown();
+        try {
+            if (scheduler.awaitTermination(properties.getCoalesceWindow().toMillis() + 1000L, TimeUnit.MILLISECONDS) && lastPublish != null) {
+                LettuceFutures.awaitAll(pubConnection.getTimeout(), lastPublish);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Redis invalidation bus closed before the last messages were published", e);
+        }
+        pubConnection.close();
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * Register an application local cache, evicted with the near cache and the hot key replicas.
+     */
+    public void register(RedisInvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Evict the given keys from the local caches of this instance right away, and of the other instances at the end of the coalescing window.
+     */
+    public void invalidate(String... keys) {
+        Set<String> keySet = new LinkedHashSet<>(Arrays.asList(keys));
+        this.apply(keySet, Collections.emptySet());
+        this.enqueue(keySet, false);
+    }
+
+    /**
+     * Evict the keys starting with one of the given prefixes from the local caches of this instance right away,
+     * and of the other instances at the end of the coalescing window.
+     */
+    public void invalidatePrefix(String... prefixes) {
+        Set<String> prefixSet = new LinkedHashSet<>(Arrays.asList(prefixes));
+        this.apply(Collections.emptySet(), prefixSet);
+        this.enqueue(prefixSet, true);
+    }
+
+    /**
+     * Broadcast the keys modified by the write methods of the RedisXxxUtils, when enabled, they are already evicted locally.
+     */
+    void onWrite(String... keys) {
+        if (running && properties.getBroadcastWrites()) {
+            this.enqueue(new LinkedHashSet<>(Arrays.asList(keys)), false);
+        }
+    }
+
+    public InvalidationStats getStats() {
+        return new InvalidationStats(
+                requestedCount.sum(),
+                coalescedCount.sum(),
+                publishedCount.sum(),
+                publishFailedCount.sum(),
+                receivedCount.sum(),
+                appliedCount.sum()
+        );
+    }
+
+    private void enqueue(Set<String> items, boolean prefix) {
+        if (!running || items.isEmpty()) {
+            return;
+        }
+        requestedCount.add(items.size());
+        boolean full;
+        synchronized (lock) {
+            Set<String> pending = prefix ? pendingPrefixes : pendingKeys;
+            for (String item : items) {
+                if (!pending.add(item)) {
+                    coalescedCount.increment();
+                }
+            }
+            full = pendingKeys.size() + pendingPrefixes.size() >= properties.getMaxBatchSize();
+            if (!full && flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        try {
+            if (full) {
+                scheduler.execute(this::flush);
+            } else {
+                scheduler.schedule(this::flush, properties.getCoalesceWindow().toNanos(), TimeUnit.NANOSECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            log.warn("Redis invalidation bus closed, the invalidations are not broadcast - keys:{}", items);
+        }
+    }
+
+    private void flush() {
+        Set<String> keys;
+        Set<String> prefixes;
+        synchronized (lock) {
+            keys = pendingKeys;
+            prefixes = pendingPrefixes;
+            pendingKeys = new LinkedHashSet<>();
+            pendingPrefixes = new LinkedHashSet<>();
+            flushScheduled = false;
+        }
+        if (!prefixes.isEmpty()) {
+            int size = keys.size();
+            keys.removeIf(key -> startsWithAny(key, prefixes));
+            coalescedCount.add(size - keys.size());
+        }
+
+        // A large burst is split into several messages of at most maxBatchSize keys and prefixes
+        List<String> keyList = new ArrayList<>(keys);
+        List<String> prefixList = new ArrayList<>(prefixes);
+        int batchSize = properties.getMaxBatchSize();
+        int total = keyList.size() + prefixList.size();
+        for (int from = 0; from < total; from += batchSize) {
+            int to = Math.min(from + batchSize, total);
+            this.publish(
+                    keyList.subList(Math.min(from, keyList.size()), Math.min(to, keyList.size())),
+                    prefixList.subList(Math.max(from - keyList.size(), 0), Math.max(to - keyList.size(), 0))
+            );
+        }
+    }
+
+    private void publish(List<String> keys, List<String> prefixes) {
+        String message = JSON.toJSONString(JSONObject.of(FIELD_SENDER, senderId, FIELD_KEYS, keys, FIELD_PREFIXES, prefixes));
+        RedisFuture<Long> future = pubCommands.publish(properties.getChannel(), message);
+        future.whenComplete((receivers, throwable) -> {
+            if (throwable != null) {
+                publishFailedCount.increment();
+                log.warn("Redis invalidation message not published - keys:{} prefixes:{}", keys.size(), prefixes.size(), throwable);
+            } else {
+                publishedCount.increment();
+            }
+        });
+        lastPublish = future;
+    }
+
+    private void onMessage(String message) {
+        JSONObject json;
+        try {
+            json = JSON.parseObject(message);
+        } catch (Exception e) {
+            log.warn("Redis invalidation message ignored, not readable - message:{}", message);
+            return;
+        }
+        if (senderId.equals(json.getString(FIELD_SENDER))) {
+            return;
+        }
+        receivedCount.increment();
+        List<String> keys = json.getList(FIELD_KEYS, String.class);
+        List<String> prefixes = json.getList(FIELD_PREFIXES, String.class);
+        Set<String> keySet = keys == null ? Collections.emptySet() : new LinkedHashSet<>(keys);
+        Set<String> prefixSet = prefixes == null ? Collections.emptySet() : new LinkedHashSet<>(prefixes);
+        try {
+            // Not on the Lettuce event loop thread, the registered listeners may be slow
+            scheduler.execute(() -> {
+                this.apply(keySet, prefixSet);
+                appliedCount.add(keySet.size() + prefixSet.size());
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Redis invalidation bus closed, message ignored");
+        }
+    }
+
+    private void apply(Set<String> keys, Set<String> prefixes) {
+        if (!keys.isEmpty()) {
+            String[] keyArray = keys.toArray(new String[0]);
+            localNearCache.invalidate(keyArray);
+            localHotKeyDetector.invalidate(keyArray);
+        }
+        if (!prefixes.isEmpty()) {
+            String[] prefixArray = prefixes.toArray(new String[0]);
+            localNearCache.invalidatePrefix(prefixArray);
+            localHotKeyDetector.invalidatePrefix(prefixArray);
+        }
+        Set<String> unmodifiableKeys = Collections.unmodifiableSet(keys);
+        Set<String> unmodifiablePrefixes = Collections.unmodifiableSet(prefixes);
+        for (RedisInvalidationListener listener : listeners) {
+            try {
+                listener.onInvalidate(unmodifiableKeys, unmodifiablePrefixes);
+            } catch (Exception e) {
+                log.error("Redis invalidation listener failed - keys:{} prefixes:{}", keys.size(), prefixes.size(), e);
+            }
+        }
+    }
+
+    private static boolean startsWithAny(String key, Set<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
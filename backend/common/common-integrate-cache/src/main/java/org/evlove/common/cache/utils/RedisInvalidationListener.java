@@ -0,0 +1,20 @@
+package org.evlove.common.cache.utils;
+
+import java.util.Set;
+
+/**
+ * Evict the entries of an application local cache (a JetCache local cache, a local map...), see RedisInvalidationBus.register.
+ *
+ * @author massaton.github.io
+ */
+@FunctionalInterface
+public interface RedisInvalidationListener {
+
+    /**
+     * Called once per batch of invalidations, with all its keys and prefixes.
+     *
+     * @param keys the keys to evict.
+     * @param prefixes the prefixes of the keys to evict.
+     */
+    void onInvalidate(Set<String> keys, Set<String> prefixes);
+}
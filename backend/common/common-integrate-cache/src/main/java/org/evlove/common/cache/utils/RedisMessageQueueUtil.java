@@ -1,17 +1,32 @@
 package org.evlove.common.cache.utils;
 
 import io.lettuce.core.*;
+import io.lettuce.core.api.StatefulConnection;
 import io.lettuce.core.api.async.RedisStreamAsyncCommands;
 import io.lettuce.core.api.sync.RedisStreamCommands;
-import io.lettuce.core.models.stream.PendingMessages;
+import io.lettuce.core.models.stream.PendingMessage;
 import jakarta.annotation.Resource;
 import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.codec.RedisMessagePayloadCodec;
 import org.evlove.common.cache.pojo.RedisMessage;
+import org.evlove.common.cache.pojo.StreamGroupInfo;
+import org.evlove.common.cache.stream.RedisMessageHandler;
+import org.evlove.common.cache.stream.RedisPartitionedSubscription;
+import org.evlove.common.cache.stream.RedisStreamConsumerContainer;
+import org.evlove.common.cache.stream.RedisStreamPartitionCoordinator;
+import org.evlove.common.cache.stream.RedisStreamPartitioner;
+import org.evlove.common.cache.stream.RedisStreamProducer;
+import org.evlove.common.cache.stream.RedisStreamSubscription;
+import org.evlove.common.cache.stream.RedisTypedMessageHandler;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.evlove.common.cache.constant.CacheConstant.RESULT_OK;
 
@@ -41,6 +56,30 @@ public class RedisMessageQueueUtil {
     @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_ASYNC_COMMANDS)
     private RedisStreamAsyncCommands<String, String> redisStreamAsyncCommands;
 
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_SYNC_COMMANDS)
+    private RedisStreamCommands<byte[], byte[]> redisBinaryStreamCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisStreamAsyncCommands<byte[], byte[]> redisBinaryStreamAsyncCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_CONNECTION)
+    private StatefulConnection<byte[], byte[]> redisBinaryConnection;
+
+    @Resource
+    private RedisMessagePayloadCodec redisMessagePayloadCodec;
+
+    @Resource
+    private RedisStreamProducer redisStreamProducer;
+
+    @Resource
+    private RedisStreamConsumerContainer redisStreamConsumerContainer;
+
+    @Resource
+    private RedisStreamPartitioner redisStreamPartitioner;
+
+    @Resource
+    private RedisStreamPartitionCoordinator redisStreamPartitionCoordinator;
+
     public RedisStreamCommands<String, String> sync() {
         return this.redisStreamCommands;
     }
@@ -92,6 +131,70 @@ public class RedisMessageQueueUtil {
         return messageId;
     }
 
+    /**
+     * Asynchronous push a message to the specified queue.
+     * When the batching producer is enabled, the messages are buffered and sent as pipelined XADDs, see RedisStreamProducer.
+     * Notice: When the buffer is full, the calling thread waits for room, and the message is rejected after a timeout.
+     *
+     * @param queueName The name of the message queue (ie key)
+     * @param message The message content
+     * @return the future completed with the ID of the message
+     */
+    public CompletableFuture<String> pushMessageAsync(String queueName, Map<String, String> message) {
+        return redisStreamProducer.send(queueName, message);
+    }
+
+    /**
+     * Push a typed message to the specified queue.
+     * The payload is written as a single binary field, serialized by the configured codec and compressed above the threshold,
+     * see RedisMessagePayloadCodec. It is read by subscribe(queueName, groupName, concurrency, payloadClass, handler).
+     *
+     * @param queueName The name of the message queue (ie key)
+     * @param payload The message payload
+     * @return the ID of the message
+     */
+    public <T> String push(String queueName, T payload) {
+        return redisBinaryStreamCommands.xadd(queueName.getBytes(StandardCharsets.UTF_8), this.typedBody(queueName, payload));
+    }
+
+    /**
+     * Asynchronous push a typed message to the specified queue, see push.
+     * Notice: The typed messages are not batched by RedisStreamProducer, they are pipelined on the shared binary connection.
+     *
+     * @param queueName The name of the message queue (ie key)
+     * @param payload The message payload
+     * @return the future completed with the ID of the message
+     */
+    public <T> CompletableFuture<String> pushAsync(String queueName, T payload) {
+        return redisBinaryStreamAsyncCommands.xadd(queueName.getBytes(StandardCharsets.UTF_8), this.typedBody(queueName, payload))
+                .toCompletableFuture();
+    }
+
+    /**
+     * Push a message to a partitioned queue, see RedisStreamPartitioner.
+     * The messages with the same partition key go to the same partition (stream key), so they stay in order.
+     *
+     * @param queueName The name of the partitioned message queue
+     * @param partitionKey Such as the ID of an order
+     * @param message The message content
+     * @return the ID of the message in its partition
+     */
+    public String pushPartitionedMessage(String queueName, String partitionKey, Map<String, String> message) {
+        return redisStreamCommands.xadd(redisStreamPartitioner.route(queueName, partitionKey), message);
+    }
+
+    /**
+     * Asynchronous push a message to a partitioned queue, see pushPartitionedMessage and pushMessageAsync.
+     *
+     * @param queueName The name of the partitioned message queue
+     * @param partitionKey Such as the ID of an order
+     * @param message The message content
+     * @return the future completed with the ID of the message in its partition
+     */
+    public CompletableFuture<String> pushPartitionedMessageAsync(String queueName, String partitionKey, Map<String, String> message) {
+        return redisStreamProducer.send(redisStreamPartitioner.route(queueName, partitionKey), message);
+    }
+
     /**
      * Read messages in consumer group
      * @param queueName The name of the message queue (ie key)
@@ -120,28 +223,140 @@ public class RedisMessageQueueUtil {
         return transMessage(messages);
     }
 
+    /**
+     * Consume the queue in the consumer group with managed workers, instead of polling pullMessages in a loop.
+     * The consumer group is created if it does not exist (consuming from the tail of the queue).
+     * Each worker blocks on XREADGROUP with a dedicated connection, and the messages are acknowledged by batch after the handler returns,
+     * see RedisStreamConsumerContainer.
+     *
+     * @param queueName The name of the message queue (ie key)
+     * @param groupName Consumer group name
+     * @param concurrency The number of workers in this instance
+     * @param handler Handle the batches of messages
+     * @return the subscription, which can be stopped on its own, all subscriptions are stopped gracefully on shutdown
+     */
+    public RedisStreamSubscription subscribe(String queueName, String groupName, int concurrency, RedisMessageHandler handler) {
+        this.createConsumerGroup(queueName, groupName, false);
+        return redisStreamConsumerContainer.subscribe(queueName, groupName, concurrency, handler);
+    }
+
+    /**
+     * Consume the queue in the consumer group with managed workers, their number following the backlog of the group,
+     * see subscribe and RedisStreamAutoscaler.
+     *
+     * @param queueName The name of the message queue (ie key)
+     * @param groupName Consumer group name
+     * @param minConcurrency The number of workers in this instance at startup and when there is no backlog
+     * @param maxConcurrency The largest number of workers in this instance
+     * @param handler Handle the batches of messages
+     * @return the subscription, which can be stopped on its own, all subscriptions are stopped gracefully on shutdown
+     */
+    public RedisStreamSubscription subscribe(String queueName, String groupName, int minConcurrency, int maxConcurrency,
+                                             RedisMessageHandler handler) {
+        this.createConsumerGroup(queueName, groupName, false);
+        return redisStreamConsumerContainer.subscribe(queueName, groupName, minConcurrency, maxConcurrency, handler);
+    }
+
+    /**
+     * Consume the typed messages of the queue in the consumer group with managed workers, see push and subscribe.
+     * The consumer group is created if it does not exist (consuming from the tail of the queue).
+     *
+     * @param queueName The name of the message queue (ie key)
+     * @param groupName Consumer group name
+     * @param concurrency The number of workers in this instance
+     * @param payloadClass The type of the payloads
+     * @param handler Handle the batches of messages
+     * @return the subscription, which can be stopped on its own, all subscriptions are stopped gracefully on shutdown
+     */
+    public <T> RedisStreamSubscription subscribe(String queueName, String groupName, int concurrency,
+                                                 Class<T> payloadClass, RedisTypedMessageHandler<T> handler) {
+        this.createConsumerGroup(queueName, groupName, false);
+        return redisStreamConsumerContainer.subscribe(queueName, groupName, concurrency, payloadClass, handler);
+    }
+
+    /**
+     * Consume a partitioned queue in the consumer group, the partitions being shared among the instances which subscribed to the same group.
+     * The consumer group is created on every partition if it does not exist (consuming from the tail of the partitions).
+     * The partitions are reassigned when an instance joins or leaves, see RedisStreamPartitionCoordinator.
+     *
+     * @param queueName The name of the partitioned message queue
+     * @param groupName Consumer group name
+     * @param concurrency The number of workers per assigned partition, 1 keeps the order of each partition key
+     * @param handler Handle the batches of messages
+     * @return the subscription, which can be stopped on its own, all subscriptions are stopped gracefully on shutdown
+     */
+    public RedisPartitionedSubscription subscribePartitioned(String queueName, String groupName, int concurrency, RedisMessageHandler handler) {
+        for (String partitionKey : redisStreamPartitioner.partitionKeys(queueName)) {
+            this.createConsumerGroup(partitionKey, groupName, false);
+        }
+        return redisStreamPartitionCoordinator.subscribe(queueName, groupName, concurrency, handler);
+    }
+
     /**
      * Obtain messages that have been read by the consumer but have not yet been acknowledged.
+     * Only the IDs listed by XPENDING are fetched (one pipelined XRANGE per ID), the stream itself is not scanned.
+     * The deleted messages are skipped. To claim and handle the messages of dead consumers again, see RedisStreamRecovery.
+     *
+     * @param queueName The name of the message queue (ie key)
+     * @param groupName Consumer group name
+     * @param pullCount The maximum number of pending messages, the oldest first
      * @return
      */
     public List<RedisMessage> pullPendingMessages(String queueName, String groupName, Integer pullCount) {
-        Range<String> range = Range.unbounded();
-
-        // just get the meta information of the pending message, and does not differentiate between consumers
-        PendingMessages pendingMessages = redisStreamCommands.xpending(
+        List<PendingMessage> pendingMessages = redisStreamCommands.xpending(
                 queueName,
-                groupName
-        );
-
-        List<StreamMessage<String, String>> messages = redisStreamCommands.xrange(
-                queueName,
-                pendingMessages.getMessageIds(),
+                groupName,
+                Range.unbounded(),
                 Limit.from(pullCount)
         );
 
+        List<RedisFuture<List<StreamMessage<String, String>>>> futures = new ArrayList<>(pendingMessages.size());
+        for (PendingMessage pendingMessage : pendingMessages) {
+            futures.add(redisStreamAsyncCommands.xrange(queueName, Range.create(pendingMessage.getId(), pendingMessage.getId())));
+        }
+
+        Duration timeout = redisBinaryConnection.getTimeout();
+        if (!LettuceFutures.awaitAll(timeout, futures.toArray(new RedisFuture[0]))) {
+            throw new RedisCommandTimeoutException("Command timed out after " + timeout);
+        }
+        List<StreamMessage<String, String>> messages = new ArrayList<>(pendingMessages.size());
+        for (RedisFuture<List<StreamMessage<String, String>>> future : futures) {
+            messages.addAll(future.toCompletableFuture().join());
+        }
+
         return transMessage(messages);
     }
 
+    /**
+     * Obtain the state of the consumer groups of a queue (XINFO GROUPS), such as their pending messages and lag.
+     *
+     * @param queueName The name of the message queue (ie key)
+     * @return the consumer groups, empty if there is none
+     */
+    public List<StreamGroupInfo> getConsumerGroups(String queueName) {
+        List<Object> groups = redisStreamCommands.xinfoGroups(queueName);
+        List<StreamGroupInfo> results = new ArrayList<>(groups.size());
+        for (Object group : groups) {
+            // Each group is a flat list of field names and values
+            List<?> fields = (List<?>) group;
+            StreamGroupInfo info = new StreamGroupInfo();
+            for (int i = 0; i + 1 < fields.size(); i += 2) {
+                Object value = fields.get(i + 1);
+                switch (text(fields.get(i))) {
+                    case "name" -> info.setName(text(value));
+                    case "consumers" -> info.setConsumers((Long) value);
+                    case "pending" -> info.setPending((Long) value);
+                    case "last-delivered-id" -> info.setLastDeliveredId(text(value));
+                    case "lag" -> info.setLag(value instanceof Long lag ? lag : null);
+                    default -> {
+                    }
+                }
+            }
+            results.add(info);
+        }
+        return results;
+    }
+
     /**
      * Acknowledge one or more messages as processed.
      * @param queueName
@@ -177,4 +392,15 @@ public class RedisMessageQueueUtil {
 
         return results;
     }
+
+    private Map<byte[], byte[]> typedBody(String queueName, Object payload) {
+        return Collections.singletonMap(RedisMessagePayloadCodec.PAYLOAD_FIELD_BYTES, redisMessagePayloadCodec.encode(queueName, payload));
+    }
+
+    private static String text(Object value) {
+        if (value instanceof byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return String.valueOf(value);
+    }
 }
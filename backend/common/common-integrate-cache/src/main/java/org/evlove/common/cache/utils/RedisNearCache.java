@@ -0,0 +1,455 @@
+package org.evlove.common.cache.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.StringCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.RedisConnectionProvider;
+import org.evlove.common.cache.pojo.NearCacheStats;
+import org.evlove.common.cache.properties.RedisNearCacheProperties;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Near cache (server-assisted client-side caching) for the rarely changing keys read through the RedisXxxUtils.
+ * <p>
+ * The values of the opted-in keys (see RedisNearCacheProperties.prefixes) are kept in a bounded local cache,
+ * and a dedicated connection subscribes to the invalidation messages of Redis CLIENT TRACKING (RESP3, Redis 6.0+),
+ * so the local value is evicted as soon as any instance modifies the key.
+ * <p>
+ * Used by: RedisStringUtils.get(key), RedisHashUtils.getAll(key), RedisObjectUtils.get(key, clazz).
+ * The values are read as bytes, so both string values and the binary values of the Redis value codecs can be cached.
+ * The write methods of these utils also evict the local value immediately, to read your own writes.
+ * <p>
+ * In cluster deployment mode, Redis only tracks the keys read on the connection where tracking is enabled,
+ * so the values are read over the tracking connection of the master owning the slot of the key (not the connection chosen by Lettuce).
+ * The topology is refreshed periodically: when a slot moves, the local values are evicted and tracking is enabled on the new masters.
+ * <p>
+ * ref: <a href="https://redis.io/docs/manual/client-side-caching/">Redis client-side caching</a>
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisNearCache {
+    /**
+     * Non-existent keys are cached as well, Caffeine does not allow null values.
+     */
+    private static final Object NULL_VALUE = new Object();
+
+    /**
+     * The push message type of CLIENT TRACKING
+     */
+    private static final String PUSH_TYPE_INVALIDATE = "invalidate";
+
+    @Resource
+    private RedisNearCacheProperties properties;
+
+    @Resource
+    private RedisConnectionProvider connectionProvider;
+
+    private StatefulConnection<byte[], byte[]> connection;
+    private RedisClusterCommands<byte[], byte[]> commands;
+    private Cache<String, Object> localCache;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    /**
+     * Increased on every invalidation, to detect the invalidations that arrive while a value is being loaded.
+     */
+    private final AtomicLong invalidationSequence = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    /**
+     * The connections on which CLIENT TRACKING is enabled (one per master node in cluster mode).
+     */
+    private final Set<StatefulConnection<?, ?>> trackingConnections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * In cluster deployment mode, the tracking connection of each master node, by node id.
+     */
+    private final Map<String, StatefulRedisConnection<byte[], byte[]>> nodeConnections = new ConcurrentHashMap<>();
+
+    /**
+     * In cluster deployment mode, the slots of each master node when the topology was last checked.
+     */
+    private volatile Map<String, List<Integer>> slotOwners = Map.of();
+
+    /**
+     * The tracking state belongs to the connection, it is lost on reconnection.
+     * The listener is registered on the client, so the events of the other connections of the client are ignored.
+     */
+    private final RedisConnectionStateListener connectionStateListener = new RedisConnectionStateListener() {
+        @Override
+        public void onRedisConnected(RedisChannelHandler<?, ?> connection, SocketAddress socketAddress) {
+            if (running && isTrackingConnection(connection)) {
+                enableTracking().whenComplete((ignored, throwable) -> {
+                    if (throwable != null) {
+                        log.error("Failed to enable Redis client tracking after reconnection", throwable);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+            // Invalidation messages may be missed while disconnected
+            if (running && isTrackingConnection(connection)) {
+                localCache.invalidateAll();
+            }
+        }
+    };
+
+    @PostConstruct
+    public void init() {
+        if (!properties.getEnabled()) {
+            return;
+        }
+        localCache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .build();
+
+        if (connectionProvider.isCluster()) {
+            StatefulRedisClusterConnection<byte[], byte[]> clusterConnection = connectionProvider.connectCluster(ByteArrayCodec.INSTANCE);
+            clusterConnection.addListener((RedisClusterNode node, PushMessage message) -> onPushMessage(message));
+            connection = clusterConnection;
+            commands = clusterConnection.sync();
+            slotOwners = this.slotOwners(clusterConnection);
+        } else {
+            StatefulRedisConnection<byte[], byte[]> redisConnection = connectionProvider.connect(ByteArrayCodec.INSTANCE);
+            redisConnection.addListener(this::onPushMessage);
+            connection = redisConnection;
+            commands = redisConnection.sync();
+        }
+
+        this.enableTracking().join();
+        connectionProvider.getClient().addListener(connectionStateListener);
+        running = true;
+        if (connectionProvider.isCluster()) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "redis-near-cache");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = properties.getTopologyCheckInterval().toMillis();
+            scheduler.scheduleWithFixedDelay(this::checkTopology, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        log.info("Redis near cache enabled - trackingMode:{} prefixes:{}", properties.getTrackingMode(), properties.getPrefixes());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        connectionProvider.getClient().removeListener(connectionStateListener);
+        connection.close();
+        log.info("Redis near cache stopped - {}", this.getStats());
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * Whether the key is opted in to the near cache.
+     */
+    public boolean isCached(String key) {
+        if (!running) {
+            return false;
+        }
+        for (String prefix : properties.getPrefixes()) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the value of a string key, from local memory if possible.
+     *
+     * @param key the key.
+     * @return reply the value of key, or null when key does not exist.
+     */
+    public String getString(String key) {
+        byte[] value = this.getBytes(key);
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the raw value of a string key, from local memory if possible.
+     *
+     * @param key the key.
+     * @return reply the value of key, or null when key does not exist.
+     */
+    public byte[] getBytes(String key) {
+        return (byte[]) this.get(key, () -> this.read(key, nodeCommands -> nodeCommands.get(key.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Get all the fields and values of a hash key, from local memory if possible.
+     *
+     * @param key the key.
+     * @return reply a copy of the cached map, empty when key does not exist.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, String> getHash(String key) {
+        Map<String, String> map = (Map<String, String>) this.get(key, () -> {
+            Map<byte[], byte[]> rawMap = this.read(key, nodeCommands -> nodeCommands.hgetall(key.getBytes(StandardCharsets.UTF_8)));
+            Map<String, String> stringMap = new HashMap<>(rawMap.size());
+            rawMap.forEach((field, value) -> stringMap.put(
+                    new String(field, StandardCharsets.UTF_8),
+                    new String(value, StandardCharsets.UTF_8)
+            ));
+            return stringMap;
+        });
+        return new HashMap<>(map);
+    }
+
+    /**
+     * Evict the local values of the given keys, it is called by the write methods of the RedisXxxUtils.
+     */
+    public void invalidate(String... keys) {
+        if (!running) {
+            return;
+        }
+        invalidationSequence.incrementAndGet();
+        for (String key : keys) {
+            localCache.invalidate(key);
+        }
+        invalidationCount.add(keys.length);
+    }
+
+    /**
+     * Evict the local values of the keys starting with one of the given prefixes.
+     */
+    public void invalidatePrefix(String... prefixes) {
+        if (!running) {
+            return;
+        }
+        invalidationSequence.incrementAndGet();
+        for (String key : localCache.asMap().keySet()) {
+            for (String prefix : prefixes) {
+                if (key.startsWith(prefix)) {
+                    localCache.invalidate(key);
+                    invalidationCount.increment();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the statistics of the near cache since startup.
+     */
+    public NearCacheStats getStats() {
+        long hits = hitCount.sum();
+        long misses = missCount.sum();
+        return new NearCacheStats(
+                hits,
+                misses,
+                invalidationCount.sum(),
+                localCache == null ? 0L : localCache.estimatedSize(),
+                hits + misses == 0 ? 0D : (double) hits / (hits + misses)
+        );
+    }
+
+    private Object get(String key, Supplier<Object> loader) {
+        Object value = localCache.getIfPresent(key);
+        if (value != null) {
+            hitCount.increment();
+            return value == NULL_VALUE ? null : value;
+        }
+        missCount.increment();
+
+        // The value must be read through the tracking connection, so that Redis tracks the key in DEFAULT mode
+        long sequence = invalidationSequence.get();
+        Object loaded = loader.get();
+        localCache.put(key, loaded == null ? NULL_VALUE : loaded);
+        if (invalidationSequence.get() != sequence) {
+            // An invalidation arrived while loading, the loaded value may already be stale
+            localCache.invalidate(key);
+        }
+        return loaded;
+    }
+
+    /**
+     * Read a key over the tracking connection, in cluster deployment mode the one of the master owning the slot of the key.
+     * When the slot has moved meanwhile (MOVED), the topology is refreshed and the key is read once again from the new owner.
+     */
+    private <T> T read(String key, Function<RedisClusterCommands<byte[], byte[]>, T> reader) {
+        if (!(connection instanceof StatefulRedisClusterConnection<byte[], byte[]> clusterConnection)) {
+            return reader.apply(commands);
+        }
+        try {
+            return reader.apply(this.nodeConnection(clusterConnection, key).sync());
+        } catch (RedisCommandExecutionException e) {
+            if (e.getMessage() == null || !e.getMessage().startsWith("MOVED")) {
+                throw e;
+            }
+            this.checkTopology();
+            return reader.apply(this.nodeConnection(clusterConnection, key).sync());
+        }
+    }
+
+    private StatefulRedisConnection<byte[], byte[]> nodeConnection(StatefulRedisClusterConnection<byte[], byte[]> clusterConnection, String key) {
+        RedisClusterNode node = clusterConnection.getPartitions().getPartitionBySlot(SlotHash.getSlot(key));
+        if (node == null) {
+            throw new IllegalStateException("No node owns the slot of key: " + key);
+        }
+        StatefulRedisConnection<byte[], byte[]> nodeConnection = nodeConnections.get(node.getNodeId());
+        if (nodeConnection != null) {
+            return nodeConnection;
+        }
+        synchronized (nodeConnections) {
+            nodeConnection = nodeConnections.get(node.getNodeId());
+            if (nodeConnection == null) {
+                // A master added after startup, tracking must be enabled before the first read
+                nodeConnection = clusterConnection.getConnection(node.getNodeId());
+                this.enableTracking(nodeConnection, this.trackingArgs()).toCompletableFuture().join();
+                nodeConnections.put(node.getNodeId(), nodeConnection);
+            }
+            return nodeConnection;
+        }
+    }
+
+    /**
+     * Refresh the cluster topology. When a slot has moved, the invalidations of its keys now come from another master,
+     * so the local values are evicted and tracking is enabled on the masters again.
+     */
+    private synchronized void checkTopology() {
+        if (!running) {
+            return;
+        }
+        try {
+            ((RedisClusterClient) connectionProvider.getClient()).refreshPartitions();
+            StatefulRedisClusterConnection<byte[], byte[]> clusterConnection = (StatefulRedisClusterConnection<byte[], byte[]>) connection;
+            Map<String, List<Integer>> owners = this.slotOwners(clusterConnection);
+            if (owners.equals(slotOwners)) {
+                return;
+            }
+            slotOwners = owners;
+            nodeConnections.keySet().retainAll(owners.keySet());
+            this.enableTracking().join();
+            invalidationSequence.incrementAndGet();
+            localCache.invalidateAll();
+            log.info("Redis near cache evicted after a cluster topology change - masters:{}", owners.keySet());
+        } catch (Exception e) {
+            log.warn("Redis near cache topology check failed, retried on the next check", e);
+        }
+    }
+
+    private Map<String, List<Integer>> slotOwners(StatefulRedisClusterConnection<byte[], byte[]> clusterConnection) {
+        Map<String, List<Integer>> owners = new HashMap<>();
+        for (RedisClusterNode node : clusterConnection.getPartitions()) {
+            if (node.getRole().isUpstream()) {
+                owners.put(node.getNodeId(), node.getSlots());
+            }
+        }
+        return owners;
+    }
+
+    private void onPushMessage(PushMessage message) {
+        if (!PUSH_TYPE_INVALIDATE.equals(message.getType())) {
+            return;
+        }
+        List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+        if (content.size() > 1 && content.get(1) instanceof List<?> keys) {
+            String[] keyArray = new String[keys.size()];
+            for (int i = 0; i < keys.size(); i++) {
+                keyArray[i] = (String) keys.get(i);
+            }
+            this.invalidate(keyArray);
+        } else {
+            // A null key list means that all keys are invalidated (FLUSHALL / FLUSHDB)
+            invalidationSequence.incrementAndGet();
+            localCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Enable CLIENT TRACKING on the dedicated connection (on every master node in cluster mode).
+     * Tracking is switched off first, so that enabling it again on a connection that is still tracking does not fail.
+     */
+    private CompletableFuture<Void> enableTracking() {
+        TrackingArgs trackingArgs = this.trackingArgs();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        trackingConnections.add(connection);
+        if (connection instanceof StatefulRedisClusterConnection<byte[], byte[]> clusterConnection) {
+            for (RedisClusterNode node : clusterConnection.getPartitions()) {
+                if (node.getRole().isUpstream()) {
+                    // The same connection as the reads of the keys of the node, see nodeConnection
+                    futures.add(clusterConnection.getConnectionAsync(node.getNodeId())
+                            .thenCompose(nodeConnection -> {
+                                nodeConnections.put(node.getNodeId(), nodeConnection);
+                                return enableTracking(nodeConnection, trackingArgs);
+                            }));
+                }
+            }
+        } else {
+            futures.add(enableTracking((StatefulRedisConnection<byte[], byte[]>) connection, trackingArgs));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    private TrackingArgs trackingArgs() {
+        TrackingArgs trackingArgs = TrackingArgs.Builder.enabled();
+        if (properties.getTrackingMode() == RedisNearCacheProperties.TrackingMode.BCAST) {
+            trackingArgs.bcast().prefixes(properties.getPrefixes().toArray(new String[0]));
+        }
+        return trackingArgs;
+    }
+
+    private CompletableFuture<String> enableTracking(StatefulRedisConnection<byte[], byte[]> nodeConnection, TrackingArgs trackingArgs) {
+        trackingConnections.add(nodeConnection);
+        return nodeConnection.async()
+                .clientTracking(TrackingArgs.Builder.enabled(false))
+                .thenCompose(ignored -> nodeConnection.async().clientTracking(trackingArgs))
+                .toCompletableFuture();
+    }
+
+    private boolean isTrackingConnection(RedisChannelHandler<?, ?> handler) {
+        return handler instanceof StatefulConnection<?, ?> statefulConnection && trackingConnections.contains(statefulConnection);
+    }
+}
@@ -1,26 +1,76 @@
 package org.evlove.common.cache.utils;
 
-import com.alibaba.fastjson2.JSON;
+import io.lettuce.core.RedisCommandInterruptedException;
 import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.async.RedisKeyAsyncCommands;
 import io.lettuce.core.api.async.RedisStringAsyncCommands;
+import io.lettuce.core.api.sync.RedisScriptingCommands;
 import io.lettuce.core.api.sync.RedisStringCommands;
 import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.codec.RedisValueCodecs;
+import org.evlove.common.cache.codec.RedisValueCompressor;
+import org.evlove.common.cache.pojo.LoadStats;
+import org.evlove.common.cache.properties.RedisLoadProperties;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 
 import jakarta.annotation.Resource;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Provide a convenient tool class for accessing POJO object types in Redis.
  * Essentially, it operates on String type.
+ * The objects are serialized by the configured Redis value codec (JSON by default, see RedisValueCodecs),
+ * and the values written by any codec (including the legacy JSON values) can be read back.
+ * Large values are compressed transparently when compression is enabled, see RedisValueCompressor.
+ *
+ * The values written by getOrLoad carry a small header: [MAGIC][recompute time in milliseconds, 4 bytes][value],
+ * an empty value means a cached miss of the loader. They can also be read by get and getAndDelete.
  *
  * @author massaton.github.io
  */
 @Component
 public class RedisObjectUtils extends AbstractRedisUtils {
+    /**
+     * The first byte of the values written by getOrLoad, it differs from the codec (0xFE) and compression (0xFD) headers.
+     */
+    private static final byte LOAD_MAGIC = (byte) 0xFC;
+
+    private static final int LOAD_HEADER_LENGTH = 5;
+
+    /**
+     * Delete the lease only if it is still held by the caller, it may have expired and been taken by another instance.
+     */
+    private static final String RELEASE_LEASE_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
+    @Resource
+    private RedisNearCache redisNearCache;
+
+    @Resource
+    private RedisHotKeyDetector redisHotKeyDetector;
+
+    @Resource
+    private RedisValueCodecs redisValueCodecs;
+
+    @Resource
+    private RedisValueCompressor redisValueCompressor;
+
+    @Resource
+    private RedisLoadProperties loadProperties;
 
     @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_SYNC_COMMANDS)
     private RedisStringCommands<String, String> redisStringCommands;
@@ -28,6 +78,30 @@ public class RedisObjectUtils extends AbstractRedisUtils {
     @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_ASYNC_COMMANDS)
     private RedisStringAsyncCommands<String, String> redisStringAsyncCommands;
 
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_SYNC_COMMANDS)
+    private RedisStringCommands<byte[], byte[]> redisBinaryStringCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisStringAsyncCommands<byte[], byte[]> redisBinaryStringAsyncCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisKeyAsyncCommands<byte[], byte[]> redisBinaryKeyAsyncCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_SYNC_COMMANDS)
+    private RedisScriptingCommands<byte[], byte[]> redisBinaryScriptingCommands;
+
+    /**
+     * The loads in progress in this instance (single-flight), the other callers of the same key join them.
+     */
+    private final Map<String, CompletableFuture<Object>> loadsInFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadMillis = new LongAdder();
+    private final LongAdder earlyRefreshCount = new LongAdder();
+    private final LongAdder singleFlightCount = new LongAdder();
+    private final LongAdder leaseWaitCount = new LongAdder();
+    private final LongAdder negativeHitCount = new LongAdder();
+
     public RedisStringCommands<String, String> sync() {
         return this.redisStringCommands;
     }
@@ -38,20 +112,22 @@ public class RedisObjectUtils extends AbstractRedisUtils {
 
 
     public <T> Boolean set(String key, T obj) {
-        String result = redisStringCommands.set(
-                key,
-                JSON.toJSONString(obj)
+        String result = redisBinaryStringCommands.set(
+                key.getBytes(StandardCharsets.UTF_8),
+                redisValueCompressor.compress(key, redisValueCodecs.encode(obj))
         );
+        evictLocal(key);
         return itsOk(result);
     }
     public <T> void setAsync(String key, T obj, BiConsumer<Boolean, Throwable> action) {
-        RedisFuture<String> future = redisStringAsyncCommands.set(
-                key,
-                JSON.toJSONString(obj)
+        RedisFuture<String> future = redisBinaryStringAsyncCommands.set(
+                key.getBytes(StandardCharsets.UTF_8),
+                redisValueCompressor.compress(key, redisValueCodecs.encode(obj))
         );
         CompletionStage<Boolean> completionStage = future.thenApply(new Function<String, Boolean>() {
             @Override
             public Boolean apply(String result) {
+                evictLocal(key);
                 return itsOk(result);
             }
         });
@@ -63,18 +139,257 @@ public class RedisObjectUtils extends AbstractRedisUtils {
         this.setAsync(key, obj, null);
     }
 
+    /**
+     * Get the POJO object of a key.
+     * When the key is opted in to the near cache, the serialized value is read from local memory if possible, see RedisNearCache.
+     * When the key is hot, the serialized value is read from a short-lived local replica, see RedisHotKeyDetector.
+     * Only the serialized value is cached, so every caller still gets its own object.
+     */
     public <T> T get(String key, Class<T> clazz) {
-        String jsonValue = redisStringCommands.get(key);
-        if (StringUtils.hasText(jsonValue)) {
-            return JSON.parseObject(jsonValue, clazz);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] value;
+        if (redisNearCache.isCached(key)) {
+            value = redisNearCache.getBytes(key);
+        } else if (redisHotKeyDetector.recordRead(key)) {
+            value = (byte[]) redisHotKeyDetector.getReplica(key, () -> redisBinaryStringCommands.get(keyBytes));
+        } else {
+            value = redisBinaryStringCommands.get(keyBytes);
         }
-        return null;
+        return this.decode(key, value, clazz);
     }
     public <T> T getAndDelete(String key, Class<T> clazz) {
-        String jsonValue = redisStringCommands.getdel(key);
-        if (StringUtils.hasText(jsonValue)) {
-            return JSON.parseObject(jsonValue, clazz);
+        byte[] value = redisBinaryStringCommands.getdel(key.getBytes(StandardCharsets.UTF_8));
+        evictLocal(key);
+        return this.decode(key, value, clazz);
+    }
+
+    /**
+     * Get the POJO object of a key, and build it with the loader when it does not exist (read-through),
+     * safe against cache stampedes when a hot key expires:
+     * - In this instance, concurrent callers of the same key share a single load (single-flight).
+     * - Across instances, only the holder of a short Redis lease runs the loader, the others wait for its value.
+     * - Before expiry, a caller is chosen with increasing probability to refresh the value early (XFetch),
+     *   the other callers keep getting the current value meanwhile.
+     * - A miss of the loader (null) is cached for a short time (negative caching).
+     * ref: <a href="https://cseweb.ucsd.edu/~avattani/papers/cache_stampede.pdf">Optimal Probabilistic Cache Stampede Prevention</a>
+     *
+     * @param key the key.
+     * @param clazz the type of the value.
+     * @param seconds the seconds of expire time.
+     * @param loader build the value, for example from the database, null means the value does not exist.
+     * @return the cached or loaded value, null when the loader returned null.
+     */
+    public <T> T getOrLoad(String key, Class<T> clazz, long seconds, Supplier<T> loader) {
+        CachedEntry entry = this.getEntry(key);
+        if (entry != null) {
+            if (!this.shouldRefreshEarly(entry)) {
+                return this.decode(key, entry.value, clazz);
+            }
+            return this.refreshEarly(key, clazz, seconds, loader, entry);
+        }
+
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> existing = loadsInFlight.putIfAbsent(key, load);
+        if (existing != null) {
+            singleFlightCount.increment();
+            // The leader may wait up to the lease time for another instance, then run the loader itself:
+            // its own deadlines govern, a shorter wait here would fail while the load still succeeds
+            return clazz.cast(await(existing, null));
+        }
+        try {
+            T value = this.loadWithLease(key, clazz, seconds, loader);
+            load.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadsInFlight.remove(key, load);
+        }
+    }
+
+    /**
+     * Get the statistics of getOrLoad since startup.
+     */
+    public LoadStats getLoadStats() {
+        long loads = loadCount.sum();
+        return new LoadStats(
+                loads,
+                loads == 0 ? 0D : (double) loadMillis.sum() / loads,
+                earlyRefreshCount.sum(),
+                singleFlightCount.sum(),
+                leaseWaitCount.sum(),
+                negativeHitCount.sum()
+        );
+    }
+
+
+    // region Private Method Zone
+    /**
+     * Strip the getOrLoad header, decompress and deserialize the value.
+     */
+    private <T> T decode(String key, byte[] value, Class<T> clazz) {
+        if (value != null && value.length >= LOAD_HEADER_LENGTH && value[0] == LOAD_MAGIC) {
+            if (value.length == LOAD_HEADER_LENGTH) {
+                negativeHitCount.increment();
+                return null;
+            }
+            value = Arrays.copyOfRange(value, LOAD_HEADER_LENGTH, value.length);
+        }
+        return redisValueCodecs.decode(redisValueCompressor.decompress(key, value), clazz);
+    }
+
+    /**
+     * Read the value and its remaining time to live, the two commands are pipelined.
+     */
+    private CachedEntry getEntry(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        RedisFuture<byte[]> valueFuture = redisBinaryStringAsyncCommands.get(keyBytes);
+        RedisFuture<Long> ttlFuture = redisBinaryKeyAsyncCommands.pttl(keyBytes);
+
+        byte[] value = await(valueFuture, commandTimeout());
+        Long ttlMillis = await(ttlFuture, commandTimeout());
+        if (value == null) {
+            return null;
+        }
+        int recomputeMillis = value.length >= LOAD_HEADER_LENGTH && value[0] == LOAD_MAGIC
+                ? ByteBuffer.wrap(value, 1, 4).getInt()
+                : 0;
+        return new CachedEntry(value, recomputeMillis, ttlMillis == null ? -1 : ttlMillis);
+    }
+
+    /**
+     * XFetch: refresh when -recomputeTime * beta * ln(random) >= remaining time to live,
+     * the closer to expiry and the slower the loader, the more likely.
+     */
+    private boolean shouldRefreshEarly(CachedEntry entry) {
+        if (entry.ttlMillis <= 0 || entry.recomputeMillis <= 0 || loadProperties.getBeta() <= 0) {
+            return false;
+        }
+        double random = 1D - ThreadLocalRandom.current().nextDouble();
+        return -entry.recomputeMillis * loadProperties.getBeta() * Math.log(random) >= entry.ttlMillis;
+    }
+
+    /**
+     * Only one caller refreshes the value, all the others (in this or another instance) keep getting the current value.
+     */
+    private <T> T refreshEarly(String key, Class<T> clazz, long seconds, Supplier<T> loader, CachedEntry entry) {
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        if (loadsInFlight.putIfAbsent(key, load) != null) {
+            return this.decode(key, entry.value, clazz);
+        }
+        try {
+            String token = this.tryLease(key);
+            if (token == null) {
+                T current = this.decode(key, entry.value, clazz);
+                load.complete(current);
+                return current;
+            }
+            try {
+                earlyRefreshCount.increment();
+                T value = this.loadAndStore(key, seconds, loader);
+                load.complete(value);
+                return value;
+            } finally {
+                this.releaseLease(key, token);
+            }
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadsInFlight.remove(key, load);
+        }
+    }
+
+    /**
+     * Load the missing value under the Redis lease, or wait for the instance holding it.
+     */
+    private <T> T loadWithLease(String key, Class<T> clazz, long seconds, Supplier<T> loader) {
+        String token = this.tryLease(key);
+        if (token == null) {
+            leaseWaitCount.increment();
+            long deadline = System.nanoTime() + loadProperties.getLeaseTime().toNanos();
+            while (System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(loadProperties.getPollInterval().toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RedisCommandInterruptedException(e);
+                }
+                CachedEntry entry = this.getEntry(key);
+                if (entry != null) {
+                    return this.decode(key, entry.value, clazz);
+                }
+            }
+            // The lease has expired without a value, the holder probably failed, load it here
+            token = this.tryLease(key);
+        }
+
+        try {
+            return this.loadAndStore(key, seconds, loader);
+        } finally {
+            if (token != null) {
+                this.releaseLease(key, token);
+            }
+        }
+    }
+
+    private <T> T loadAndStore(String key, long seconds, Supplier<T> loader) {
+        long start = System.nanoTime();
+        T value = loader.get();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        loadCount.increment();
+        loadMillis.add(elapsedMillis);
+
+        long ttlMillis = value == null ? loadProperties.getNegativeTtl().toMillis() : seconds * 1000;
+        if (ttlMillis <= 0) {
+            return value;
+        }
+        byte[] payload = value == null
+                ? new byte[0]
+                : redisValueCompressor.compress(key, redisValueCodecs.encode(value));
+        byte[] bytes = new byte[LOAD_HEADER_LENGTH + payload.length];
+        bytes[0] = LOAD_MAGIC;
+        ByteBuffer.wrap(bytes, 1, 4).putInt((int) Math.min(elapsedMillis, Integer.MAX_VALUE));
+        System.arraycopy(payload, 0, bytes, LOAD_HEADER_LENGTH, payload.length);
+
+        redisBinaryStringCommands.psetex(key.getBytes(StandardCharsets.UTF_8), ttlMillis, bytes);
+        evictLocal(key);
+        return value;
+    }
+
+    /**
+     * @return the token of the lease, or null when it is held by another caller.
+     */
+    private String tryLease(String key) {
+        String token = UUID.randomUUID().toString();
+        String result = redisBinaryStringCommands.set(
+                (key + loadProperties.getLeaseSuffix()).getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8),
+                SetArgs.Builder.nx().px(loadProperties.getLeaseTime().toMillis())
+        );
+        return itsOk(result) ? token : null;
+    }
+
+    private void releaseLease(String key, String token) {
+        redisBinaryScriptingCommands.eval(
+                RELEASE_LEASE_SCRIPT,
+                ScriptOutputType.INTEGER,
+                new byte[][]{(key + loadProperties.getLeaseSuffix()).getBytes(StandardCharsets.UTF_8)},
+                token.getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+    private static class CachedEntry {
+        private final byte[] value;
+        private final int recomputeMillis;
+        private final long ttlMillis;
+
+        private CachedEntry(byte[] value, int recomputeMillis, long ttlMillis) {
+            this.value = value;
+            this.recomputeMillis = recomputeMillis;
+            this.ttlMillis = ttlMillis;
         }
-        return null;
     }
+    // endregion
 }
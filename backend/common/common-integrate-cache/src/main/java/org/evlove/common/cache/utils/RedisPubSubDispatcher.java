@@ -0,0 +1,240 @@
+package org.evlove.common.cache.utils;
+
+import io.lettuce.core.pubsub.RedisPubSubListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.pojo.PubSubDispatchStats;
+import org.evlove.common.cache.properties.RedisPubSubProperties;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hand the received publish/subscribe messages to an executor, instead of calling the listener on the Lettuce event loop thread
+ * (opt-in, see RedisPubSubProperties), so that a slow listener does not stall every subscription of the connection.
+ * <p>
+ * The messages of each channel wait in a bounded queue and are handled one at a time, in the order they were received,
+ * while the channels are handled in parallel. When the queue of a channel is full, the new messages are dropped and counted.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisPubSubDispatcher {
+
+    @Resource
+    private RedisPubSubProperties properties;
+
+    @Resource
+    private BeanFactory beanFactory;
+
+    private Executor executor;
+
+    /**
+     * The executor created by this dispatcher, shut down with it, null when an executor bean is used.
+     */
+    private ExecutorService ownedExecutor;
+
+    private final Map<String, ChannelQueue> channelQueues = new ConcurrentHashMap<>();
+
+    private final LongAdder dispatchedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private volatile long lastLagNanos;
+
+    @PostConstruct
+    public void init() {
+        if (!properties.getDispatchEnabled()) {
+            return;
+        }
+        if (properties.getExecutorBean() != null) {
+            executor = beanFactory.getBean(properties.getExecutorBean(), Executor.class);
+        } else {
+            AtomicInteger sequence = new AtomicInteger();
+            ownedExecutor = Executors.newFixedThreadPool(properties.getDispatchThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "redis-pubsub-dispatch-" + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor = ownedExecutor;
+        }
+        log.info("Redis pub/sub dispatch enabled - executor:{} queueCapacity:{}",
+                properties.getExecutorBean() != null ? properties.getExecutorBean() : properties.getDispatchThreads() + " threads",
+                properties.getQueueCapacity());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (ownedExecutor == null) {
+            return;
+        }
+        ownedExecutor.shutdown();
+        try {
+            ownedExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    /**
+     * Wrap the listener so that its messages are dispatched to the executor, or return it as is when dispatch is disabled.
+     * The subscription notifications (subscribed, unsubscribed...) are still delivered on the event loop thread.
+     */
+    public RedisPubSubListener<String, String> wrap(RedisPubSubListener<String, String> listener) {
+        if (!this.isEnabled()) {
+            return listener;
+        }
+        return new RedisPubSubListener<>() {
+            @Override
+            public void message(String channel, String message) {
+                dispatch(channel, () -> listener.message(channel, message));
+            }
+
+            @Override
+            public void message(String pattern, String channel, String message) {
+                dispatch(channel, () -> listener.message(pattern, channel, message));
+            }
+
+            @Override
+            public void subscribed(String channel, long count) {
+                listener.subscribed(channel, count);
+            }
+
+            @Override
+            public void psubscribed(String pattern, long count) {
+                listener.psubscribed(pattern, count);
+            }
+
+            @Override
+            public void unsubscribed(String channel, long count) {
+                listener.unsubscribed(channel, count);
+            }
+
+            @Override
+            public void punsubscribed(String pattern, long count) {
+                listener.punsubscribed(pattern, count);
+            }
+        };
+    }
+
+    public PubSubDispatchStats getStats() {
+        long queued = 0;
+        for (ChannelQueue channelQueue : channelQueues.values()) {
+            queued += channelQueue.size.get();
+        }
+        return new PubSubDispatchStats(
+                dispatchedCount.sum(),
+                droppedCount.sum(),
+                queued,
+                failedCount.sum(),
+                TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get()),
+                TimeUnit.NANOSECONDS.toMillis(lastLagNanos)
+        );
+    }
+
+    /**
+     * The task is queued inside compute, so that it cannot be added to a queue which is being removed, see drain.
+     */
+    private void dispatch(String channel, Runnable task) {
+        ChannelQueue channelQueue = channelQueues.compute(channel, (key, queue) -> {
+            ChannelQueue target = queue == null ? new ChannelQueue(key) : queue;
+            if (target.size.incrementAndGet() > properties.getQueueCapacity()) {
+                target.size.decrementAndGet();
+                droppedCount.increment();
+            } else {
+                target.tasks.add(new Task(task, System.nanoTime()));
+            }
+            return target;
+        });
+        this.schedule(channelQueue);
+    }
+
+    /**
+     * At most one drain of a channel runs at a time, which keeps the order of its messages.
+     */
+    private void schedule(ChannelQueue channelQueue) {
+        if (!channelQueue.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> this.drain(channelQueue));
+        } catch (RejectedExecutionException e) {
+            channelQueue.scheduled.set(false);
+            log.warn("Redis pub/sub dispatch rejected, the messages stay queued - channel:{}", channelQueue.channel);
+        }
+    }
+
+    private void drain(ChannelQueue channelQueue) {
+        try {
+            for (int i = 0; i < properties.getDrainBatch(); i++) {
+                Task task = channelQueue.tasks.poll();
+                if (task == null) {
+                    break;
+                }
+                channelQueue.size.decrementAndGet();
+                long lag = System.nanoTime() - task.enqueueNanos;
+                lastLagNanos = lag;
+                maxLagNanos.accumulateAndGet(lag, Math::max);
+                try {
+                    task.runnable.run();
+                    dispatchedCount.increment();
+                } catch (Exception e) {
+                    failedCount.increment();
+                    log.error("Redis pub/sub listener failed - channel:{}", channelQueue.channel, e);
+                }
+            }
+        } finally {
+            channelQueue.scheduled.set(false);
+        }
+        // Messages queued meanwhile, or left after the batch
+        if (!channelQueue.tasks.isEmpty()) {
+            this.schedule(channelQueue);
+            return;
+        }
+        // Forget the drained queue, so that the queues of the channels matched once by a pattern do not pile up.
+        // A message dispatched meanwhile is either in the queue (which is then kept), or creates a new queue.
+        channelQueues.computeIfPresent(channelQueue.channel, (key, queue) ->
+                queue == channelQueue && queue.tasks.isEmpty() && !queue.scheduled.get() ? null : queue);
+    }
+
+    private static class Task {
+        private final Runnable runnable;
+        private final long enqueueNanos;
+
+        private Task(Runnable runnable, long enqueueNanos) {
+            this.runnable = runnable;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+
+    private static class ChannelQueue {
+        private final String channel;
+        private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private ChannelQueue(String channel) {
+            this.channel = channel;
+        }
+    }
+}
@@ -1,31 +1,55 @@
 package org.evlove.common.cache.utils;
 
-import io.lettuce.core.AbstractRedisClient;
-import io.lettuce.core.RedisClient;
-import io.lettuce.core.cluster.RedisClusterClient;
-import io.lettuce.core.cluster.pubsub.StatefulRedisClusterPubSubConnection;
+import io.lettuce.core.codec.StringCodec;
 import io.lettuce.core.pubsub.RedisPubSubListener;
 import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.lettuce.core.pubsub.api.async.RedisPubSubAsyncCommands;
 import io.lettuce.core.pubsub.api.sync.RedisPubSubCommands;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
-import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.RedisConnectionProvider;
+import org.evlove.common.cache.pojo.PubSubDispatchStats;
+import org.evlove.common.cache.properties.RedisPubSubProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * It is recommended to use Redis Stream to meet the message queue scenario.
  * <p>
- * Notice: Sentinel deployment mode is not supported.
+ * The subscriber and the publisher each use a dedicated connection opened by RedisConnectionProvider,
+ * in stand-alone, sentinel and cluster deployment mode.
+ * The received messages are delivered to the listener on the Lettuce event loop thread,
+ * unless dispatch is enabled (see RedisPubSubDispatcher), then they are handled on an executor, in order per channel.
+ * In sharded mode (see RedisShardedPubSub), the channels are published and subscribed to with SPUBLISH/SSUBSCRIBE,
+ * the pattern subscriptions still use classic pub/sub.
  *
  * @author massaton.github.io
  */
 @Component
 public class RedisPubSubUtil {
 
-    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_CLIENT)
-    private AbstractRedisClient abstractRedisClient;
+    @Resource
+    private RedisConnectionProvider connectionProvider;
+
+    @Resource
+    private RedisPubSubDispatcher redisPubSubDispatcher;
+
+    @Resource
+    private RedisShardedPubSub redisShardedPubSub;
+
+    @Resource
+    private RedisPubSubProperties properties;
+
+    private StatefulRedisPubSubConnection<String, String> subConnection;
+    private StatefulRedisPubSubConnection<String, String> pubConnection;
 
     private RedisPubSubCommands<String, String> subCommands;
     private RedisPubSubCommands<String, String> pubCommands;
+    private RedisPubSubAsyncCommands<String, String> pubAsyncCommands;
 
     public RedisPubSubCommands<String, String> getSubscriber() {
         return subCommands;
@@ -34,7 +58,7 @@ public class RedisPubSubUtil {
         return pubCommands;
     }
 
-    public void open(RedisPubSubListener<String, String> messageHandlerListener) {
+    public synchronized void open(RedisPubSubListener<String, String> messageHandlerListener) {
         // Initialize subscribers (consumers)
         if (subCommands == null) {
             this.openSub(messageHandlerListener);
@@ -44,9 +68,17 @@ public class RedisPubSubUtil {
         if (pubCommands == null) {
             this.openPub();
         }
+
+        if (properties.getSharded()) {
+            redisShardedPubSub.open(messageHandlerListener);
+        }
     }
 
     public void subscribe(String... channels) {
+        if (properties.getSharded()) {
+            redisShardedPubSub.subscribe(channels);
+            return;
+        }
         subCommands.subscribe(channels);
     }
 
@@ -57,10 +89,47 @@ public class RedisPubSubUtil {
      * @return Long integer-reply the number of clients that received the message.
      */
     public Long publish(String channel, String message) {
+        if (properties.getSharded()) {
+            return redisShardedPubSub.publish(channel, message);
+        }
         return pubCommands.publish(channel, message);
     }
 
+    /**
+     * Asynchronous send a message to the specified channel, the calling thread does not wait for the reply.
+     *
+     * @param channel The channel
+     * @param message The message
+     * @return the future completed with the number of clients that received the message
+     */
+    public CompletableFuture<Long> publishAsync(String channel, String message) {
+        if (properties.getSharded()) {
+            return redisShardedPubSub.publishAsync(channel, message);
+        }
+        return pubAsyncCommands.publish(channel, message).toCompletableFuture();
+    }
+
+    /**
+     * Send several messages to the specified channel at once, pipelined on the publisher connection (one round trip instead of one per message).
+     *
+     * @param channel The channel
+     * @param messages The messages, in order
+     * @return the future completed with the total number of deliveries
+     */
+    public CompletableFuture<Long> publishAll(String channel, Collection<String> messages) {
+        List<CompletableFuture<Long>> futures = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            futures.add(this.publishAsync(channel, message));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> futures.stream().mapToLong(CompletableFuture::join).sum());
+    }
+
     public void unsubscribe(String... channels) {
+        if (properties.getSharded()) {
+            redisShardedPubSub.unsubscribe(channels);
+            return;
+        }
         subCommands.unsubscribe(channels);
     }
 
@@ -71,31 +140,32 @@ public class RedisPubSubUtil {
         subCommands.punsubscribe(patterns);
     }
 
-    private void openSub(RedisPubSubListener<String, String> messageHandlerListener) {
-        if (abstractRedisClient instanceof RedisClient redisClient) {
-            // Redis stand-alone deployment mode
-            StatefulRedisPubSubConnection<String, String> connection = redisClient.connectPubSub();
-            connection.addListener(messageHandlerListener);
-            subCommands = connection.sync();
-        } else if (abstractRedisClient instanceof RedisClusterClient redisClusterClient) {
-            // Redis cluster deployment mode (excluding sentinel mode)
-            StatefulRedisClusterPubSubConnection<String, String> connection = redisClusterClient.connectPubSub();
-            connection.addListener(messageHandlerListener);
-            subCommands = connection.sync();
-        }
+    /**
+     * The dispatch statistics of the received messages, when dispatch is enabled, such as the messages dropped or waiting.
+     */
+    public PubSubDispatchStats getDispatchStats() {
+        return redisPubSubDispatcher.getStats();
     }
 
-    private void openPub() {
-        if (abstractRedisClient instanceof RedisClient redisClient) {
-            // Redis stand-alone deployment mode
-            StatefulRedisPubSubConnection<String, String> connection = redisClient.connectPubSub();
-            pubCommands = connection.sync();
-        } else if (abstractRedisClient instanceof RedisClusterClient redisClusterClient) {
-            // Redis cluster deployment mode (excluding sentinel mode)
-            StatefulRedisClusterPubSubConnection<String, String> connection = redisClusterClient.connectPubSub();
-            pubCommands = connection.sync();
+    @PreDestroy
+    public void destroy() {
+        if (subConnection != null) {
+            subConnection.close();
+        }
+        if (pubConnection != null) {
+            pubConnection.close();
         }
     }
 
+    private void openSub(RedisPubSubListener<String, String> messageHandlerListener) {
+        subConnection = connectionProvider.connectPubSub(StringCodec.UTF8);
+        subConnection.addListener(redisPubSubDispatcher.wrap(messageHandlerListener));
+        subCommands = subConnection.sync();
+    }
 
+    private void openPub() {
+        pubConnection = connectionProvider.connectPubSub(StringCodec.UTF8);
+        pubCommands = pubConnection.sync();
+        pubAsyncCommands = pubConnection.async();
+    }
 }
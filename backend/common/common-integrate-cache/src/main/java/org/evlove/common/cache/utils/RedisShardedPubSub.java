@@ -0,0 +1,406 @@
+package org.evlove.common.cache.utils;
+
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisConnectionStateAdapter;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.output.ArrayOutput;
+import io.lettuce.core.output.IntegerOutput;
+import io.lettuce.core.protocol.CommandArgs;
+import io.lettuce.core.protocol.ProtocolKeyword;
+import io.lettuce.core.pubsub.RedisPubSubListener;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.RedisConnectionProvider;
+import org.evlove.common.cache.properties.RedisPubSubProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Sharded publish/subscribe (SPUBLISH/SSUBSCRIBE, Redis 7.0+), used by RedisPubSubUtil when evlove.cache.pubsub.sharded is true.
+ * <p>
+ * Classic PUBLISH is broadcast to every node of a cluster, so the pub/sub traffic grows with the number of nodes.
+ * A sharded message is only sent to the node owning the slot of its channel, where the subscribers of the channel are connected.
+ * The cluster topology is refreshed periodically, and the subscriptions are moved when the slot of a channel moves to another node
+ * (the node also unsubscribes the clients itself when it loses the slot, which triggers a check right away).
+ * After a disconnection, the channels of the node are subscribed again.
+ * <p>
+ * Lettuce 6.2 has no sharded pub/sub API, so the commands are sent with dispatch, and RESP3 (the default protocol of Lettuce,
+ * with Redis 6.0+) is required: the sharded messages and acknowledgements are push messages, received by a push listener.
+ * Lettuce does not know these acknowledgements, so a SSUBSCRIBE command is never completed and stays on the command stack
+ * of its connection, where it would receive the next reply of the connection. The channels of each node are therefore
+ * subscribed on a connection of their own, on which only SSUBSCRIBE is sent: an error reply fails the whole connection,
+ * and a change of the channels of the node replaces the connection (once the new one is acknowledged) instead of sending SUNSUBSCRIBE.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisShardedPubSub {
+
+    private enum ShardedCommand implements ProtocolKeyword {
+        SPUBLISH, SSUBSCRIBE;
+
+        private final byte[] bytes = name().getBytes(StandardCharsets.US_ASCII);
+
+        @Override
+        public byte[] getBytes() {
+            return bytes;
+        }
+    }
+
+    private static final String PUSH_TYPE_MESSAGE = "smessage";
+    private static final String PUSH_TYPE_SUBSCRIBE = "ssubscribe";
+    private static final String PUSH_TYPE_UNSUBSCRIBE = "sunsubscribe";
+
+    /**
+     * The node id of the only node in stand-alone deployment mode.
+     */
+    private static final String STANDALONE_NODE = "";
+
+    @Resource
+    private RedisPubSubProperties properties;
+
+    @Resource
+    private RedisConnectionProvider connectionProvider;
+
+    @Resource
+    private RedisPubSubDispatcher redisPubSubDispatcher;
+
+    private StatefulConnection<String, String> pubConnection;
+    private RedisClusterAsyncCommands<String, String> pubCommands;
+    private volatile RedisPubSubListener<String, String> listener;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * The channels subscribed to by the application.
+     */
+    private final Set<String> channels = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The subscription in use of each node, only its messages are handed to the listener.
+     */
+    private final Map<String, NodeSubscription> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * The subscription of each node replacing the one in use, until all its channels are acknowledged.
+     */
+    private final Map<String, NodeSubscription> pendingSubscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * The listener is registered on the client, so the events of the other connections of the client are ignored.
+     */
+    private final RedisConnectionStateListener connectionStateListener = new RedisConnectionStateAdapter() {
+        @Override
+        public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+            onDisconnected(connection);
+        }
+    };
+
+    public synchronized void open(RedisPubSubListener<String, String> messageHandlerListener) {
+        if (scheduler != null) {
+            return;
+        }
+        listener = redisPubSubDispatcher.wrap(messageHandlerListener);
+        pubConnection = connectionProvider.connectAny(StringCodec.UTF8);
+        pubCommands = connectionProvider.async(pubConnection);
+        connectionProvider.getClient().addListener(connectionStateListener);
+
+        long intervalMillis = properties.getTopologyCheckInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-sharded-pubsub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshAndCheck, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler == null) {
+            return;
+        }
+        connectionProvider.getClient().removeListener(connectionStateListener);
+        scheduler.shutdownNow();
+        synchronized (this) {
+            subscriptions.values().forEach(NodeSubscription::close);
+            pendingSubscriptions.values().forEach(NodeSubscription::close);
+            subscriptions.clear();
+            pendingSubscriptions.clear();
+        }
+        pubConnection.close();
+    }
+
+    /**
+     * Send a message to the node owning the slot of the channel (SPUBLISH).
+     *
+     * @return the future completed with the number of clients that received the message
+     */
+    public CompletableFuture<Long> publishAsync(String channel, String message) {
+        return this.dispatchPublish(channel, message).toCompletableFuture();
+    }
+
+    public Long publish(String channel, String message) {
+        return LettuceFutures.awaitOrCancel(this.dispatchPublish(channel, message), pubConnection.getTimeout().toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public void subscribe(String... channels) {
+        for (String channel : channels) {
+            this.channels.add(channel);
+        }
+        this.checkSubscriptions();
+    }
+
+    public void unsubscribe(String... channels) {
+        for (String channel : channels) {
+            this.channels.remove(channel);
+        }
+        this.checkSubscriptions();
+    }
+
+    private RedisFuture<Long> dispatchPublish(String channel, String message) {
+        CommandArgs<String, String> args = new CommandArgs<>(StringCodec.UTF8).addKey(channel).addValue(message);
+        // The channel is the key of the command, so the cluster connection routes it to the node owning its slot
+        return pubCommands.dispatch(ShardedCommand.SPUBLISH, new IntegerOutput<>(StringCodec.UTF8), args);
+    }
+
+    /**
+     * Subscribe the channels on the node owning their slot: the subscription of a node whose channels have changed is replaced.
+     */
+    private synchronized void checkSubscriptions() {
+        if (scheduler == null || scheduler.isShutdown()) {
+            return;
+        }
+        Map<String, Set<String>> nodeChannels = new HashMap<>();
+        for (String channel : channels) {
+            try {
+                nodeChannels.computeIfAbsent(this.nodeOf(channel), nodeId -> new HashSet<>()).add(channel);
+            } catch (Exception e) {
+                log.warn("Redis sharded subscription failed, retried on the next check - channel:{}", channel, e);
+                return;
+            }
+        }
+
+        // The nodes that no longer own any subscribed channel
+        Set<String> nodeIds = new HashSet<>(subscriptions.keySet());
+        nodeIds.addAll(pendingSubscriptions.keySet());
+        nodeIds.removeAll(nodeChannels.keySet());
+        for (String nodeId : nodeIds) {
+            this.discard(subscriptions.get(nodeId));
+            this.discard(pendingSubscriptions.get(nodeId));
+        }
+
+        nodeChannels.forEach((nodeId, expectedChannels) -> {
+            NodeSubscription pending = pendingSubscriptions.get(nodeId);
+            NodeSubscription latest = pending != null ? pending : subscriptions.get(nodeId);
+            if (latest != null && latest.channels.equals(expectedChannels)) {
+                return;
+            }
+            this.discard(pending);
+            try {
+                pendingSubscriptions.put(nodeId, this.subscribe(nodeId, expectedChannels));
+            } catch (Exception e) {
+                log.warn("Redis sharded subscription failed, retried on the next check - node:{} channels:{}", nodeId, expectedChannels, e);
+            }
+        });
+    }
+
+    /**
+     * Open a connection to the node, and subscribe the channels on it, with one SSUBSCRIBE per slot
+     * (the channels of a SSUBSCRIBE must belong to the same slot).
+     */
+    private NodeSubscription subscribe(String nodeId, Set<String> nodeChannels) {
+        StatefulConnection<String, String> ownerConnection = connectionProvider.connectAny(StringCodec.UTF8);
+        try {
+            StatefulRedisConnection<String, String> connection = ownerConnection instanceof StatefulRedisClusterConnection<String, String> clusterConnection
+                    ? clusterConnection.getConnection(nodeId)
+                    : (StatefulRedisConnection<String, String>) ownerConnection;
+            NodeSubscription subscription = new NodeSubscription(nodeId, Set.copyOf(nodeChannels), ownerConnection, connection);
+            connection.addListener(message -> onPushMessage(subscription, message));
+
+            Map<Integer, List<String>> slotChannels = nodeChannels.stream().collect(Collectors.groupingBy(SlotHash::getSlot));
+            for (List<String> channelsOfSlot : slotChannels.values()) {
+                CommandArgs<String, String> args = new CommandArgs<>(StringCodec.UTF8).addKeys(channelsOfSlot);
+                connection.async().dispatch(ShardedCommand.SSUBSCRIBE, new ArrayOutput<>(StringCodec.UTF8), args)
+                        .whenComplete((ignored, throwable) -> {
+                            // Only an error reply completes the command, it is cancelled when the connection is closed
+                            if (throwable instanceof RedisCommandExecutionException) {
+                                log.warn("Redis sharded subscription failed, retried on the next check - node:{} channels:{}", nodeId, channelsOfSlot, throwable);
+                                this.schedule(() -> this.discard(subscription));
+                            }
+                        });
+            }
+            return subscription;
+        } catch (RuntimeException e) {
+            ownerConnection.close();
+            throw e;
+        }
+    }
+
+    private String nodeOf(String channel) {
+        if (connectionProvider.getClient() instanceof RedisClusterClient redisClusterClient) {
+            RedisClusterNode node = redisClusterClient.getPartitions().getPartitionBySlot(SlotHash.getSlot(channel));
+            if (node == null) {
+                throw new IllegalStateException("No node owns the slot of channel: " + channel);
+            }
+            return node.getNodeId();
+        }
+        return STANDALONE_NODE;
+    }
+
+    private void onPushMessage(NodeSubscription subscription, PushMessage message) {
+        String type = message.getType();
+        if (PUSH_TYPE_MESSAGE.equals(type)) {
+            // While a subscription is replaced, the messages are received on both connections, only the one in use hands them over
+            List<Object> content = message.getContent(StringCodec.UTF8::decodeValue);
+            if (listener != null && content.size() > 2 && this.isDelivering(subscription)) {
+                listener.message((String) content.get(1), (String) content.get(2));
+            }
+        } else if (PUSH_TYPE_SUBSCRIBE.equals(type)) {
+            String channel = (String) message.getContent(StringCodec.UTF8::decodeValue).get(1);
+            if (subscription.acknowledge(channel)) {
+                this.schedule(() -> this.promote(subscription));
+            }
+        } else if (PUSH_TYPE_UNSUBSCRIBE.equals(type)) {
+            // SUNSUBSCRIBE is never sent: the node lost the slot of the channel
+            this.schedule(() -> {
+                this.discard(subscription);
+                this.refreshAndCheck();
+            });
+        }
+    }
+
+    /**
+     * The subscription in use hands the messages over, or the first subscription of the node while it is being acknowledged.
+     */
+    private boolean isDelivering(NodeSubscription subscription) {
+        NodeSubscription inUse = subscriptions.get(subscription.nodeId);
+        return inUse == subscription || (inUse == null && pendingSubscriptions.get(subscription.nodeId) == subscription);
+    }
+
+    private void onDisconnected(RedisChannelHandler<?, ?> connection) {
+        for (NodeSubscription subscription : List.copyOf(subscriptions.values())) {
+            if (subscription.connection == connection) {
+                this.schedule(() -> this.resubscribe(subscription));
+            }
+        }
+        for (NodeSubscription subscription : List.copyOf(pendingSubscriptions.values())) {
+            if (subscription.connection == connection) {
+                this.schedule(() -> this.resubscribe(subscription));
+            }
+        }
+    }
+
+    /**
+     * The subscriptions were lost with the connection (a reconnected connection does not subscribe the channels again).
+     */
+    private synchronized void resubscribe(NodeSubscription subscription) {
+        if (this.discard(subscription)) {
+            this.checkSubscriptions();
+        }
+    }
+
+    /**
+     * All the channels of the subscription are acknowledged, it replaces the subscription in use.
+     */
+    private synchronized void promote(NodeSubscription subscription) {
+        if (pendingSubscriptions.remove(subscription.nodeId, subscription)) {
+            NodeSubscription replaced = subscriptions.put(subscription.nodeId, subscription);
+            if (replaced != null) {
+                replaced.close();
+            }
+        }
+    }
+
+    /**
+     * Forget the subscription and close its connection, the next check subscribes its channels again.
+     *
+     * @return whether the subscription was still in use or pending
+     */
+    private synchronized boolean discard(NodeSubscription subscription) {
+        if (subscription == null) {
+            return false;
+        }
+        boolean removed = subscriptions.remove(subscription.nodeId, subscription)
+                | pendingSubscriptions.remove(subscription.nodeId, subscription);
+        subscription.close();
+        return removed;
+    }
+
+    private void refreshAndCheck() {
+        if (connectionProvider.getClient() instanceof RedisClusterClient redisClusterClient) {
+            try {
+                // No periodic topology refresh is configured on the client, the partitions only change when refreshed
+                redisClusterClient.refreshPartitions();
+            } catch (Exception e) {
+                log.warn("Redis cluster topology refresh failed, retried on the next check", e);
+            }
+        }
+        this.checkSubscriptions();
+    }
+
+    private void schedule(Runnable task) {
+        if (!scheduler.isShutdown()) {
+            scheduler.execute(task);
+        }
+    }
+
+    /**
+     * The sharded subscriptions of one node, on a connection of their own.
+     */
+    private static final class NodeSubscription {
+        private final String nodeId;
+        private final Set<String> channels;
+        private final Set<String> unacknowledged;
+        /**
+         * The connection to close: the connection itself in stand-alone mode, the cluster connection owning it in cluster mode.
+         */
+        private final StatefulConnection<String, String> ownerConnection;
+        private final StatefulRedisConnection<String, String> connection;
+
+        private NodeSubscription(String nodeId, Set<String> channels, StatefulConnection<String, String> ownerConnection,
+                                 StatefulRedisConnection<String, String> connection) {
+            this.nodeId = nodeId;
+            this.channels = channels;
+            this.unacknowledged = ConcurrentHashMap.newKeySet();
+            this.unacknowledged.addAll(channels);
+            this.ownerConnection = ownerConnection;
+            this.connection = connection;
+        }
+
+        /**
+         * @return whether the channel was the last one to be acknowledged
+         */
+        private boolean acknowledge(String channel) {
+            return unacknowledged.remove(channel) && unacknowledged.isEmpty();
+        }
+
+        private void close() {
+            ownerConnection.closeAsync();
+        }
+    }
+}
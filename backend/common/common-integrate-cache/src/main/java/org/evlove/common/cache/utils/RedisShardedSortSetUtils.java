@@ -0,0 +1,333 @@
+package org.evlove.common.cache.utils;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScoredValue;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.async.RedisKeyAsyncCommands;
+import io.lettuce.core.api.async.RedisScriptingAsyncCommands;
+import io.lettuce.core.api.async.RedisSortedSetAsyncCommands;
+import jakarta.annotation.Resource;
+import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.constant.RedisSortType;
+import org.evlove.common.cache.pojo.MemberScore;
+import org.evlove.common.cache.pojo.SortSetPage;
+import org.evlove.common.cache.properties.RedisSortSetProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sharded sorted sets, for the sorted sets too large for one key (such as a leaderboard of tens of millions of members):
+ * the members are spread over several sorted sets (the shards), which are in different slots, so on different nodes of a cluster.
+ * <p>
+ * A member always belongs to the same shard (by the hash code of the member). The writes of a member only touch its shard,
+ * the reads in order read the head of every shard in parallel (pipelined) and merge them (k-way merge),
+ * in the same order as one sorted set: by score, then by member for the same score.
+ * The rank of a member is computed with a script per shard, in parallel.
+ * <p>
+ * The number of shards is set per key (see RedisSortSetProperties.keyShards), it must not change once the sorted set is written.
+ * A key with a hash tag would put all the shards in the same slot, so the key of a sharded sorted set should not have one.
+ *
+ * @author massaton.github.io
+ */
+@Component
+public class RedisShardedSortSetUtils extends AbstractRedisUtils {
+
+    /**
+     * Count the members of a shard ordered before a score and member (ARGV[2], ARGV[3]), in ascending order or descending order (ARGV[1] == '1'):
+     * the members with a better score are counted with ZCOUNT, the position of the member among the members with the same score
+     * (ordered by member) is found with a binary search on their ranks, so that the ties are not read.
+     */
+    private static final String RANK_SCRIPT = """
+            local desc = ARGV[1] == '1'
+            local member = ARGV[3]
+            local low
+            if desc then
+                low = redis.call('zcount', KEYS[1], '(' .. ARGV[2], '+inf')
+            else
+                low = redis.call('zcount', KEYS[1], '-inf', '(' .. ARGV[2])
+            end
+            local high = low + redis.call('zcount', KEYS[1], ARGV[2], ARGV[2])
+            while low < high do
+                local mid = math.floor((low + high) / 2)
+                local tie
+                if desc then
+                    tie = redis.call('zrevrange', KEYS[1], mid, mid)[1]
+                else
+                    tie = redis.call('zrange', KEYS[1], mid, mid)[1]
+                end
+                if (desc and tie > member) or (not desc and tie < member) then
+                    low = mid + 1
+                else
+                    high = mid
+                end
+            end
+            return low
+            """;
+
+    @Resource
+    private RedisSortSetProperties properties;
+
+    @Resource
+    private RedisSortSetUtils redisSortSetUtils;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisSortedSetAsyncCommands<byte[], byte[]> redisBinarySortedSetAsyncCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisKeyAsyncCommands<byte[], byte[]> redisBinaryKeyAsyncCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisScriptingAsyncCommands<byte[], byte[]> redisBinaryScriptingAsyncCommands;
+
+    /**
+     * Get the number of shards of a sharded sorted set.
+     */
+    public int shardCount(String key) {
+        return properties.getKeyShards().getOrDefault(key, properties.getShards());
+    }
+
+    /**
+     * Get the key of the shard holding a member.
+     */
+    public String shardKey(String key, String member) {
+        return key + properties.getShardSuffix() + Math.floorMod(member.hashCode(), this.shardCount(key));
+    }
+
+    /**
+     * Get the keys of all the shards of a sharded sorted set.
+     */
+    public List<String> shardKeys(String key) {
+        int shardCount = this.shardCount(key);
+        List<String> shardKeys = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shardKeys.add(key + properties.getShardSuffix() + i);
+        }
+        return shardKeys;
+    }
+
+    /**
+     * Add one or more members to a sharded sorted set, or update their score if they already exist.
+     * The members of each shard are written by one ZADD, all the shards in parallel.
+     *
+     * @param key The key
+     * @param members Member information to add
+     * @return
+     */
+    public Boolean add(String key, List<MemberScore> members) {
+        Map<String, List<ScoredValue<byte[]>>> shardMembers = new HashMap<>();
+        for (MemberScore member : members) {
+            shardMembers.computeIfAbsent(this.shardKey(key, member.getMember()), k -> new ArrayList<>())
+                    .add(ScoredValue.just(member.getScore(), bytes(member.getMember())));
+        }
+        List<RedisFuture<Long>> futures = new ArrayList<>(shardMembers.size());
+        shardMembers.forEach((shardKey, scoredValues) ->
+                futures.add(redisBinarySortedSetAsyncCommands.zadd(bytes(shardKey), scoredValues.toArray())));
+        for (RedisFuture<Long> future : futures) {
+            await(future, commandTimeout());
+        }
+        return true;
+    }
+
+    /**
+     * Delete specified members
+     * @param key The key
+     * @param members The name of the member to delete
+     * @return
+     */
+    public Boolean delete(String key, String... members) {
+        Map<String, List<byte[]>> shardMembers = new HashMap<>();
+        for (String member : members) {
+            shardMembers.computeIfAbsent(this.shardKey(key, member), k -> new ArrayList<>()).add(bytes(member));
+        }
+        List<RedisFuture<Long>> futures = new ArrayList<>(shardMembers.size());
+        shardMembers.forEach((shardKey, values) ->
+                futures.add(redisBinarySortedSetAsyncCommands.zrem(bytes(shardKey), values.toArray(new byte[0][]))));
+        for (RedisFuture<Long> future : futures) {
+            await(future, commandTimeout());
+        }
+        return true;
+    }
+
+    /**
+     * Delete all the shards of a sharded sorted set.
+     */
+    public Boolean deleteAll(String key) {
+        List<RedisFuture<Long>> futures = new ArrayList<>();
+        for (String shardKey : this.shardKeys(key)) {
+            // One DEL per shard, the shards are in different slots
+            futures.add(redisBinaryKeyAsyncCommands.del(bytes(shardKey)));
+        }
+        for (RedisFuture<Long> future : futures) {
+            await(future, commandTimeout());
+        }
+        return true;
+    }
+
+    /**
+     * Get the score of a member, null when the member does not exist.
+     */
+    public Double getScore(String key, String member) {
+        return await(redisBinarySortedSetAsyncCommands.zscore(bytes(this.shardKey(key, member)), bytes(member)),
+                commandTimeout());
+    }
+
+    /**
+     * Get the number of members of all the shards.
+     */
+    public Long count(String key) {
+        List<RedisFuture<Long>> futures = new ArrayList<>();
+        for (String shardKey : this.shardKeys(key)) {
+            futures.add(redisBinarySortedSetAsyncCommands.zcard(bytes(shardKey)));
+        }
+        long count = 0;
+        for (RedisFuture<Long> future : futures) {
+            count += await(future, commandTimeout());
+        }
+        return count;
+    }
+
+    /**
+     * Get the first members, such as the top K of a leaderboard: the first count members of each shard are merged.
+     */
+    public List<MemberScore> getTop(String key, RedisSortType sortType, int count) {
+        return this.getPage(key, sortType, null, count).getMembers();
+    }
+
+    /**
+     * Get the page after the cursor, see RedisSortSetUtils.getPage: each shard reads pageSize members after the cursor,
+     * and the first pageSize members of the merge are returned.
+     *
+     * @param key The key
+     * @param sortType Specifies the sort type of the member
+     * @param cursor The nextCursor of the previous page, null for the first page
+     * @param pageSize How many members per page
+     * @return the page and the cursor of the next page
+     */
+    public SortSetPage getPage(String key, RedisSortType sortType, MemberScore cursor, int pageSize) {
+        List<CompletableFuture<List<MemberScore>>> futures = new ArrayList<>();
+        for (String shardKey : this.shardKeys(key)) {
+            futures.add(redisSortSetUtils.getPageAsync(shardKey, sortType, cursor, pageSize));
+        }
+        List<List<MemberScore>> heads = new ArrayList<>(futures.size());
+        for (CompletableFuture<List<MemberScore>> future : futures) {
+            heads.add(await(future, commandTimeout()));
+        }
+        List<MemberScore> members = merge(heads, sortType, 0, pageSize);
+        MemberScore nextCursor = members.size() < pageSize ? null : members.get(members.size() - 1);
+        return new SortSetPage(members, nextCursor == null ? null : new MemberScore(nextCursor.getMember(), nextCursor.getScore()));
+    }
+
+    /**
+     * Paging to get sorted members, each shard reads its first pageNum * pageSize members:
+     * the deep pages are better read with a cursor (getPage).
+     *
+     * @param key The key
+     * @param sortType Specifies the sort type of the member
+     * @param pageNum Number of pages to query
+     * @param pageSize How many queries per pages
+     * @return
+     */
+    public List<MemberScore> get(String key, RedisSortType sortType, Long pageNum, Long pageSize) {
+        long offset = (pageNum - 1) * pageSize;
+        List<RedisFuture<List<ScoredValue<byte[]>>>> futures = new ArrayList<>();
+        for (String shardKey : this.shardKeys(key)) {
+            futures.add(RedisSortType.DESC.equals(sortType)
+                    ? redisBinarySortedSetAsyncCommands.zrevrangeWithScores(bytes(shardKey), 0, offset + pageSize - 1)
+                    : redisBinarySortedSetAsyncCommands.zrangeWithScores(bytes(shardKey), 0, offset + pageSize - 1));
+        }
+        List<List<MemberScore>> heads = new ArrayList<>(futures.size());
+        for (RedisFuture<List<ScoredValue<byte[]>>> future : futures) {
+            List<ScoredValue<byte[]>> scoredValues = await(future, commandTimeout());
+            List<MemberScore> head = new ArrayList<>(scoredValues.size());
+            for (ScoredValue<byte[]> scoredValue : scoredValues) {
+                head.add(new MemberScore(new String(scoredValue.getValue(), StandardCharsets.UTF_8), scoredValue.getScore()));
+            }
+            heads.add(head);
+        }
+        return merge(heads, sortType, offset, pageSize);
+    }
+
+    /**
+     * Get the rank of a member among all the shards, starting from 0: the members ordered before it are counted
+     * by a script per shard in parallel, see RANK_SCRIPT.
+     *
+     * @param key The key
+     * @param sortType Specifies the sort type of the member
+     * @param member The member
+     * @return the rank, null when the member does not exist
+     */
+    public Long getRank(String key, RedisSortType sortType, String member) {
+        Double score = this.getScore(key, member);
+        if (score == null) {
+            return null;
+        }
+        byte[][] args = new byte[][]{
+                bytes(RedisSortType.DESC.equals(sortType) ? "1" : "0"),
+                bytes(RedisSortSetUtils.formatScore(score)),
+                bytes(member)
+        };
+        List<RedisFuture<Long>> futures = new ArrayList<>();
+        for (String shardKey : this.shardKeys(key)) {
+            futures.add(redisBinaryScriptingAsyncCommands.eval(RANK_SCRIPT, ScriptOutputType.INTEGER, new byte[][]{bytes(shardKey)}, args));
+        }
+        long rank = 0;
+        for (RedisFuture<Long> future : futures) {
+            rank += await(future, commandTimeout());
+        }
+        return rank;
+    }
+
+    /**
+     * Merge the heads of the shards (each in order) and keep the members from offset to offset + count.
+     */
+    private static List<MemberScore> merge(List<List<MemberScore>> heads, RedisSortType sortType, long offset, long count) {
+        Comparator<MemberScore> order = Comparator.comparing(MemberScore::getScore)
+                .thenComparing((a, b) -> Arrays.compareUnsigned(bytes(a.getMember()), bytes(b.getMember())));
+        Comparator<MemberScore> comparator = RedisSortType.DESC.equals(sortType) ? order.reversed() : order;
+
+        PriorityQueue<Head> queue = new PriorityQueue<>((a, b) -> comparator.compare(a.current(), b.current()));
+        for (List<MemberScore> head : heads) {
+            if (!head.isEmpty()) {
+                queue.add(new Head(head));
+            }
+        }
+        List<MemberScore> result = new ArrayList<>((int) Math.min(count, 1024));
+        long position = 0;
+        while (!queue.isEmpty() && result.size() < count) {
+            Head head = queue.poll();
+            if (position++ >= offset) {
+                result.add(head.current());
+            }
+            if (++head.index < head.members.size()) {
+                queue.add(head);
+            }
+        }
+        return result;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class Head {
+        private final List<MemberScore> members;
+        private int index;
+
+        private Head(List<MemberScore> members) {
+            this.members = members;
+        }
+
+        private MemberScore current() {
+            return members.get(index);
+        }
+    }
+}
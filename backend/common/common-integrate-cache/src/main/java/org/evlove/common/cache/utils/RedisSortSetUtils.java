@@ -1,18 +1,42 @@
 package org.evlove.common.cache.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.lettuce.core.Limit;
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisCommandInterruptedException;
+import io.lettuce.core.RedisException;
 import io.lettuce.core.RedisFuture;
 import io.lettuce.core.ScoredValue;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.async.RedisScriptingAsyncCommands;
 import io.lettuce.core.api.async.RedisSortedSetAsyncCommands;
+import io.lettuce.core.api.sync.RedisKeyCommands;
+import io.lettuce.core.api.sync.RedisScriptingCommands;
 import io.lettuce.core.api.sync.RedisSortedSetCommands;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import org.evlove.common.cache.RedisClientConfig;
 import org.evlove.common.cache.constant.RedisSortType;
+import org.evlove.common.cache.pojo.BulkLoadProgress;
 import org.evlove.common.cache.pojo.MemberScore;
+import org.evlove.common.cache.pojo.SortSetPage;
+import org.evlove.common.cache.properties.RedisSortSetProperties;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Redis's ordered collection is also a collection of string type elements like collections, and duplicate members are not allowed.
@@ -21,20 +45,132 @@ import java.util.function.BiConsumer;
  * The members of the ordered set are unique, but the score can be repeated.
  * The collection is implemented through a hash table, so the complexity of adding, deleting, and searching is O(1).
  * The maximum number of members in a collection is 2ˆ32-1(4294967295), i.e. each collection can store more than 4 billion members.
+ * <p>
+ * Deep pages are better read with a cursor (getPage), which resumes after the last member of the previous page in O(log N + pageSize),
+ * instead of skipping the offset of the page number, and does not repeat or skip members when the scores of other members change.
+ * The first pages can be kept in local memory for a short time (opt-in, see RedisSortSetProperties).
  *
  * @author massaton.github.io
  */
 @Component
 public class RedisSortSetUtils extends AbstractRedisUtils {
+    /**
+     * Read a page after the cursor (ARGV[3] score, ARGV[4] member), or the first page without cursor.
+     * When the cursor member still has its score, the page starts after its rank, otherwise after the position the cursor would have:
+     * after the members with a lower score (a higher one in descending order) and the members with the same score sorted before it.
+     * The members with the same score are sorted by member, so the position among them is found by a binary search on their ranks,
+     * in O(log T * log N) for T members with that score, instead of reading them all.
+     */
+    private static final String CURSOR_PAGE_SCRIPT = """
+            local desc = ARGV[1] == '1'
+            local count = tonumber(ARGV[2])
+            local start = 0
+            if ARGV[3] then
+                local member = ARGV[4]
+                local current = redis.call('zscore', KEYS[1], member)
+                if current and tonumber(current) == tonumber(ARGV[3]) then
+                    if desc then
+                        start = redis.call('zrevrank', KEYS[1], member) + 1
+                    else
+                        start = redis.call('zrank', KEYS[1], member) + 1
+                    end
+                else
+                    local low
+                    if desc then
+                        low = redis.call('zcount', KEYS[1], '(' .. ARGV[3], '+inf')
+                    else
+                        low = redis.call('zcount', KEYS[1], '-inf', '(' .. ARGV[3])
+                    end
+                    local high = low + redis.call('zcount', KEYS[1], ARGV[3], ARGV[3])
+                    while low < high do
+                        local mid = math.floor((low + high) / 2)
+                        local tie
+                        if desc then
+                            tie = redis.call('zrevrange', KEYS[1], mid, mid)[1]
+                        else
+                            tie = redis.call('zrange', KEYS[1], mid, mid)[1]
+                        end
+                        if (desc and tie >= member) or (not desc and tie <= member) then
+                            low = mid + 1
+                        else
+                            high = mid
+                        end
+                    end
+                    start = low
+                end
+            end
+            if desc then
+                return redis.call('zrevrange', KEYS[1], start, start + count - 1, 'withscores')
+            end
+            return redis.call('zrange', KEYS[1], start, start + count - 1, 'withscores')
+            """;
+
+    /**
+     * Read the members around a member (ARGV[2] before and ARGV[3] after it) atomically, nothing when the member does not exist.
+     */
+    private static final String AROUND_SCRIPT = """
+            local rank
+            if ARGV[1] == '1' then
+                rank = redis.call('zrevrank', KEYS[1], ARGV[4])
+            else
+                rank = redis.call('zrank', KEYS[1], ARGV[4])
+            end
+            if not rank then
+                return {}
+            end
+            local start = math.max(rank - tonumber(ARGV[2]), 0)
+            if ARGV[1] == '1' then
+                return redis.call('zrevrange', KEYS[1], start, rank + tonumber(ARGV[3]), 'withscores')
+            end
+            return redis.call('zrange', KEYS[1], start, rank + tonumber(ARGV[3]), 'withscores')
+            """;
+
     @Resource
     private RedisGenericUtils redisGenericUtils;
 
+    @Resource
+    private RedisSortSetProperties properties;
+
+    @Resource
+    private RedisGeoMirror redisGeoMirror;
+
     @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_SYNC_COMMANDS)
     private RedisSortedSetCommands<String, String> redisSortedSetCommands;
 
     @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_ASYNC_COMMANDS)
     private RedisSortedSetAsyncCommands<String, String> redisSortedSetAsyncCommands;
 
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_SYNC_COMMANDS)
+    private RedisSortedSetCommands<byte[], byte[]> redisBinarySortedSetCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_SYNC_COMMANDS)
+    private RedisScriptingCommands<byte[], byte[]> redisBinaryScriptingCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_SYNC_COMMANDS)
+    private RedisKeyCommands<byte[], byte[]> redisBinaryKeyCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisSortedSetAsyncCommands<byte[], byte[]> redisBinarySortedSetAsyncCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisScriptingAsyncCommands<byte[], byte[]> redisBinaryScriptingAsyncCommands;
+
+    /**
+     * The first pages of the sorted sets, null when the top page cache is disabled.
+     */
+    private Cache<PageKey, List<MemberScore>> topPageCache;
+
+    @PostConstruct
+    public void init() {
+        if (!properties.getTopPageCacheEnabled()) {
+            return;
+        }
+        topPageCache = Caffeine.newBuilder()
+                .maximumSize(properties.getTopPageCacheSize())
+                .expireAfterWrite(properties.getTopPageTtl())
+                .build();
+    }
+
     public RedisSortedSetCommands<String, String> sync() {
         return this.redisSortedSetCommands;
     }
@@ -60,6 +196,7 @@ public class RedisSortSetUtils extends AbstractRedisUtils {
             scoredValues.add(scoredValue);
         }
 
+        this.evictTopPages(key);
         Long count = redisSortedSetCommands.zadd(
                 key,
                 scoredValues.toArray()
@@ -94,6 +231,7 @@ public class RedisSortSetUtils extends AbstractRedisUtils {
             scoredValues.add(scoredValue);
         }
 
+        this.evictTopPages(key);
         RedisFuture<Long> redisFuture = redisSortedSetAsyncCommands.zadd(
                 key,
                 scoredValues.toArray()
@@ -106,6 +244,95 @@ public class RedisSortSetUtils extends AbstractRedisUtils {
         }
     }
 
+    /**
+     * Add a large number of members to a sorted set, see bulkAdd(key, Iterator, replace, progressListener).
+     */
+    public BulkLoadProgress bulkAdd(String key, Stream<MemberScore> members, boolean replace, Consumer<BulkLoadProgress> progressListener) {
+        return this.bulkAdd(key, members.iterator(), replace, progressListener);
+    }
+
+    /**
+     * Add a large number of members to a sorted set, without holding them all in memory or sending them in one command.
+     * <p>
+     * The members are written in ZADD chunks of bulkChunkSize members, pipelined on the shared connection,
+     * with at most bulkInFlight chunks waiting for their reply: the members are read from the iterator only as fast as Redis writes them.
+     * A replacing load builds the sorted set into a temporary key in the same slot, then renames it over the key (RENAME is atomic),
+     * so the readers see the previous sorted set until the new one is complete. The temporary key is deleted when the load fails.
+     *
+     * @param key The key
+     * @param members The members to add, read once
+     * @param replace Whether to replace the sorted set, instead of adding the members to it
+     * @param progressListener Called every bulkProgressInterval and at the end of the load, on the calling thread, may be null
+     * @return the final progress of the load
+     * @throws RedisException when a chunk could not be written, the members are then partially added (not for a replacing load)
+     */
+    public BulkLoadProgress bulkAdd(String key, Iterator<MemberScore> members, boolean replace, Consumer<BulkLoadProgress> progressListener) {
+        String targetKey = replace ? sameSlotKey(key, properties.getBulkTempSuffix()) : key;
+        byte[] target = bytes(targetKey);
+        if (replace) {
+            // A leftover of a previous failed load
+            redisBinaryKeyCommands.del(target);
+        }
+
+        int chunkSize = properties.getBulkChunkSize();
+        int inFlight = properties.getBulkInFlight();
+        long progressIntervalNanos = properties.getBulkProgressInterval().toNanos();
+        Semaphore window = new Semaphore(inFlight);
+        AtomicLong loadedCount = new AtomicLong();
+        AtomicLong chunkCount = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long startNanos = System.nanoTime();
+        long lastReportNanos = startNanos;
+
+        try {
+            while (members.hasNext() && failure.get() == null) {
+                List<ScoredValue<byte[]>> chunk = new ArrayList<>(chunkSize);
+                while (chunk.size() < chunkSize && members.hasNext()) {
+                    MemberScore member = members.next();
+                    chunk.add(ScoredValue.just(member.getScore(), bytes(member.getMember())));
+                }
+                window.acquire();
+                redisBinarySortedSetAsyncCommands.zadd(target, chunk.toArray()).whenComplete((count, throwable) -> {
+                    if (throwable != null) {
+                        failure.compareAndSet(null, throwable);
+                    } else {
+                        loadedCount.addAndGet(chunk.size());
+                        chunkCount.incrementAndGet();
+                    }
+                    window.release();
+                });
+                if (progressListener != null && System.nanoTime() - lastReportNanos >= progressIntervalNanos) {
+                    lastReportNanos = System.nanoTime();
+                    progressListener.accept(progressOf(key, loadedCount, chunkCount, startNanos, false));
+                }
+            }
+            // Wait for the chunks still in flight
+            window.acquire(inFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.abortBulkAdd(replace, target);
+            throw new RedisCommandInterruptedException(e);
+        }
+        if (failure.get() != null) {
+            this.abortBulkAdd(replace, target);
+            throw new RedisException("Bulk load of the sorted set failed after " + loadedCount.get() + " members: " + key, failure.get());
+        }
+
+        if (replace) {
+            if (loadedCount.get() > 0) {
+                redisBinaryKeyCommands.rename(target, bytes(key));
+            } else {
+                redisBinaryKeyCommands.del(bytes(key));
+            }
+        }
+        this.evictTopPages(key);
+        BulkLoadProgress progress = progressOf(key, loadedCount, chunkCount, startNanos, true);
+        if (progressListener != null) {
+            progressListener.accept(progress);
+        }
+        return progress;
+    }
+
     /**
      * Get all sorted members
      * @param key The key
@@ -128,35 +355,172 @@ public class RedisSortSetUtils extends AbstractRedisUtils {
         Long start = (pageNum - 1) * pageSize;
         Long stop  = start + pageSize - 1;
 
+        if (topPageCache != null && pageNum <= properties.getTopPages()) {
+            List<MemberScore> page = topPageCache.get(
+                    new PageKey(key, sortType, pageNum, pageSize),
+                    k -> this.getByPage(key, sortType, start, stop)
+            );
+            return copyOf(page);
+        }
         return this.getByPage(key, sortType, start, stop);
     }
 
-    private List<MemberScore> getByPage(String key, RedisSortType sortType, Long start, Long stop) {
-        List<MemberScore> result = new ArrayList<>();
-
-        List<ScoredValue<String>> scoredValues;
-        if (RedisSortType.ASC.equals(sortType)) {
-            scoredValues = redisSortedSetCommands.zrangeWithScores(key, start, stop);
-        } else if (RedisSortType.DESC.equals(sortType)) {
-            scoredValues = redisSortedSetCommands.zrevrangeWithScores(key, start, stop);
+    /**
+     * Get the page after the cursor, in O(log N + pageSize) whatever the depth of the page.
+     * <p>
+     * The next page starts after the cursor member when it still has the score of the cursor, otherwise after the position
+     * the cursor would have in the sorted set (the members with the same score are sorted by member, as Redis does).
+     *
+     * @param key The key
+     * @param sortType Specifies the sort type of the member
+     * @param cursor The nextCursor of the previous page, null for the first page
+     * @param pageSize How many members per page
+     * @return the page and the cursor of the next page
+     */
+    public SortSetPage getPage(String key, RedisSortType sortType, MemberScore cursor, int pageSize) {
+        List<MemberScore> members;
+        if (cursor == null) {
+            members = this.get(key, sortType, 1L, (long) pageSize);
         } else {
-            return result;
+            List<Object> result = redisBinaryScriptingCommands.eval(
+                    CURSOR_PAGE_SCRIPT,
+                    ScriptOutputType.MULTI,
+                    new byte[][]{bytes(key)},
+                    cursorPageArgs(sortType, cursor, pageSize)
+            );
+            members = fromFlatList(result);
         }
+        MemberScore nextCursor = members.size() < pageSize ? null : copyOf(members.get(members.size() - 1));
+        return new SortSetPage(members, nextCursor);
+    }
+
+    /**
+     * Read the members after the cursor without waiting, the first ones without cursor, such as the head of a shard.
+     */
+    CompletableFuture<List<MemberScore>> getPageAsync(String key, RedisSortType sortType, MemberScore cursor, int pageSize) {
+        RedisFuture<List<Object>> future = redisBinaryScriptingAsyncCommands.eval(
+                CURSOR_PAGE_SCRIPT,
+                ScriptOutputType.MULTI,
+                new byte[][]{bytes(key)},
+                cursorPageArgs(sortType, cursor, pageSize)
+        );
+        return future.toCompletableFuture().thenApply(RedisSortSetUtils::fromFlatList);
+    }
 
-        for (ScoredValue<String> scoredValue : scoredValues) {
-            MemberScore memberScore = new MemberScore(scoredValue.getValue(), scoredValue.getScore());
-            result.add(memberScore);
+    /**
+     * Get the members whose score is within the range (ZRANGEBYSCORE/ZREVRANGEBYSCORE with LIMIT).
+     *
+     * @param key The key
+     * @param sortType Specifies the sort type of the member
+     * @param min The lowest score, inclusive, null for no lower bound
+     * @param max The highest score, inclusive, null for no upper bound
+     * @param offset The number of matching members to skip
+     * @param count The maximum number of members to return
+     * @return
+     */
+    public List<MemberScore> getByScore(String key, RedisSortType sortType, Double min, Double max, long offset, long count) {
+        Range<Double> range = Range.from(
+                min == null ? Range.Boundary.unbounded() : Range.Boundary.including(min),
+                max == null ? Range.Boundary.unbounded() : Range.Boundary.including(max)
+        );
+        List<ScoredValue<byte[]>> scoredValues;
+        if (RedisSortType.DESC.equals(sortType)) {
+            scoredValues = redisBinarySortedSetCommands.zrevrangebyscoreWithScores(bytes(key), range, Limit.create(offset, count));
+        } else {
+            scoredValues = redisBinarySortedSetCommands.zrangebyscoreWithScores(bytes(key), range, Limit.create(offset, count));
         }
+        return fromScoredValues(scoredValues);
+    }
 
+    /**
+     * Get the members within the lexicographical range (ZRANGEBYLEX/ZREVRANGEBYLEX with LIMIT),
+     * meaningful when all the members have the same score.
+     *
+     * @param key The key
+     * @param sortType Specifies the sort type of the member
+     * @param min The lowest member, inclusive, null for no lower bound
+     * @param max The highest member, inclusive, null for no upper bound
+     * @param offset The number of matching members to skip
+     * @param count The maximum number of members to return
+     * @return
+     */
+    public List<String> getByLex(String key, RedisSortType sortType, String min, String max, long offset, long count) {
+        Range<byte[]> range = Range.from(
+                min == null ? Range.Boundary.unbounded() : Range.Boundary.including(bytes(min)),
+                max == null ? Range.Boundary.unbounded() : Range.Boundary.including(bytes(max))
+        );
+        List<byte[]> values;
+        if (RedisSortType.DESC.equals(sortType)) {
+            values = redisBinarySortedSetCommands.zrevrangebylex(bytes(key), range, Limit.create(offset, count));
+        } else {
+            values = redisBinarySortedSetCommands.zrangebylex(bytes(key), range, Limit.create(offset, count));
+        }
+        List<String> result = new ArrayList<>(values.size());
+        for (byte[] value : values) {
+            result.add(string(value));
+        }
         return result;
     }
 
+    /**
+     * Get the rank of a member, starting from 0 (ZRANK/ZREVRANK).
+     *
+     * @param key The key
+     * @param sortType Specifies the sort type of the member
+     * @param member The member
+     * @return the rank, null when the member does not exist
+     */
+    public Long getRank(String key, RedisSortType sortType, String member) {
+        if (RedisSortType.DESC.equals(sortType)) {
+            return redisBinarySortedSetCommands.zrevrank(bytes(key), bytes(member));
+        }
+        return redisBinarySortedSetCommands.zrank(bytes(key), bytes(member));
+    }
+
+    /**
+     * Get a member and its neighbours, such as the players ranked around a player, in one round trip.
+     *
+     * @param key The key
+     * @param sortType Specifies the sort type of the member
+     * @param member The member
+     * @param before The number of members ranked before the member
+     * @param after The number of members ranked after the member
+     * @return the members in order, the member included, empty when the member does not exist
+     */
+    public List<MemberScore> getAround(String key, RedisSortType sortType, String member, int before, int after) {
+        List<Object> result = redisBinaryScriptingCommands.eval(
+                AROUND_SCRIPT,
+                ScriptOutputType.MULTI,
+                new byte[][]{bytes(key)},
+                bytes(RedisSortType.DESC.equals(sortType) ? "1" : "0"),
+                bytes(String.valueOf(before)),
+                bytes(String.valueOf(after)),
+                bytes(member)
+        );
+        return fromFlatList(result);
+    }
+
+    private List<MemberScore> getByPage(String key, RedisSortType sortType, Long start, Long stop) {
+        List<ScoredValue<byte[]>> scoredValues;
+        if (RedisSortType.ASC.equals(sortType)) {
+            scoredValues = redisBinarySortedSetCommands.zrangeWithScores(bytes(key), start, stop);
+        } else if (RedisSortType.DESC.equals(sortType)) {
+            scoredValues = redisBinarySortedSetCommands.zrevrangeWithScores(bytes(key), start, stop);
+        } else {
+            return new ArrayList<>();
+        }
+        return fromScoredValues(scoredValues);
+    }
+
     /**
      * Delete all member
      * @param keys The keys
      * @return
      */
     public Boolean deleteAll(String... keys) {
+        for (String key : keys) {
+            this.evictTopPages(key);
+        }
         return redisGenericUtils.delete(keys);
     }
 
@@ -167,10 +531,122 @@ public class RedisSortSetUtils extends AbstractRedisUtils {
      * @return
      */
     public Boolean delete(String key, String... members) {
+        this.evictTopPages(key);
         Long count = redisSortedSetCommands.zrem(key, members);
+        // A geo key is a sorted set, its members are removed by ZREM
+        redisGeoMirror.publishRemoval(key, Arrays.asList(members));
         // The number of elements added to the sorted sets, not including elements already existing for which the score was updated.
         // So return directly to ture.
         return true;
     }
 
+    private static byte[][] cursorPageArgs(RedisSortType sortType, MemberScore cursor, int pageSize) {
+        byte[] desc = bytes(RedisSortType.DESC.equals(sortType) ? "1" : "0");
+        if (cursor == null) {
+            return new byte[][]{desc, bytes(String.valueOf(pageSize))};
+        }
+        return new byte[][]{desc, bytes(String.valueOf(pageSize)), bytes(formatScore(cursor.getScore())), bytes(cursor.getMember())};
+    }
+
+    private void abortBulkAdd(boolean replace, byte[] target) {
+        if (replace) {
+            redisBinaryKeyCommands.del(target);
+        }
+    }
+
+    private static BulkLoadProgress progressOf(String key, AtomicLong loadedCount, AtomicLong chunkCount, long startNanos, boolean finished) {
+        long elapsedMillis = Math.max((System.nanoTime() - startNanos) / 1_000_000L, 1L);
+        long loaded = loadedCount.get();
+        return new BulkLoadProgress(key, loaded, chunkCount.get(), elapsedMillis, loaded * 1000L / elapsedMillis, finished);
+    }
+
+    private void evictTopPages(String key) {
+        if (topPageCache != null) {
+            topPageCache.asMap().keySet().removeIf(pageKey -> pageKey.key.equals(key));
+        }
+    }
+
+    private static List<MemberScore> fromScoredValues(List<ScoredValue<byte[]>> scoredValues) {
+        List<MemberScore> result = new ArrayList<>(scoredValues.size());
+        for (ScoredValue<byte[]> scoredValue : scoredValues) {
+            result.add(new MemberScore(string(scoredValue.getValue()), scoredValue.getScore()));
+        }
+        return result;
+    }
+
+    /**
+     * Read the reply of ZRANGE WITHSCORES in a script: the members and their scores, alternately.
+     */
+    private static List<MemberScore> fromFlatList(List<Object> values) {
+        List<MemberScore> result = new ArrayList<>(values.size() / 2);
+        for (int i = 0; i + 1 < values.size(); i += 2) {
+            result.add(new MemberScore(string((byte[]) values.get(i)), parseScore(string((byte[]) values.get(i + 1)))));
+        }
+        return result;
+    }
+
+    private static List<MemberScore> copyOf(List<MemberScore> members) {
+        List<MemberScore> result = new ArrayList<>(members.size());
+        for (MemberScore member : members) {
+            result.add(copyOf(member));
+        }
+        return result;
+    }
+
+    private static MemberScore copyOf(MemberScore member) {
+        return new MemberScore(member.getMember(), member.getScore());
+    }
+
+    static String formatScore(double score) {
+        if (Double.isInfinite(score)) {
+            return score > 0 ? "+inf" : "-inf";
+        }
+        return Double.toString(score);
+    }
+
+    private static double parseScore(String score) {
+        return switch (score) {
+            case "inf", "+inf" -> Double.POSITIVE_INFINITY;
+            case "-inf" -> Double.NEGATIVE_INFINITY;
+            default -> Double.parseDouble(score);
+        };
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static class PageKey {
+        private final String key;
+        private final RedisSortType sortType;
+        private final long pageNum;
+        private final long pageSize;
+
+        private PageKey(String key, RedisSortType sortType, long pageNum, long pageSize) {
+            this.key = key;
+            this.sortType = sortType;
+            this.pageNum = pageNum;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PageKey other)) {
+                return false;
+            }
+            return pageNum == other.pageNum && pageSize == other.pageSize && sortType == other.sortType && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, sortType, pageNum, pageSize);
+        }
+    }
 }
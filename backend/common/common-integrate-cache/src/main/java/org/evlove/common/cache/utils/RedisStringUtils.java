@@ -5,11 +5,13 @@ import io.lettuce.core.RedisFuture;
 import io.lettuce.core.api.async.RedisStringAsyncCommands;
 import io.lettuce.core.api.sync.RedisStringCommands;
 import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.codec.RedisValueCompressor;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ObjectUtils;
 
 import jakarta.annotation.Resource;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletionStage;
@@ -26,17 +28,42 @@ import java.util.function.Function;
  * codes (such as service or persistence layer classes) before and after obtaining data in Redis,
  * so use Spring itself The provided @Async can more flexibly meet asynchronous processing requirements.
  *
+ * In cluster mode, the multi-key commands (MGET, MSETNX) are split by hash slot by Lettuce's cluster commands,
+ * the per-slot commands are executed in parallel, because Redis rejects multi-key commands across slots (CROSSSLOT).
+ *
+ * When compression is enabled (see RedisValueCompressor), the values above the threshold are written compressed.
+ * The values are always read as bytes and decompressed when they were written compressed, whether compression is currently enabled or not.
+ * Notice: APPEND does not compress, do not append to a value that may have been written compressed.
+ *
  * @author massaton.github.io
  */
 @Component
 public class RedisStringUtils extends AbstractRedisUtils {
 
+    @Resource
+    private RedisAutoBatcher redisAutoBatcher;
+
+    @Resource
+    private RedisNearCache redisNearCache;
+
+    @Resource
+    private RedisHotKeyDetector redisHotKeyDetector;
+
+    @Resource
+    private RedisValueCompressor redisValueCompressor;
+
     @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_SYNC_COMMANDS)
     private RedisStringCommands<String, String> redisStringCommands;
 
     @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_ASYNC_COMMANDS)
     private RedisStringAsyncCommands<String, String> redisStringAsyncCommands;
 
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_SYNC_COMMANDS)
+    private RedisStringCommands<byte[], byte[]> redisBinaryStringCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisStringAsyncCommands<byte[], byte[]> redisBinaryStringAsyncCommands;
+
     public RedisStringCommands<String, String> sync() {
         return this.redisStringCommands;
     }
@@ -48,31 +75,40 @@ public class RedisStringUtils extends AbstractRedisUtils {
     // region Obtain Method - Don't provide asynchronous methods
     /**
      * Get the value of a key.
+     * When the key is opted in to the near cache, it is read from local memory if possible, see RedisNearCache.
+     * When the key is hot, it is read from a short-lived local replica, see RedisHotKeyDetector.
+     * When auto-batching is enabled, concurrent calls are merged into one MGET, see RedisAutoBatcher.
      *
      * @param key the key.
      * @return reply the value of key, or null when key does not exist.
      */
     public String get(String key) {
-        return redisStringCommands.get(key);
+        if (redisNearCache.isCached(key)) {
+            return this.decode(key, redisNearCache.getBytes(key));
+        }
+        if (redisHotKeyDetector.recordRead(key)) {
+            byte[] value = (byte[]) redisHotKeyDetector.getReplica(key, () -> redisBinaryStringCommands.get(this.toBytes(key)));
+            return this.decode(key, value);
+        }
+        if (redisAutoBatcher.isEnabled()) {
+            return this.decode(key, redisAutoBatcher.getBytes(key));
+        }
+        return this.decode(key, redisBinaryStringCommands.get(this.toBytes(key)));
     }
     /**
      * Get the values of all the given keys.
+     * In cluster mode, one MGET is sent per hash slot in parallel (by Lettuce's cluster commands).
      *
      * @param keys the keys.
-     * @return reply list of values at the specified keys.
+     * @return reply map of values at the specified keys, in the order of the given keys.
      */
     public Map<String, String> get(String... keys) {
-        Map<String, String> result = new HashMap<>(keys.length);
-
-        List<KeyValue<String, String>> keyValues = redisStringCommands.mget(keys);
-        for (KeyValue<String, String> keyValue : keyValues) {
-            result.put(
-                    keyValue.getKey(),
-                    keyValue.getValue()
-            );
+        byte[][] keyBytes = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            keyBytes[i] = this.toBytes(keys[i]);
         }
-
-        return result;
+        List<KeyValue<byte[], byte[]>> keyValues = redisBinaryStringCommands.mget(keyBytes);
+        return this.mergeKeyValues(keys, keyValues);
     }
     /**
      * Get the value of key and delete the key.
@@ -82,7 +118,9 @@ public class RedisStringUtils extends AbstractRedisUtils {
      * @return reply the value of key, or null when key does not exist.
      */
     public String getAndDelete(String key) {
-        return redisStringCommands.getdel(key);
+        String value = this.decode(key, redisBinaryStringCommands.getdel(this.toBytes(key)));
+        evictLocal(key);
+        return value;
     }
     // endregion
 
@@ -95,7 +133,10 @@ public class RedisStringUtils extends AbstractRedisUtils {
      * @return reply Ture if SET was executed correctly.
      */
     public Boolean set(String key, String value) {
-        String result = redisStringCommands.set(key, value);
+        String result = redisValueCompressor.isEnabled()
+                ? redisBinaryStringCommands.set(this.toBytes(key), this.encode(key, value))
+                : redisStringCommands.set(key, value);
+        evictLocal(key);
         return itsOk(result);
     }
     /**
@@ -105,10 +146,13 @@ public class RedisStringUtils extends AbstractRedisUtils {
      * @param action Subsequent programs to be executed.
      */
     public void setAsync(String key, String value, BiConsumer<Boolean, Throwable> action) {
-        RedisFuture<String> future = redisStringAsyncCommands.set(key, value);
+        RedisFuture<String> future = redisValueCompressor.isEnabled()
+                ? redisBinaryStringAsyncCommands.set(this.toBytes(key), this.encode(key, value))
+                : redisStringAsyncCommands.set(key, value);
         CompletionStage<Boolean> stage = future.thenApply(new Function<String, Boolean>() {
             @Override
             public Boolean apply(String result) {
+                evictLocal(key);
                 return itsOk(result);
             }
         });
@@ -133,7 +177,10 @@ public class RedisStringUtils extends AbstractRedisUtils {
      * @return redis command execution result.
      */
     public Boolean set(String key, String value, long seconds) {
-        String result = redisStringCommands.setex(key, seconds, value);
+        String result = redisValueCompressor.isEnabled()
+                ? redisBinaryStringCommands.setex(this.toBytes(key), seconds, this.encode(key, value))
+                : redisStringCommands.setex(key, seconds, value);
+        evictLocal(key);
         return itsOk(result);
     }
 
@@ -145,10 +192,13 @@ public class RedisStringUtils extends AbstractRedisUtils {
      * @param action subsequent programs to be executed.
      */
     public void setAsync(String key, String value, long seconds, BiConsumer<Boolean, Throwable> action) {
-        RedisFuture<String> future = redisStringAsyncCommands.setex(key, seconds, value);
+        RedisFuture<String> future = redisValueCompressor.isEnabled()
+                ? redisBinaryStringAsyncCommands.setex(this.toBytes(key), seconds, this.encode(key, value))
+                : redisStringAsyncCommands.setex(key, seconds, value);
         CompletionStage<Boolean> stage = future.thenApply(new Function<String, Boolean>() {
             @Override
             public Boolean apply(String result) {
+                evictLocal(key);
                 return itsOk(result);
             }
         });
@@ -167,6 +217,8 @@ public class RedisStringUtils extends AbstractRedisUtils {
     }
     /**
      * Set multiple keys to multiple values, only if none of the keys exist.
+     * Notice: In cluster mode, one MSETNX is sent per hash slot, so the operation is only atomic within each slot.
+     *
      * @param keyValues the map of the keys and values.
      * @return reply specifically: Ture if the all the keys were set. False if no key was set (at least one key already existed).
      */
@@ -174,10 +226,18 @@ public class RedisStringUtils extends AbstractRedisUtils {
         if (ObjectUtils.isEmpty(keyValues)) {
             return true;
         }
-        return redisStringCommands.msetnx(keyValues);
+        Boolean result;
+        if (redisValueCompressor.isEnabled()) {
+            result = redisBinaryStringCommands.msetnx(this.encode(keyValues));
+        } else {
+            result = redisStringCommands.msetnx(keyValues);
+        }
+        evictLocal(keyValues.keySet().toArray(new String[0]));
+        return result;
     }
     /**
      * Asynchronous set multiple keys to multiple values, only if none of the keys exist.
+     * Notice: In cluster mode, one MSETNX is sent per hash slot, so the operation is only atomic within each slot.
      *
      * @param keyValues the map of the keys and values.
      * @param action subsequent programs to do executed.
@@ -186,13 +246,15 @@ public class RedisStringUtils extends AbstractRedisUtils {
         if (ObjectUtils.isEmpty(keyValues)) {
             return;
         }
-        RedisFuture<Boolean> future = redisStringAsyncCommands.msetnx(keyValues);
-        CompletionStage<Boolean> completionStage = future.thenApply(new Function<Boolean, Boolean>() {
-            @Override
-            public Boolean apply(Boolean result) {
-                return result;
-            }
-        });
+        CompletionStage<Boolean> completionStage;
+        if (redisValueCompressor.isEnabled()) {
+            completionStage = redisBinaryStringAsyncCommands.msetnx(this.encode(keyValues));
+        } else {
+            completionStage = redisStringAsyncCommands.msetnx(keyValues);
+        }
+        completionStage = completionStage.whenComplete(
+                (result, throwable) -> evictLocal(keyValues.keySet().toArray(new String[0]))
+        );
         if (action != null) {
             completionStage.whenComplete(action);
         }
@@ -216,13 +278,60 @@ public class RedisStringUtils extends AbstractRedisUtils {
      * @return reply the length of the string after the append operation.
      */
     public Long append(String key, String appendValue) {
-        return redisStringCommands.append(key, appendValue);
+        Long length = redisStringCommands.append(key, appendValue);
+        evictLocal(key);
+        return length;
     }
     /**
      * Asynchronous append a value to a key.
      */
     public RedisFuture<Long> appendAsync(String key, String appendValue) {
-        return redisStringAsyncCommands.append(key, appendValue);
+        RedisFuture<Long> future = redisStringAsyncCommands.append(key, appendValue);
+        future.thenRun(() -> evictLocal(key));
+        return future;
+    }
+    // endregion
+
+
+    // region Private Method Zone
+    private byte[] toBytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compress the value if it is larger than the threshold.
+     */
+    private byte[] encode(String key, String value) {
+        return redisValueCompressor.compress(key, this.toBytes(value));
+    }
+
+    private Map<byte[], byte[]> encode(Map<String, String> keyValues) {
+        Map<byte[], byte[]> encoded = new LinkedHashMap<>(keyValues.size());
+        keyValues.forEach((key, value) -> encoded.put(this.toBytes(key), this.encode(key, value)));
+        return encoded;
+    }
+
+    /**
+     * Decompress the value if it was written compressed.
+     */
+    private String decode(String key, byte[] value) {
+        if (value == null) {
+            return null;
+        }
+        return new String(redisValueCompressor.decompress(key, value), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Merge the MGET reply into a map in the order of the given keys, the value of the key that does not exist is null.
+     * The values are decompressed if they were written compressed.
+     */
+    private Map<String, String> mergeKeyValues(String[] keys, List<KeyValue<byte[], byte[]>> keyValues) {
+        // MGET replies in the order of the keys (the cluster commands reassemble the per-slot replies in this order)
+        Map<String, String> result = new LinkedHashMap<>(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            result.put(keys[i], this.decode(keys[i], keyValues.get(i).getValueOrElse(null)));
+        }
+        return result;
     }
     // endregion
 
@@ -0,0 +1,369 @@
+package org.evlove.common.cache.utils;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScoredValue;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.async.RedisHashAsyncCommands;
+import io.lettuce.core.api.async.RedisScriptingAsyncCommands;
+import io.lettuce.core.api.async.RedisSortedSetAsyncCommands;
+import io.lettuce.core.api.sync.RedisScriptingCommands;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.evlove.common.cache.RedisClientConfig;
+import org.evlove.common.cache.pojo.MemberScore;
+import org.evlove.common.cache.pojo.TrendingStats;
+import org.evlove.common.cache.properties.RedisTrendingProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Trending scores: sorted sets whose members are ranked by the sum of their increments, each weighted down exponentially with its age.
+ * <p>
+ * The decay is baked into the score instead of rewriting the scores over time: an increment of weight w at time t adds
+ * w * e^(λ(t - epoch)) to the member, where λ = ln 2 / halfLife, and the score stored is the natural logarithm of the sum.
+ * The scores of the members that are not incremented never change, yet the ranking is the ranking of the decayed sums,
+ * so the trending members are read with a plain ZREVRANGE. The logarithm keeps the scores small, they grow by λ per second.
+ * <p>
+ * The increments are summed per member in local memory and written every flushInterval, by one script call per batch of members.
+ * The maintenance periodically rebases the scores of each sorted set to a newer epoch, chunk by chunk in rank order (which keeps
+ * the ranking correct during the rebase, the increments wait for its end), and removes the members whose weight became negligible.
+ * The epoch of each sorted set is kept in a hash in the same slot, so all the instances share it.
+ *
+ * @author massaton.github.io
+ */
+@Slf4j
+@Component
+public class RedisTrendingUtils extends AbstractRedisUtils {
+
+    /**
+     * Add the increments (ARGV[3..] member and weight pairs) to the logarithm of the decayed sums, in a numerically stable way:
+     * log(e^a + e^b) = max + log(1 + e^(min - max)). Returns -1 when the sorted set is being rebased.
+     */
+    private static final String INCREMENT_SCRIPT = """
+            if redis.call('hexists', KEYS[2], 'rebase_shift') == 1 then
+                return -1
+            end
+            local epoch = tonumber(redis.call('hget', KEYS[2], 'epoch'))
+            if not epoch then
+                epoch = tonumber(ARGV[2])
+                redis.call('hset', KEYS[2], 'epoch', ARGV[2])
+            end
+            local offset = tonumber(ARGV[1]) * (tonumber(ARGV[2]) - epoch)
+            for i = 3, #ARGV, 2 do
+                local score = math.log(tonumber(ARGV[i + 1])) + offset
+                local current = redis.call('zscore', KEYS[1], ARGV[i])
+                if current then
+                    current = tonumber(current)
+                    local high = math.max(current, score)
+                    local low = math.min(current, score)
+                    score = high + math.log(1 + math.exp(low - high))
+                end
+                redis.call('zadd', KEYS[1], score, ARGV[i])
+            end
+            return (#ARGV - 2) / 2
+            """;
+
+    /**
+     * Rebase the next chunk of members (ARGV[4]) in ascending rank order, starting a rebase when the decay since the epoch
+     * exceeds the threshold (ARGV[3]). The rebased members only move down, so the ranking stays correct during the rebase.
+     * Returns 0 when no rebase is needed, 1 while in progress, 2 when complete.
+     */
+    private static final String REBASE_SCRIPT = """
+            local shift = tonumber(redis.call('hget', KEYS[2], 'rebase_shift'))
+            if not shift then
+                local epoch = tonumber(redis.call('hget', KEYS[2], 'epoch'))
+                if not epoch then
+                    return 0
+                end
+                shift = tonumber(ARGV[1]) * (tonumber(ARGV[2]) - epoch)
+                if shift < tonumber(ARGV[3]) then
+                    return 0
+                end
+                redis.call('hset', KEYS[2], 'rebase_shift', tostring(shift), 'rebase_epoch', ARGV[2], 'rebase_cursor', 0)
+            end
+            local cursor = tonumber(redis.call('hget', KEYS[2], 'rebase_cursor'))
+            local members = redis.call('zrange', KEYS[1], cursor, cursor + tonumber(ARGV[4]) - 1)
+            for _, member in ipairs(members) do
+                redis.call('zincrby', KEYS[1], -shift, member)
+            end
+            if #members < tonumber(ARGV[4]) then
+                redis.call('hset', KEYS[2], 'epoch', redis.call('hget', KEYS[2], 'rebase_epoch'))
+                redis.call('hdel', KEYS[2], 'rebase_shift', 'rebase_epoch', 'rebase_cursor')
+                return 2
+            end
+            redis.call('hset', KEYS[2], 'rebase_cursor', cursor + #members)
+            return 1
+            """;
+
+    /**
+     * Remove the next chunk (ARGV[4]) of members whose decayed weight is below e^ARGV[3], not during a rebase.
+     */
+    private static final String TRIM_SCRIPT = """
+            if redis.call('hexists', KEYS[2], 'rebase_shift') == 1 then
+                return 0
+            end
+            local epoch = tonumber(redis.call('hget', KEYS[2], 'epoch'))
+            if not epoch then
+                return 0
+            end
+            local floor = tonumber(ARGV[3]) + tonumber(ARGV[1]) * (tonumber(ARGV[2]) - epoch)
+            local members = redis.call('zrangebyscore', KEYS[1], '-inf', '(' .. floor, 'limit', 0, tonumber(ARGV[4]))
+            if #members > 0 then
+                redis.call('zrem', KEYS[1], unpack(members))
+            end
+            return #members
+            """;
+
+    private static final byte[] FIELD_EPOCH = "epoch".getBytes(StandardCharsets.UTF_8);
+
+    private static final long REBASE_IN_PROGRESS = 1L;
+    private static final long REBASE_COMPLETE = 2L;
+
+    @Resource
+    private RedisTrendingProperties properties;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_SYNC_COMMANDS)
+    private RedisScriptingCommands<byte[], byte[]> redisBinaryScriptingCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisScriptingAsyncCommands<byte[], byte[]> redisBinaryScriptingAsyncCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisSortedSetAsyncCommands<byte[], byte[]> redisBinarySortedSetAsyncCommands;
+
+    @Resource(name = RedisClientConfig.BEAN_NAME_REDIS_BINARY_ASYNC_COMMANDS)
+    private RedisHashAsyncCommands<byte[], byte[]> redisBinaryHashAsyncCommands;
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    /**
+     * The decay rate λ, per second.
+     */
+    private double decayRate;
+
+    /**
+     * The sorted sets maintained by this instance: the configured ones and the ones it incremented.
+     */
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The sums of the increments waiting for the next flush, per sorted set and member, guarded by the lock.
+     */
+    private final Object lock = new Object();
+    private Map<String, Map<String, Double>> pending = new HashMap<>();
+
+    private final LongAdder incrementCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder deferredCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder trimmedCount = new LongAdder();
+    private final LongAdder rebaseCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!properties.getEnabled()) {
+            return;
+        }
+        decayRate = Math.log(2) / (properties.getHalfLife().toMillis() / 1000D);
+        keys.addAll(properties.getKeys());
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-trending");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushMillis = properties.getFlushInterval().toMillis();
+        long maintenanceMillis = properties.getMaintenanceInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::maintain, maintenanceMillis, maintenanceMillis, TimeUnit.MILLISECONDS);
+        running = true;
+        log.info("Redis trending scores enabled - halfLife:{} flushInterval:{} keys:{}",
+                properties.getHalfLife(), properties.getFlushInterval(), properties.getKeys());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        scheduler.shutdownNow();
+        // The last increments are still written
+        this.flush();
+    }
+
+    /**
+     * Add an increment to the trending score of a member, it is written to Redis at the next flush.
+     *
+     * @param key The key of the trending sorted set
+     * @param member The member
+     * @param weight The weight of the increment (a view, a like...), greater than 0
+     */
+    public void increment(String key, String member, double weight) {
+        if (!running) {
+            throw new IllegalStateException("The trending scores are disabled, see evlove.cache.trending.enabled");
+        }
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException("The weight of an increment must be greater than 0: " + weight);
+        }
+        keys.add(key);
+        incrementCount.increment();
+        synchronized (lock) {
+            pending.computeIfAbsent(key, k -> new HashMap<>()).merge(member, weight, Double::sum);
+        }
+    }
+
+    /**
+     * Get the trending members, the most trending first (ZREVRANGE), with their current decayed weight as score.
+     *
+     * @param key The key of the trending sorted set
+     * @param offset The number of members to skip
+     * @param count The number of members
+     * @return
+     */
+    public List<MemberScore> getTop(String key, long offset, long count) {
+        byte[] setKey = bytes(key);
+        // Pipelined, one round trip
+        RedisFuture<byte[]> epochFuture = redisBinaryHashAsyncCommands.hget(bytes(this.stateKeyOf(key)), FIELD_EPOCH);
+        RedisFuture<List<ScoredValue<byte[]>>> rangeFuture =
+                redisBinarySortedSetAsyncCommands.zrevrangeWithScores(setKey, offset, offset + count - 1);
+        byte[] epochBytes = await(epochFuture, commandTimeout());
+        List<ScoredValue<byte[]>> scoredValues = await(rangeFuture, commandTimeout());
+
+        double decay = epochBytes == null ? 0D
+                : decayRate * (now() - Double.parseDouble(new String(epochBytes, StandardCharsets.UTF_8)));
+        List<MemberScore> result = new ArrayList<>(scoredValues.size());
+        for (ScoredValue<byte[]> scoredValue : scoredValues) {
+            result.add(new MemberScore(
+                    new String(scoredValue.getValue(), StandardCharsets.UTF_8),
+                    Math.exp(scoredValue.getScore() - decay)
+            ));
+        }
+        return result;
+    }
+
+    public List<MemberScore> getTop(String key, long count) {
+        return this.getTop(key, 0L, count);
+    }
+
+    public TrendingStats getStats() {
+        return new TrendingStats(
+                incrementCount.sum(),
+                writtenCount.sum(),
+                batchCount.sum(),
+                deferredCount.sum(),
+                failedCount.sum(),
+                trimmedCount.sum(),
+                rebaseCount.sum()
+        );
+    }
+
+    private void flush() {
+        Map<String, Map<String, Double>> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        String now = String.valueOf(now());
+        int batchSize = properties.getFlushBatchSize();
+        batch.forEach((key, increments) -> {
+            List<Map.Entry<String, Double>> entries = new ArrayList<>(increments.entrySet());
+            for (int from = 0; from < entries.size(); from += batchSize) {
+                this.write(key, entries.subList(from, Math.min(from + batchSize, entries.size())), now);
+            }
+        });
+    }
+
+    private void write(String key, List<Map.Entry<String, Double>> increments, String now) {
+        byte[][] args = new byte[2 + increments.size() * 2][];
+        args[0] = bytes(String.valueOf(decayRate));
+        args[1] = bytes(now);
+        int i = 2;
+        for (Map.Entry<String, Double> increment : increments) {
+            args[i++] = bytes(increment.getKey());
+            args[i++] = bytes(String.valueOf(increment.getValue()));
+        }
+        RedisFuture<Long> future = redisBinaryScriptingAsyncCommands.eval(
+                INCREMENT_SCRIPT, ScriptOutputType.INTEGER, new byte[][]{bytes(key), bytes(this.stateKeyOf(key))}, args);
+        future.whenComplete((written, throwable) -> {
+            if (throwable != null) {
+                failedCount.increment();
+                log.warn("Redis trending increments lost - key:{} members:{}", key, increments.size(), throwable);
+            } else if (written < 0) {
+                // Being rebased: written again at the next flush, with the later time (a slight overweight)
+                deferredCount.increment();
+                synchronized (lock) {
+                    Map<String, Double> members = pending.computeIfAbsent(key, k -> new HashMap<>());
+                    increments.forEach(increment -> members.merge(increment.getKey(), increment.getValue(), Double::sum));
+                }
+            } else {
+                batchCount.increment();
+                writtenCount.add(written);
+            }
+        });
+    }
+
+    private void maintain() {
+        String trimFloor = String.valueOf(properties.getTrimBelow() > 0 ? Math.log(properties.getTrimBelow()) : 0D);
+        for (String key : keys) {
+            try {
+                byte[][] scriptKeys = {bytes(key), bytes(this.stateKeyOf(key))};
+                long state;
+                do {
+                    state = redisBinaryScriptingCommands.eval(REBASE_SCRIPT, ScriptOutputType.INTEGER, scriptKeys,
+                            bytes(String.valueOf(decayRate)), bytes(String.valueOf(now())),
+                            bytes(String.valueOf(properties.getRebaseThreshold())),
+                            bytes(String.valueOf(properties.getMaintenanceChunkSize())));
+                } while (state == REBASE_IN_PROGRESS && running);
+                if (state == REBASE_COMPLETE) {
+                    rebaseCount.increment();
+                    log.info("Redis trending scores rebased - key:{}", key);
+                }
+                if (properties.getTrimBelow() <= 0) {
+                    continue;
+                }
+                long trimmed;
+                do {
+                    trimmed = redisBinaryScriptingCommands.eval(TRIM_SCRIPT, ScriptOutputType.INTEGER, scriptKeys,
+                            bytes(String.valueOf(decayRate)), bytes(String.valueOf(now())), bytes(trimFloor),
+                            bytes(String.valueOf(properties.getMaintenanceChunkSize())));
+                    trimmedCount.add(trimmed);
+                } while (trimmed == properties.getMaintenanceChunkSize() && running);
+            } catch (Exception e) {
+                log.warn("Redis trending maintenance failed, retried on the next run - key:{}", key, e);
+            }
+        }
+    }
+
+    private String stateKeyOf(String key) {
+        return sameSlotKey(key, properties.getStateSuffix());
+    }
+
+    /**
+     * The time of the increments, in seconds.
+     */
+    private static double now() {
+        return System.currentTimeMillis() / 1000D;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}